@@ -0,0 +1,178 @@
+package cellularAutomata;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+/* This class keeps track of how active each cell of the Game of Life region is over a
+ * long run: how many times it has come to life (its "births"), and for how many time
+ * steps it has been alive.  It is attached to a Grid with Grid.setHeatmap, and the Grid
+ * then calls record after every time step.
+ *
+ * Both counters are stored in flat int arrays, one int per cell.  Rather than looking at
+ * the ages, record gets the packed liveness bits from the engine (which is just a copy
+ * for the packed engines) and compares them with the bits from the previous time step:
+ * a cell was born if its bit is set now but wasn't before.  Only the set bits are then
+ * walked, so a mostly dead grid costs very little.  For large grids the rows are split
+ * into bands that are counted in parallel.  The counters saturate at Integer.MAX_VALUE
+ * instead of overflowing, which takes more than 2 billion time steps to reach.
+ */
+public class ActivityHeatmap {
+
+	/* Grids with at least this many cells are counted in parallel bands.  Below this,
+	 * splitting up the work costs more than it saves.
+	 */
+	private static final int PARALLEL_CELLS = 1 << 18;
+	private static final int ROWS_PER_BAND = 64;
+
+	private final int numRows, cols, numWords;
+	private final int[] births; // births[row * cols + col]
+	private final int[] timeAlive; // same layout as births
+	private long[][] previous; // the liveness bits from the last time step
+	private long[][] current;
+	private long generations = 0; // the number of time steps recorded
+	private volatile int maxBirths = 0;
+
+	/* Constructor for ActivityHeatmap, for a Game of Life region of the given size. */
+	public ActivityHeatmap(int numRows, int cols) {
+		if (numRows < 1 || cols < 1) {
+			throw new IllegalArgumentException("Illegal Heatmap Size: " + numRows + "x" + cols);
+		}
+		this.numRows = numRows;
+		this.cols = cols;
+		numWords = PackedLife.words(cols);
+		births = new int[numRows * cols];
+		timeAlive = new int[numRows * cols];
+		previous = new long[numRows][numWords];
+		current = new long[numRows][numWords];
+	}
+
+	/* Remembers which cells of the engine are alive, without counting anything.  This is
+	 * called by the Grid when the heatmap is attached and whenever the grid is reset, so
+	 * that the first time step afterwards is compared with the right state.
+	 */
+	public void begin(LifeEngine engine) {
+		engine.copyLiveBits(previous);
+	}
+
+	/* Counts the births and living cells of the time step that the engine just did. */
+	public void record(LifeEngine engine) {
+		engine.copyLiveBits(current);
+		int numBands = (numRows + ROWS_PER_BAND - 1) / ROWS_PER_BAND;
+		IntStream bands = IntStream.range(0, numBands);
+		if ((long) numRows * cols >= PARALLEL_CELLS) {
+			bands = bands.parallel();
+		}
+		int newMax = bands.map(band -> recordBand(band * ROWS_PER_BAND,
+				Math.min(numRows, (band + 1) * ROWS_PER_BAND))).max().orElse(0);
+		if (newMax > maxBirths) {
+			maxBirths = newMax;
+		}
+
+		long[][] temp = previous;
+		previous = current;
+		current = temp;
+		generations++;
+	}
+
+	/* Sets every counter back to 0. */
+	public void clear() {
+		for (int i = 0; i < births.length; i++) {
+			births[i] = 0;
+			timeAlive[i] = 0;
+		}
+		generations = 0;
+		maxBirths = 0;
+	}
+
+	public int getBirths(int row, int col) {
+		return births[row * cols + col];
+	}
+
+	public int getTimeAlive(int row, int col) {
+		return timeAlive[row * cols + col];
+	}
+
+	/* Returns the highest number of births of any cell, which is useful for scaling the
+	 * counts when drawing them.
+	 */
+	public int getMaxBirths() {
+		return maxBirths;
+	}
+
+	/* Returns the number of time steps recorded since the heatmap was created or cleared. */
+	public long getGenerations() {
+		return generations;
+	}
+
+	public int getNumRows() {
+		return numRows;
+	}
+
+	public int getNumCols() {
+		return cols;
+	}
+
+	/* Writes the births (or the time alive, if 'births' is false) as CSV: one line per
+	 * row of the grid, with one number per column.
+	 */
+	public void writeCsv(Path file, boolean births) throws IOException {
+		int[] counts = births ? this.births : timeAlive;
+		try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			StringBuilder line = new StringBuilder();
+			for (int row = 0; row < numRows; row++) {
+				line.setLength(0);
+				for (int col = 0; col < cols; col++) {
+					if (col > 0) {
+						line.append(',');
+					}
+					line.append(counts[row * cols + col]);
+				}
+				out.write(line.toString());
+				out.newLine();
+			}
+		}
+	}
+
+	/* Counts the rows from firstRow up to (not including) lastRow, and returns the
+	 * highest number of births among the cells that were born.
+	 */
+	private int recordBand(int firstRow, int lastRow) {
+		int max = 0;
+		for (int row = firstRow; row < lastRow; row++) {
+			long[] before = previous[row];
+			long[] after = current[row];
+			int rowStart = row * cols;
+			for (int w = 0; w < numWords; w++) {
+				int wordStart = rowStart + (w << 6);
+				long alive = after[w];
+				long born = alive & ~before[w];
+				while (alive != 0) {
+					int i = wordStart + Long.numberOfTrailingZeros(alive);
+					timeAlive[i] = increment(timeAlive[i]);
+					alive &= alive - 1;
+				}
+				while (born != 0) {
+					int i = wordStart + Long.numberOfTrailingZeros(born);
+					int count = increment(births[i]);
+					births[i] = count;
+					max = Math.max(max, count);
+					born &= born - 1;
+				}
+			}
+		}
+		return max;
+	}
+
+	/* Adds one to a counter, unless it is already at Integer.MAX_VALUE.  For any other
+	 * count, count + 1 has its top bit clear, so 1 is added; for Integer.MAX_VALUE the
+	 * sum wraps around and sets the top bit, so 0 is added.
+	 */
+	private static int increment(int count) {
+		return count + (((count + 1) >>> 31) ^ 1);
+	}
+
+}
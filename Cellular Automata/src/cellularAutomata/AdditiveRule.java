@@ -0,0 +1,194 @@
+package cellularAutomata;
+
+/* Some of the 256 rules are "additive": the new state of a cell is the exclusive or of
+ * some of its three neighbors, possibly flipped.  For example, rule 90 sets each cell to
+ * left XOR right, and rule 150 to left XOR middle XOR right.  Rules 60, 102 and 204 are
+ * others, and 16 of the 256 rules are additive in all (counting the flipped versions,
+ * such as rule 105, which is the opposite of rule 150).
+ *
+ * For these rules, row n can be worked out directly instead of calling
+ * CARowMaker.nextRow n times.  Thinking of a row of 'cols' cells as a polynomial
+ * x_0 + x_1 z + ... + x_(cols-1) z^(cols-1) with coefficients that are 0 or 1 (added with
+ * XOR), one time step of an additive rule multiplies the row by
+ *     p(z) = a z + b + d z^(-1),
+ * where a, b and d say whether the left, middle and right neighbors count, and z^cols = 1
+ * because the row wraps around.  So n time steps multiply it by p(z)^n.  With XOR as
+ * addition, squaring a polynomial just squares each of its terms (the cross terms appear
+ * twice and cancel out), so p(z)^(2^k) = a z^(2^k) + b + d z^(-2^k), which still only has
+ * three terms.  Writing n in binary, p(z)^n is the product of one of those for every set
+ * bit of n, and multiplying by each one is just the XOR of the row rotated left and right
+ * by 2^k places.  So row n takes about log2(n) passes over the packed bits of the row.
+ *
+ * The flipped rules also XOR every cell with 1 on every time step.  An all-ones row is
+ * just multiplied by a + b + d, so the total effect of those flips after n steps is
+ * either nothing or flipping every cell once, depending on n.
+ *
+ * Rows are stored as packed bits, in the same format as PackedLife.packRow.
+ */
+public class AdditiveRule {
+
+	private final int rule;
+	private final boolean left, middle, right; // which neighbors are XORed together
+	private final boolean flip; // true if the result is flipped
+
+	private AdditiveRule(int rule, boolean left, boolean middle, boolean right, boolean flip) {
+		this.rule = rule;
+		this.left = left;
+		this.middle = middle;
+		this.right = right;
+		this.flip = flip;
+	}
+
+	/* Returns true if the rule is additive, and so can be used with forRule. */
+	public static boolean isAdditive(int rule) {
+		if (rule < 0 || rule > 255) {
+			throw new IllegalArgumentException("Illegal Rule Number: " + rule);
+		}
+
+		/* Work out what the rule would be from the cases with at most one living
+		 * neighbor, and then check that every other case agrees.  The cases are
+		 * numbered the same way as in CARowMaker, with the left neighbor as the
+		 * highest bit.
+		 */
+		int flip = rule & 1;
+		int right = ((rule >>> 1) & 1) ^ flip;
+		int middle = ((rule >>> 2) & 1) ^ flip;
+		int left = ((rule >>> 4) & 1) ^ flip;
+		for (int cellCase = 0; cellCase < 8; cellCase++) {
+			int expected = flip ^ (left & (cellCase >>> 2)) ^ (middle & (cellCase >>> 1))
+					^ (right & cellCase);
+			if (((rule >>> cellCase) & 1) != (expected & 1)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* Returns the AdditiveRule for the given rule number.  Throws an
+	 * IllegalArgumentException if the rule isn't additive.
+	 */
+	public static AdditiveRule forRule(int rule) {
+		if (!isAdditive(rule)) {
+			throw new IllegalArgumentException("Illegal Additive Rule: " + rule);
+		}
+		return new AdditiveRule(rule, ((rule >>> 4) & 1) != (rule & 1),
+				((rule >>> 2) & 1) != (rule & 1), ((rule >>> 1) & 1) != (rule & 1),
+				(rule & 1) != 0);
+	}
+
+	public int getRule() {
+		return rule;
+	}
+
+	/* Returns the row 'n' time steps after the given one (which isn't modified), exactly
+	 * as if CARowMaker.nextRow had been called n times.  The rows have 'cols' cells,
+	 * packed into PackedLife.words(cols) longs.
+	 */
+	public long[] rowAt(long[] row, int cols, long n) {
+		if (n < 0) {
+			throw new IllegalArgumentException("Illegal Number of Generations: " + n);
+		}
+		if (cols < 2) {
+			throw new IllegalArgumentException("Illegal Number of Columns: " + cols);
+		}
+		int numWords = PackedLife.words(cols);
+		long[] result = row.clone();
+		long[] next = new long[numWords];
+		long[] scratch = new long[numWords];
+
+		/* Multiply by p(z)^(2^k) for every set bit k of n.  'shift' is 2^k mod cols. */
+		int shift = 1 % cols;
+		for (long remaining = n; remaining != 0; remaining >>>= 1) {
+			if ((remaining & 1) != 0) {
+				for (int w = 0; w < numWords; w++) {
+					next[w] = middle ? result[w] : 0;
+				}
+				if (left) {
+					rotate(result, shift, cols, scratch);
+					xorInto(next, scratch);
+				}
+				if (right) {
+					rotate(result, (cols - shift) % cols, cols, scratch);
+					xorInto(next, scratch);
+				}
+				long[] temp = result;
+				result = next;
+				next = temp;
+			}
+			shift = (int) ((2L * shift) % cols);
+		}
+
+		/* The flips add up to flipping every cell an odd number of times if either
+		 * a + b + d is 1 and n is odd, or a + b + d is 0 and n is at least 1 (only the
+		 * flip from the last time step survives, since the all-ones row is wiped out by
+		 * the step after it).
+		 */
+		boolean preservesOnes = left ^ middle ^ right;
+		if (flip && (preservesOnes ? (n & 1) != 0 : n > 0)) {
+			for (int w = 0; w < numWords; w++) {
+				result[w] = ~result[w];
+			}
+			int topBit = (cols - 1) & 63;
+			if (topBit != 63) {
+				result[numWords - 1] &= (1L << (topBit + 1)) - 1;
+			}
+		}
+		return result;
+	}
+
+	/* Sets 'out' to the row rotated so that bit i moves to bit (i + shift) mod cols,
+	 * i.e. each cell takes the value of the cell 'shift' places to its left.  0 <= shift
+	 * < cols.
+	 */
+	static void rotate(long[] in, int shift, int cols, long[] out) {
+		int numWords = out.length;
+		for (int w = 0; w < numWords; w++) {
+			out[w] = 0;
+		}
+		if (shift == 0) {
+			System.arraycopy(in, 0, out, 0, numWords);
+			return;
+		}
+
+		/* the cells that don't wrap around move up by 'shift', the rest move down by
+		 * cols - shift, and the two never overlap
+		 */
+		shiftUp(in, shift, out);
+		shiftDown(in, cols - shift, out);
+		int topBit = (cols - 1) & 63;
+		if (topBit != 63) {
+			out[numWords - 1] &= (1L << (topBit + 1)) - 1;
+		}
+	}
+
+	/* XORs 'in' shifted up by 'shift' bits into 'out', dropping bits past the end. */
+	private static void shiftUp(long[] in, int shift, long[] out) {
+		int wordShift = shift >>> 6, bitShift = shift & 63;
+		for (int w = out.length - 1; w >= wordShift; w--) {
+			long value = in[w - wordShift] << bitShift;
+			if (bitShift != 0 && w - wordShift - 1 >= 0) {
+				value |= in[w - wordShift - 1] >>> (64 - bitShift);
+			}
+			out[w] ^= value;
+		}
+	}
+
+	/* XORs 'in' shifted down by 'shift' bits into 'out'. */
+	private static void shiftDown(long[] in, int shift, long[] out) {
+		int wordShift = shift >>> 6, bitShift = shift & 63;
+		for (int w = 0; w + wordShift < in.length; w++) {
+			long value = in[w + wordShift] >>> bitShift;
+			if (bitShift != 0 && w + wordShift + 1 < in.length) {
+				value |= in[w + wordShift + 1] << (64 - bitShift);
+			}
+			out[w] ^= value;
+		}
+	}
+
+	private static void xorInto(long[] dest, long[] src) {
+		for (int w = 0; w < dest.length; w++) {
+			dest[w] ^= src[w];
+		}
+	}
+
+}
@@ -0,0 +1,15 @@
+package cellularAutomata;
+
+/* Lets the caller of Grid.advance keep track of a long run of time steps, and stop it
+ * early.  Both methods are called on the thread running Grid.advance, every so often
+ * rather than after every time step, so they should return quickly.
+ */
+public interface AdvanceMonitor {
+
+	/* Returns true if the caller wants Grid.advance to stop as soon as possible. */
+	boolean isCancelled();
+
+	/* Called with the number of time steps done so far out of the total asked for. */
+	void progress(long done, long total);
+
+}
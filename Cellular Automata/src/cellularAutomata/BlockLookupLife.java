@@ -0,0 +1,196 @@
+package cellularAutomata;
+
+/* This engine computes the Game of Life with a precomputed table instead of counting
+ * neighbors.  The next generation of a 2x2 block of cells only depends on the 4x4 block
+ * around it, which has 2^16 possible states, so the 2x2 result for every one of them is
+ * worked out once (when the class is loaded) and stored in a 64KB table.  Each step then
+ * walks the grid two rows and two columns at a time, builds the 16-bit index of the 4x4
+ * block around each 2x2 block with a few shifts, and looks up the result.
+ *
+ * That is a quarter of a lookup per cell, against eight neighbor reads per cell in
+ * GameOfLife.updateGrid, and the table is small enough to stay in the L2 cache.
+ * PackedLife does 64 cells with a few dozen bitwise operations, so this is usually
+ * slower than that, but it is a different trade-off (memory and cache instead of
+ * arithmetic) that is worth measuring on a given machine; EngineBenchmark compares them.
+ *
+ * The cells are packed into bits in the same way as in PackedLife, and the ages are
+ * updated from those bits in the same way, so the results are identical to
+ * GameOfLife.updateGrid, including the edges.  Grids with an odd number of rows or
+ * columns compute one extra row or column in the last blocks, which is thrown away.
+ */
+public class BlockLookupLife implements LifeEngine {
+
+	/* TABLE[index] holds the next generation of the centre 2x2 block of the 4x4 block
+	 * 'index'.  Bit (4 * r + c) of the index is the cell in row r and column c of the
+	 * 4x4 block, and bit (2 * r + c) of the result is the cell in row r + 1 and column
+	 * c + 1.
+	 */
+	private static final byte[] TABLE = buildTable();
+
+	private long[][] live; // packed exactly like PackedLife
+	private long[][] nextLive;
+	private long[] inputBits;
+	private int[][] ages;
+	private int numRows, cols, numWords;
+
+	/* The rows shifted up by one bit, so that bit p holds column p - 1, with the columns
+	 * that wrap around copied in at both ends: bit 0 holds the last column, and the two
+	 * bits after the last column hold columns 0 and 1.  Then the four columns around
+	 * output columns 2j and 2j + 1 are just bits 2j to 2j + 3.  padded[0] is the row
+	 * above the top row (which is never needed, since the top row is killed, so it is
+	 * left empty), padded[numRows + 1] is the input, and padded[numRows + 2] is an empty
+	 * row below it for the extra row of an odd-sized grid.
+	 */
+	private long[][] padded;
+
+	@Override
+	public String getName() {
+		return "lookup";
+	}
+
+	@Override
+	public void load(int[][] grid) {
+		numRows = grid.length;
+		cols = grid[0].length;
+		numWords = PackedLife.words(cols);
+		live = new long[numRows][numWords];
+		nextLive = new long[numRows + 1][numWords]; // room for the extra row
+		inputBits = new long[numWords];
+		ages = new int[numRows][];
+		for (int row = 0; row < numRows; row++) {
+			ages[row] = grid[row].clone();
+			PackedLife.packRow(ages[row], live[row]);
+		}
+		padded = new long[numRows + 3][PackedLife.words(cols + 3) + 1];
+	}
+
+	/* Performs a single time step, using the same rules as GameOfLife.updateGrid. */
+	@Override
+	public void step(int[] input) {
+		PackedLife.packRow(input, inputBits);
+		for (int row = 0; row < numRows; row++) {
+			pad(live[row], padded[row + 1]);
+		}
+		pad(inputBits, padded[numRows + 1]);
+
+		for (int row = 0; row < numRows; row += 2) {
+			stepBlockRow(row);
+		}
+		long[] top = nextLive[0];
+		for (int w = 0; w < numWords; w++) {
+			top[w] = 0; // top row - kill everything
+		}
+
+		/* swap, keeping the extra row in nextLive */
+		for (int row = 0; row < numRows; row++) {
+			long[] temp = live[row];
+			live[row] = nextLive[row];
+			nextLive[row] = temp;
+			PackedLife.ageRow(ages[row], live[row]);
+		}
+	}
+
+	@Override
+	public int[][] getAges() {
+		return ages;
+	}
+
+	/* The cells are already packed, so they can just be copied. */
+	@Override
+	public void copyLiveBits(long[][] dest) {
+		for (int row = 0; row < numRows; row++) {
+			System.arraycopy(live[row], 0, dest[row], 0, numWords);
+		}
+	}
+
+	/* Computes rows 'row' and 'row + 1' of the next generation, which depend on padded
+	 * rows 'row' to 'row + 3'.  Each word of the padded rows covers 32 blocks, and the
+	 * results for those blocks fill one word of each output row.
+	 */
+	private void stepBlockRow(int row) {
+		long[] p0 = padded[row], p1 = padded[row + 1], p2 = padded[row + 2], p3 = padded[row + 3];
+		long[] out0 = nextLive[row], out1 = nextLive[row + 1];
+		for (int w = 0; w < numWords; w++) {
+			long top = 0, bottom = 0;
+
+			/* blocks 0 to 30 of the word are entirely within it */
+			long a = p0[w], b = p1[w], c = p2[w], d = p3[w];
+			for (int shift = 0; shift < 62; shift += 2) {
+				int index = (int) ((a >>> shift) & 0xf) | (int) ((b >>> shift) & 0xf) << 4
+						| (int) ((c >>> shift) & 0xf) << 8 | (int) ((d >>> shift) & 0xf) << 12;
+				int result = TABLE[index];
+				top |= (long) (result & 3) << shift;
+				bottom |= (long) ((result >>> 2) & 3) << shift;
+			}
+
+			/* block 31 takes its last two columns from the next word */
+			int index = nibble(p0, w) | nibble(p1, w) << 4 | nibble(p2, w) << 8
+					| nibble(p3, w) << 12;
+			int result = TABLE[index];
+			top |= (long) (result & 3) << 62;
+			bottom |= (long) ((result >>> 2) & 3) << 62;
+
+			out0[w] = top;
+			out1[w] = bottom;
+		}
+
+		/* keep the unused bits of the last word at zero */
+		int topBit = (cols - 1) & 63;
+		if (topBit != 63) {
+			long mask = (1L << (topBit + 1)) - 1;
+			out0[numWords - 1] &= mask;
+			out1[numWords - 1] &= mask;
+		}
+	}
+
+	/* Returns bits 62 to 65 of a padded row, counting from the start of word w. */
+	private static int nibble(long[] bits, int w) {
+		return (int) (((bits[w] >>> 62) | (bits[w + 1] << 2)) & 0xf);
+	}
+
+	/* Writes a packed row into 'out' in the padded layout described above. */
+	private void pad(long[] row, long[] out) {
+		long carry = (row[numWords - 1] >>> ((cols - 1) & 63)) & 1; // the last column
+		for (int w = 0; w < numWords; w++) {
+			out[w] = (row[w] << 1) | carry;
+			carry = row[w] >>> 63;
+		}
+		for (int w = numWords; w < out.length; w++) {
+			out[w] = carry;
+			carry = 0;
+		}
+
+		/* columns 0 and 1 go after the last column, at bits cols + 1 and cols + 2 */
+		for (int i = 0; i < 2; i++) {
+			int bit = cols + 1 + i;
+			long value = (row[0] >>> (i % cols)) & 1;
+			out[bit >>> 6] |= value << bit;
+		}
+	}
+
+	private static byte[] buildTable() {
+		byte[] table = new byte[1 << 16];
+		for (int index = 0; index < table.length; index++) {
+			int result = 0;
+			for (int r = 1; r <= 2; r++) {
+				for (int c = 1; c <= 2; c++) {
+					int count = 0;
+					for (int dr = -1; dr <= 1; dr++) {
+						for (int dc = -1; dc <= 1; dc++) {
+							if (dr != 0 || dc != 0) {
+								count += (index >>> (4 * (r + dr) + (c + dc))) & 1;
+							}
+						}
+					}
+					boolean alive = ((index >>> (4 * r + c)) & 1) != 0;
+					if (count == 3 || (count == 2 && alive)) {
+						result |= 1 << (2 * (r - 1) + (c - 1));
+					}
+				}
+			}
+			table[index] = (byte) result;
+		}
+		return table;
+	}
+
+}
@@ -3,7 +3,7 @@ package cellularAutomata;
 /* This class will generate new rows of the 1-dimensional cellular automaton
  * specified by the user.  
  */
-public class CARowMaker {
+public class CARowMaker implements InputSource {
 
 	/* The 1-dimensional cellular automaton is determined by 8 "cases," each
 	 * of which corresponds to one of the 8 configurations of any particular
@@ -19,6 +19,7 @@ public class CARowMaker {
 	 * automata.
 	 */
 	private final boolean zero, one, two, three, four, five, six, seven;
+	private final int rule;
 
 	/* Constructor for CARowMaker.  The parameter 'rule' is used to determine the values
 	 * of the eight boolean variables above.  The only valid rules are from 0 to 255, 
@@ -33,6 +34,7 @@ public class CARowMaker {
 		if (rule < 0 || rule > 255) {
 			throw new IllegalArgumentException("Illegal Rule Number: " + rule);
 		}
+		this.rule = rule;
 		
 		/* Extract each bit from the parameter.  Each individual bit corresponds
 		 * to one of the 8 cases for this cellular automaton.  For example, if the
@@ -52,6 +54,14 @@ public class CARowMaker {
 
 	}
 
+	/* Returns the rule number this CARowMaker was created with.  This can be used to 
+	 * check whether the rule is additive (see AdditiveRule), in which case rows far in 
+	 * the future can be worked out directly.
+	 */
+	public int getRule() {
+		return rule;
+	}
+
 	/* This method generates a single row of the cellular automaton given 
 	 * the previous row.  Each location examines its three neighbors from 
 	 * the previous row to determine whether or not it will be dead or 
@@ -79,7 +89,19 @@ public class CARowMaker {
 	public int[] nextRow(int[] row) {
 		
 		/* initialize the new row to be the same length as the old row */		
-		int[] newRow = new int[row.length];
+		return nextRow(row, new int[row.length]);
+	}
+
+	/* Same as above, but the new row is written into 'newRow' instead of a new array, so
+	 * that a caller that keeps its own rows (such as OffHeapGrid) doesn't allocate one on
+	 * every time step.  'newRow' must be the same length as 'row', and must not be the
+	 * same array, since the last cells look back at the first ones.  It is returned for
+	 * convenience.
+	 */
+	public int[] nextRow(int[] row, int[] newRow) {
+		if (newRow == row || newRow.length != row.length) {
+			throw new IllegalArgumentException("Illegal New Row");
+		}
 
 		/* instead of examining all three neighbors for every cell, we can
 		 * just examine the rightmost neighbor each time, and shift the other
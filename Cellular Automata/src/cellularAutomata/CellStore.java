@@ -0,0 +1,112 @@
+package cellularAutomata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/* A rectangular block of ints (the ages of some rows of cells) stored outside of the
+ * heap, in direct ByteBuffers or in buffers memory-mapped from a file.  A single
+ * ByteBuffer can hold at most 2GB, so the rows are split into "slabs" of whole rows, each
+ * of which is at most SLAB_BYTES long.
+ *
+ * Rows are read and written a whole row at a time with the buffers' bulk get and put,
+ * which copy memory directly instead of going through the buffer one int at a time.
+ * Java 8 has no bulk get or put at an absolute index, so the slab's position is moved to
+ * the start of the row first.  That means a store can only be used by one thread at a
+ * time.
+ */
+class CellStore {
+
+	static final int SLAB_BYTES = 1 << 30;
+
+	private final IntBuffer[] slabs;
+	private final ByteBuffer[] buffers; // the buffers behind the slabs, used by force()
+	private final int numRows, numCols, rowsPerSlab;
+
+	/* Allocates the store.  If 'channel' is null the slabs are direct buffers, otherwise
+	 * they are mapped from the file starting at 'offset'.
+	 */
+	CellStore(int numRows, int numCols, FileChannel channel, long offset) throws IOException {
+		if (numRows < 1 || numCols < 1 || numCols > SLAB_BYTES / 4) {
+			throw new IllegalArgumentException("Illegal Store Size: " + numRows + "x" + numCols);
+		}
+		this.numRows = numRows;
+		this.numCols = numCols;
+		rowsPerSlab = Math.max(1, SLAB_BYTES / (4 * numCols));
+		int numSlabs = (numRows + rowsPerSlab - 1) / rowsPerSlab;
+		slabs = new IntBuffer[numSlabs];
+		buffers = new ByteBuffer[numSlabs];
+		for (int i = 0; i < numSlabs; i++) {
+			int slabRows = Math.min(rowsPerSlab, numRows - i * rowsPerSlab);
+			int size = 4 * slabRows * numCols;
+			if (channel == null) {
+				buffers[i] = ByteBuffer.allocateDirect(size);
+			} else {
+				long position = offset + bytes((long) i * rowsPerSlab, numCols);
+				buffers[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+			}
+			slabs[i] = buffers[i].order(ByteOrder.nativeOrder()).asIntBuffer();
+		}
+	}
+
+	/* Returns the number of bytes needed to store a block of the given size. */
+	static long bytes(long numRows, int numCols) {
+		return 4L * numRows * numCols;
+	}
+
+	int getNumRows() {
+		return numRows;
+	}
+
+	int getNumCols() {
+		return numCols;
+	}
+
+	int get(int row, int col) {
+		return slabs[row / rowsPerSlab].get((row % rowsPerSlab) * numCols + col);
+	}
+
+	void set(int row, int col, int value) {
+		slabs[row / rowsPerSlab].put((row % rowsPerSlab) * numCols + col, value);
+	}
+
+	/* Copies a whole row into 'dest', which must have at least numCols elements. */
+	void readRow(int row, int[] dest) {
+		seek(row).get(dest, 0, numCols);
+	}
+
+	/* Copies 'src' (the first numCols elements of it) into a whole row. */
+	void writeRow(int row, int[] src) {
+		seek(row).put(src, 0, numCols);
+	}
+
+	/* Sets every int in the store to the same value. */
+	void fill(int value) {
+		int[] row = new int[numCols];
+		Arrays.fill(row, value);
+		for (int r = 0; r < numRows; r++) {
+			writeRow(r, row);
+		}
+	}
+
+	/* Writes any changes back to the file, if the store is mapped from one. */
+	void force() {
+		for (ByteBuffer buffer : buffers) {
+			if (buffer instanceof MappedByteBuffer) {
+				((MappedByteBuffer) buffer).force();
+			}
+		}
+	}
+
+	/* Returns the slab holding the row, positioned at the start of it. */
+	private IntBuffer seek(int row) {
+		IntBuffer slab = slabs[row / rowsPerSlab];
+		slab.position((row % rowsPerSlab) * numCols);
+		return slab;
+	}
+
+}
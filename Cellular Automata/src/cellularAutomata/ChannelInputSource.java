@@ -0,0 +1,230 @@
+package cellularAutomata;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/* An InputSource that reads its rows from a channel, such as a FileChannel, a pipe or a
+ * SocketChannel, instead of generating them.  This makes it possible to feed recorded
+ * rows, or rows made by some other program, into the Game of Life.
+ *
+ * The rows are stored as packed bits, with no header or separators: each row takes
+ * (cols + 7) / 8 bytes, and column c is bit (c % 8) of byte (c / 8) of the row, set if the
+ * cell is alive.  Any unused bits at the end of a row are ignored.  encodeRow writes a
+ * row in this format.  Once the channel runs out, every row after that is dead.
+ *
+ * Reading is done ahead of time by a background thread, so a slow channel doesn't hold up
+ * the time steps.  The thread reads straight from the channel into a small, fixed set of
+ * direct ByteBuffers (so the bytes are never copied onto the Java heap, and never parsed
+ * into any intermediate form), and hands the full ones over through a bounded queue.  If
+ * the grid falls behind, the queue fills up and the thread blocks, so it stops reading
+ * from the channel and whatever is writing to it is slowed down in turn, rather than
+ * rows being buffered without limit.  The rows are only unpacked into ages when the grid
+ * asks for them.
+ *
+ * The channel must be in blocking mode.  It is closed, and the thread stopped, by close.
+ */
+public class ChannelInputSource implements InputSource, Closeable {
+
+	private static final int DEFAULT_ROWS_PER_BUFFER = 256;
+	private static final int DEFAULT_NUM_BUFFERS = 4;
+
+	private static final ByteBuffer END = ByteBuffer.allocate(0); // queued at end of stream
+
+	private final ReadableByteChannel channel;
+	private final int cols;
+	private final int bytesPerRow;
+
+	private final BlockingQueue<ByteBuffer> full; // read ahead, waiting to be used
+	private final BlockingQueue<ByteBuffer> empty; // used up, waiting to be read into
+	private final Thread reader;
+	private volatile IOException readError; // set if the reader thread fails
+
+	private ByteBuffer current; // the buffer rows are currently being taken from
+	private boolean endOfStream = false;
+	private volatile boolean closed = false;
+
+	/* Constructor for ChannelInputSource, with a few hundred rows of read-ahead.  'cols'
+	 * is the number of cells in each row, which must be the same as the number of
+	 * columns in the grid.
+	 */
+	public ChannelInputSource(ReadableByteChannel channel, int cols) {
+		this(channel, cols, DEFAULT_ROWS_PER_BUFFER, DEFAULT_NUM_BUFFERS);
+	}
+
+	/* Constructor for ChannelInputSource.  At most numBuffers * rowsPerBuffer rows are
+	 * read ahead of the grid.
+	 */
+	public ChannelInputSource(ReadableByteChannel channel, int cols, int rowsPerBuffer,
+			int numBuffers) {
+		if (cols < 1) {
+			throw new IllegalArgumentException("Illegal Number of Columns: " + cols);
+		}
+		if (rowsPerBuffer < 1) {
+			throw new IllegalArgumentException("Illegal Rows Per Buffer: " + rowsPerBuffer);
+		}
+		if (numBuffers < 2) {
+			throw new IllegalArgumentException("Illegal Number of Buffers: " + numBuffers);
+		}
+		this.channel = channel;
+		this.cols = cols;
+		bytesPerRow = (cols + 7) / 8;
+
+		/* one buffer is always being read from by the grid, so it isn't in either queue */
+		full = new ArrayBlockingQueue<>(numBuffers + 1); // room for END as well
+		empty = new ArrayBlockingQueue<>(numBuffers);
+		for (int i = 0; i < numBuffers; i++) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(bytesPerRow * rowsPerBuffer);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			empty.add(buffer);
+		}
+
+		reader = new Thread(new Runnable() {
+			public void run() {
+				readAhead();
+			}
+		}, "ChannelInputSource reader");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/* Returns the next row from the channel.  Living cells have an age of 0, and dead
+	 * cells are one older than the same cell in the previous row, just like CARowMaker.
+	 * Blocks if the reader thread hasn't caught up yet.  Throws an UncheckedIOException
+	 * if reading from the channel failed.
+	 */
+	@Override
+	public int[] nextRow(int[] row) {
+		if (row.length != cols) {
+			throw new IllegalArgumentException("Illegal Row Length: " + row.length);
+		}
+		int[] newRow = new int[cols];
+		ByteBuffer buffer = nextBuffer();
+		if (buffer == null) {
+			for (int col = 0; col < cols; col++) {
+				newRow[col] = row[col] + 1;
+			}
+			return newRow;
+		}
+
+		/* A partial row at the very end of the stream is treated as if the missing
+		 * bytes were zeros.  Whole longs are read where possible, which works because
+		 * the buffer is little-endian, so bit c of the long is column c.
+		 */
+		int start = buffer.position();
+		int available = Math.min(bytesPerRow, buffer.remaining());
+		int col = 0;
+		for (int offset = 0; col < cols; offset += 8) {
+			long bits;
+			if (offset + 8 <= available) {
+				bits = buffer.getLong(start + offset);
+			} else {
+				bits = 0;
+				for (int i = 0; offset + i < available && i < 8; i++) {
+					bits |= (buffer.get(start + offset + i) & 0xffL) << (8 * i);
+				}
+			}
+			int end = Math.min(cols, col + 64);
+			for (; col < end; col++) {
+				int dead = (int) (~bits & 1);
+				newRow[col] = (row[col] + 1) & -dead;
+				bits >>>= 1;
+			}
+		}
+		buffer.position(start + available);
+		return newRow;
+	}
+
+	/* Stops the reader thread and closes the channel. */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		reader.interrupt();
+		channel.close();
+	}
+
+	/* Writes a row in the format read by this class, so that rows from a CARowMaker (or
+	 * anywhere else) can be recorded and played back later.  Writes (row.length + 7) / 8
+	 * bytes at the position of 'out'.
+	 */
+	public static void encodeRow(int[] row, ByteBuffer out) {
+		for (int col = 0; col < row.length; col += 8) {
+			int b = 0;
+			for (int i = 0; i < 8 && col + i < row.length; i++) {
+				if (row[col + i] == 0) {
+					b |= 1 << i;
+				}
+			}
+			out.put((byte) b);
+		}
+	}
+
+	/* Returns a buffer with at least one byte left in it, or null once the stream has
+	 * ended and every row has been used.
+	 */
+	private ByteBuffer nextBuffer() {
+		if (endOfStream) {
+			return null;
+		}
+		while (current == null || !current.hasRemaining()) {
+			if (current != null) {
+				empty.add(current);
+				current = null;
+			}
+			ByteBuffer buffer;
+			try {
+				buffer = full.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for input", e);
+			}
+			if (buffer == END) {
+				endOfStream = true;
+				if (readError != null) {
+					throw new UncheckedIOException(readError);
+				}
+				return null;
+			}
+			current = buffer;
+		}
+		return current;
+	}
+
+	/* The body of the reader thread.  Each buffer is filled completely (so rows never
+	 * straddle two buffers) unless the stream ends first.
+	 */
+	private void readAhead() {
+		try {
+			boolean ended = false;
+			while (!ended && !closed) {
+				ByteBuffer buffer = empty.take();
+				buffer.clear();
+				while (buffer.hasRemaining()) {
+					if (channel.read(buffer) < 0) {
+						ended = true;
+						break;
+					}
+				}
+				buffer.flip();
+				if (buffer.hasRemaining()) {
+					full.put(buffer);
+				}
+			}
+		} catch (IOException e) {
+			if (!closed) {
+				readError = e;
+			}
+		} catch (InterruptedException e) {
+			// closed while waiting for a buffer
+		}
+		if (!closed) {
+			full.offer(END);
+		}
+	}
+
+}
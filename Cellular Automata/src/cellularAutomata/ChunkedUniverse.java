@@ -0,0 +1,359 @@
+package cellularAutomata;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/* This engine removes the edges of the Game of Life region.  In every other engine, the
+ * top row is always killed and the left and right sides wrap around, so anything that
+ * travels upward or off to the side is clipped.  Here the region is just a window onto
+ * a universe that goes on forever upward and to both sides: the window's row 0 and its
+ * columns 0 to cols - 1 are the same cells as in the other engines, but cells above and
+ * beside the window keep on living, and can come back into view later.  The input is
+ * still fed in below the window, and nothing lives below it.  So unlike every other
+ * engine, this one does NOT give the same results as GameOfLife.updateGrid.
+ *
+ * The universe is stored as 64x64 chunks, each one 64 longs with one row per long, in
+ * the same bit order as PackedLife.packRow.  The chunks are found through a
+ * LongIntHashMap, keyed by the chunk's row and column packed into one long, which gives
+ * the chunk's position in an array.  Only chunks with a living cell are stored, so the
+ * memory used grows with the area that is alive, not with how far apart the living
+ * cells are.  Each time step builds a new set of chunks: a chunk is computed if it or
+ * one of its neighbors has living cells near their shared edge, and is kept only if
+ * something in it is still alive.  The chunks of the old generation are then put in a
+ * pool to be reused, which is trimmed whenever it holds more chunks than are in use.
+ *
+ * The chunks are aligned with the window, so each word of a window row is a word of a
+ * chunk.  Ages are only kept for the cells in the window, with generation stamps in the
+ * same way as StampedLife.
+ */
+public class ChunkedUniverse implements LifeEngine {
+
+	private static final int CHUNK_SIZE = 64; // rows and columns in a chunk
+	private static final int MIN_POOL = 64; // chunks the pool may always keep
+
+	/* One 64x64 chunk of the universe.  bits[r] holds row r of the chunk. */
+	private static class Chunk {
+		private final long[] bits = new long[CHUNK_SIZE];
+		private long key;
+	}
+
+	/* The chunks of one generation. */
+	private static class ChunkTable {
+		private final LongIntHashMap index = new LongIntHashMap();
+		private Chunk[] chunks = new Chunk[16];
+		private int size;
+
+		private Chunk get(long key) {
+			int i = index.get(key, -1);
+			return (i < 0) ? null : chunks[i];
+		}
+
+		private void add(Chunk chunk) {
+			if (size == chunks.length) {
+				Chunk[] grown = new Chunk[2 * size];
+				System.arraycopy(chunks, 0, grown, 0, size);
+				chunks = grown;
+			}
+			index.put(chunk.key, size);
+			chunks[size++] = chunk;
+		}
+
+		/* Empties the table, putting every chunk in the pool. */
+		private void clearInto(ArrayDeque<Chunk> pool) {
+			for (int i = 0; i < size; i++) {
+				pool.push(chunks[i]);
+				chunks[i] = null;
+			}
+			size = 0;
+			index.clear();
+		}
+	}
+
+	private int numRows, cols, numWords;
+	private ChunkTable current = new ChunkTable();
+	private ChunkTable next = new ChunkTable();
+	private final ArrayDeque<Chunk> pool = new ArrayDeque<>();
+	private final LongHashSet candidates = new LongHashSet(); // chunks to compute
+
+	/* the window, packed like PackedLife.packRow */
+	private long[][] windowLive;
+	private long[][] nextWindowLive;
+	private long[] inputBits;
+	private long[][] diedAt; // the generation each window cell last died in
+	private long generation;
+
+	private int[][] ages; // the ages of the window, only worked out when asked for
+	private long agesGeneration;
+
+	/* Scratch rows for computing a chunk: index i holds row i - 1 of the chunk, so the
+	 * row above the chunk is at 0 and the row below it at CHUNK_SIZE + 1.  west and east
+	 * are shifted so that each bit holds its left or right neighbor.
+	 */
+	private final long[] west = new long[CHUNK_SIZE + 2];
+	private final long[] middle = new long[CHUNK_SIZE + 2];
+	private final long[] east = new long[CHUNK_SIZE + 2];
+	private final Chunk[] around = new Chunk[9]; // around[3 * (dRow + 1) + (dCol + 1)]
+
+	@Override
+	public String getName() {
+		return "unbounded";
+	}
+
+	/* Replaces the whole universe with the given window.  Everything outside of it
+	 * starts out dead.
+	 */
+	@Override
+	public void load(int[][] grid) {
+		numRows = grid.length;
+		cols = grid[0].length;
+		numWords = PackedLife.words(cols);
+		windowLive = new long[numRows][numWords];
+		nextWindowLive = new long[numRows][numWords];
+		inputBits = new long[numWords];
+		diedAt = new long[numRows][cols];
+		ages = new int[numRows][cols];
+		agesGeneration = -1;
+		generation = 0;
+
+		current.clearInto(pool);
+		for (int row = 0; row < numRows; row++) {
+			PackedLife.packRow(grid[row], windowLive[row]);
+			for (int col = 0; col < cols; col++) {
+				diedAt[row][col] = -grid[row][col];
+			}
+			setWindowRow(current, row, windowLive[row]);
+		}
+	}
+
+	/* Performs a single time step of the whole universe, with the input as the row
+	 * below the window.
+	 */
+	@Override
+	public void step(int[] input) {
+		PackedLife.packRow(input, inputBits);
+		setWindowRow(current, numRows, inputBits);
+
+		findCandidates();
+		for (int slot = 0; slot < candidates.capacity(); slot++) {
+			long key = candidates.keyAt(slot);
+			if (key != LongHashSet.EMPTY) {
+				computeChunk(key);
+			}
+		}
+
+		ChunkTable temp = current;
+		current = next;
+		next = temp;
+		next.clearInto(pool);
+		while (pool.size() > Math.max(MIN_POOL, current.size)) {
+			pool.pop(); // let the garbage collector have it
+		}
+
+		/* stamp the window cells that died */
+		for (int row = 0; row < numRows; row++) {
+			getWindowRow(current, row, nextWindowLive[row]);
+			StampedLife.stampDeaths(windowLive[row], nextWindowLive[row], diedAt[row],
+					generation);
+		}
+		long[][] tempLive = windowLive;
+		windowLive = nextWindowLive;
+		nextWindowLive = tempLive;
+		generation++;
+	}
+
+	/* Works out the ages of the window from the stamps, if they have changed. */
+	@Override
+	public int[][] getAges() {
+		if (agesGeneration != generation) {
+			for (int row = 0; row < numRows; row++) {
+				long[] rowLive = windowLive[row];
+				long[] rowDiedAt = diedAt[row];
+				for (int col = 0; col < cols; col++) {
+					ages[row][col] = ((rowLive[col >>> 6] >>> col) & 1) != 0 ? 0
+							: StampedLife.age(generation, rowDiedAt[col]);
+				}
+			}
+			agesGeneration = generation;
+		}
+		return ages;
+	}
+
+	@Override
+	public void copyLiveBits(long[][] dest) {
+		for (int row = 0; row < numRows; row++) {
+			System.arraycopy(windowLive[row], 0, dest[row], 0, numWords);
+		}
+	}
+
+	/* Returns true if the cell is alive.  The row and column are relative to the window,
+	 * so negative rows are above it and negative columns are to its left.
+	 */
+	public boolean isAlive(long row, long col) {
+		Chunk chunk = current.get(key(Math.floorDiv(row, CHUNK_SIZE),
+				Math.floorDiv(col, CHUNK_SIZE)));
+		if (chunk == null) {
+			return false;
+		}
+		return ((chunk.bits[(int) Math.floorMod(row, CHUNK_SIZE)]
+				>>> Math.floorMod(col, CHUNK_SIZE)) & 1) != 0;
+	}
+
+	/* Returns the number of living cells in the whole universe, inside the window or
+	 * not.
+	 */
+	public long getPopulation() {
+		long population = 0;
+		for (int i = 0; i < current.size; i++) {
+			for (long word : current.chunks[i].bits) {
+				population += Long.bitCount(word);
+			}
+		}
+		return population;
+	}
+
+	/* Returns the number of chunks in use, each of which covers 64x64 cells. */
+	public int getNumChunks() {
+		return current.size;
+	}
+
+	/* Adds the chunks that need to be computed to 'candidates': every chunk with living
+	 * cells, and the neighbors of those that have living cells next to the edge they
+	 * share.  The chunks below the window (other than the input row's) never are.
+	 */
+	private void findCandidates() {
+		candidates.clear();
+		for (int i = 0; i < current.size; i++) {
+			Chunk chunk = current.chunks[i];
+			int chunkRow = (int) (chunk.key >> 32);
+			int chunkCol = (int) chunk.key;
+			long[] bits = chunk.bits;
+
+			long anyRow = 0;
+			for (long word : bits) {
+				anyRow |= word;
+			}
+			boolean top = bits[0] != 0, bottom = bits[CHUNK_SIZE - 1] != 0;
+			boolean left = (anyRow & 1) != 0, right = (anyRow >>> 63) != 0;
+			for (int dRow = -1; dRow <= 1; dRow++) {
+				if ((dRow < 0 && !top) || (dRow > 0 && !bottom)) {
+					continue;
+				}
+				for (int dCol = -1; dCol <= 1; dCol++) {
+					if ((dCol < 0 && !left) || (dCol > 0 && !right)) {
+						continue;
+					}
+					if (dRow != 0 && dCol != 0 && !corner(bits, dRow, dCol)) {
+						continue;
+					}
+					candidates.add(key(chunkRow + dRow, chunkCol + dCol));
+				}
+			}
+		}
+	}
+
+	/* Returns true if the corner cell in the given direction is alive. */
+	private static boolean corner(long[] bits, int dRow, int dCol) {
+		long word = bits[(dRow < 0) ? 0 : CHUNK_SIZE - 1];
+		return ((dCol < 0) ? (word & 1) : (word >>> 63)) != 0;
+	}
+
+	/* Computes the next generation of one chunk and adds it to 'next' if anything in it
+	 * is alive.  Cells below the window are always dead.
+	 */
+	private void computeChunk(long key) {
+		int chunkRow = (int) (key >> 32);
+		int chunkCol = (int) key;
+		long firstRow = (long) chunkRow * CHUNK_SIZE;
+		if (firstRow >= numRows) {
+			return;
+		}
+
+		for (int dRow = -1; dRow <= 1; dRow++) {
+			for (int dCol = -1; dCol <= 1; dCol++) {
+				around[3 * (dRow + 1) + (dCol + 1)] = current.get(key(chunkRow + dRow,
+						chunkCol + dCol));
+			}
+		}
+		fillScratch(0, around[0], around[1], around[2], CHUNK_SIZE - 1, 1);
+		fillScratch(1, around[3], around[4], around[5], 0, CHUNK_SIZE);
+		fillScratch(CHUNK_SIZE + 1, around[6], around[7], around[8], 0, 1);
+
+		Chunk chunk = pool.isEmpty() ? new Chunk() : pool.pop();
+		chunk.key = key;
+		long any = 0;
+		int lastRow = (int) Math.min(CHUNK_SIZE, numRows - firstRow); // rows in the window
+		for (int r = 0; r < CHUNK_SIZE; r++) {
+			long word = 0;
+			if (r < lastRow) {
+				word = PackedLife.nextWord(west[r], middle[r], east[r], west[r + 1],
+						middle[r + 1], east[r + 1], west[r + 2], middle[r + 2], east[r + 2]);
+			}
+			chunk.bits[r] = word;
+			any |= word;
+		}
+		if (any != 0) {
+			next.add(chunk);
+		} else {
+			pool.push(chunk);
+		}
+	}
+
+	/* Copies 'count' rows, starting at row 'from' of a row of three chunks, into the
+	 * scratch rows starting at 'to'.  Missing chunks are dead.
+	 */
+	private void fillScratch(int to, Chunk left, Chunk center, Chunk right, int from, int count) {
+		for (int i = 0; i < count; i++) {
+			int r = from + i;
+			long l = (left == null) ? 0 : left.bits[r];
+			long m = (center == null) ? 0 : center.bits[r];
+			long e = (right == null) ? 0 : right.bits[r];
+			west[to + i] = (m << 1) | (l >>> 63);
+			middle[to + i] = m;
+			east[to + i] = (m >>> 1) | (e << 63);
+		}
+	}
+
+	/* Replaces row 'row' of the window (or the row below it, which holds the input) in
+	 * the given chunks with the packed bits.  Chunks are only added if a bit is set.
+	 */
+	private void setWindowRow(ChunkTable table, int row, long[] bits) {
+		int chunkRow = row / CHUNK_SIZE;
+		int r = row % CHUNK_SIZE;
+		for (int w = 0; w < numWords; w++) {
+			long chunkKey = key(chunkRow, w);
+			Chunk chunk = table.get(chunkKey);
+			if (chunk == null) {
+				if (bits[w] == 0) {
+					continue;
+				}
+				chunk = pool.isEmpty() ? new Chunk() : pool.pop();
+				Arrays.fill(chunk.bits, 0);
+				chunk.key = chunkKey;
+				table.add(chunk);
+			}
+			chunk.bits[r] = bits[w];
+		}
+	}
+
+	/* Copies row 'row' of the window out of the given chunks. */
+	private void getWindowRow(ChunkTable table, int row, long[] dest) {
+		int chunkRow = row / CHUNK_SIZE;
+		int r = row % CHUNK_SIZE;
+		for (int w = 0; w < numWords; w++) {
+			Chunk chunk = table.get(key(chunkRow, w));
+			dest[w] = (chunk == null) ? 0 : chunk.bits[r];
+		}
+		int topBit = (cols - 1) & 63;
+		if (topBit != 63) {
+			dest[numWords - 1] &= (1L << (topBit + 1)) - 1;
+		}
+	}
+
+	/* Packs a chunk's row and column into one key.  The chunk 2^31 * 64 rows above the
+	 * window would clash with LongHashSet.EMPTY, but nothing can travel that far.
+	 */
+	private static long key(long chunkRow, long chunkCol) {
+		return (chunkRow << 32) | (chunkCol & 0xffffffffL);
+	}
+
+}
@@ -0,0 +1,270 @@
+package cellularAutomata;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/* This class notices when a Grid has settled into a cycle, that is, when the living
+ * cells of the whole grid (the Game of Life region and the input rows) come back to a
+ * state they were in before.  With a CARowMaker as the input source, the next
+ * generation depends on nothing else, so from then on the grid repeats forever, and
+ * Grid.advance can jump over whole periods instead of running them (see Grid.advance).
+ *
+ * It is attached with Grid.setCycleDetector, and the grid then calls record after every
+ * time step, like it does for an ActivityHeatmap.  The state is hashed with a
+ * ZobristHash, and the hashes of the last 'window' generations are kept in a ring, along
+ * with a LongIntHashMap from each hash to its place in the ring.  When a hash turns up
+ * that is already in the ring, the difference in generations is a possible period, and
+ * the cycle is confirmed once the hashes have matched the ones a period earlier for a
+ * whole period.  So periods of up to 'window' generations are found after at most two
+ * periods of the cycle, and a false match would need two different states to have the
+ * same hash over and over again.
+ *
+ * While the cycle is being confirmed, the detector also remembers which cells are alive
+ * at some point in it.  Those cells have the same age every period, and every other cell
+ * just gets older, which is what lets Grid.advance work out the ages after a jump.
+ */
+public class CycleDetector {
+
+	public static final int DEFAULT_WINDOW = 4096;
+
+	private final ZobristHash hash;
+	private final long[] hashes; // the hash of generation g is hashes[g % window]
+	private final long[] generations; // the generation in each place of the ring
+	private final LongIntHashMap places = new LongIntHashMap(); // hash -> place in the ring
+	private final int numRows, cols;
+	private long generation = -1; // the latest generation recorded
+
+	/* the cycle, once one has been seen */
+	private long period = 0; // 0 if there is no cycle (yet)
+	private long cycleStart; // the first generation of the cycle
+	private long matched; // the number of generations that have matched so far
+	private boolean confirmed = false;
+	private final long[][] everAlive; // the cells alive at some point in the cycle
+	private final long[] everAliveInput; // the columns alive in an input row of the cycle
+
+	/* Constructor for CycleDetector, for a grid of the usual size, which finds periods of
+	 * up to 'window' generations.
+	 */
+	public CycleDetector(int window) {
+		this(Grid.NUM_GRID_ROWS, Grid.NUM_GRID_COLS, Grid.NUM_INPUT_ROWS, window);
+	}
+
+	public CycleDetector() {
+		this(DEFAULT_WINDOW);
+	}
+
+	/* Constructor for CycleDetector, for a grid of any size. */
+	public CycleDetector(int numRows, int cols, int numInputRows, int window) {
+		if (window < 1) {
+			throw new IllegalArgumentException("Illegal Window: " + window);
+		}
+		this.numRows = numRows;
+		this.cols = cols;
+		hash = new ZobristHash(numRows, cols, numInputRows);
+		hashes = new long[window];
+		generations = new long[window];
+		everAlive = new long[numRows][PackedLife.words(cols)];
+		everAliveInput = new long[PackedLife.words(cols)];
+	}
+
+	/* Forgets everything and starts watching from the given state.  This is called by the
+	 * Grid when the detector is attached, and whenever the grid changes by anything other
+	 * than a single time step (a reset, a restore or a jump).
+	 */
+	public void begin(LifeEngine engine, int[][] inputRows, long generation) {
+		hash.begin(engine, inputRows);
+		places.clear();
+		Arrays.fill(generations, Long.MIN_VALUE);
+		this.generation = generation - 1;
+		period = 0;
+		confirmed = false;
+		add(hash.getHash());
+	}
+
+	/* Carries on from a later generation, which the grid got to without recording the
+	 * generations in between (with Grid.advance).  If the cycle was confirmed and the
+	 * new state is the one the cycle says it should be, the ring is filled in from the
+	 * cycle and it stays confirmed, otherwise this is the same as begin.
+	 */
+	public void jumpTo(LifeEngine engine, int[][] inputRows, long newGeneration) {
+		hash.begin(engine, inputRows);
+		if (!confirmed || newGeneration < generation
+				|| hash.getHash() != hashInCycle(newGeneration)) {
+			begin(engine, inputRows, newGeneration);
+			return;
+		}
+		long[] oldHashes = hashes.clone();
+		long[] oldGenerations = generations.clone();
+		long first = Math.max(cycleStart, newGeneration - hashes.length + 1);
+		for (long g = first; g <= newGeneration; g++) {
+			if (oldGenerations[(int) (sameInCycle(g) % hashes.length)] != sameInCycle(g)) {
+				begin(engine, inputRows, newGeneration); // that part of the ring is gone
+				return;
+			}
+		}
+		Arrays.fill(generations, Long.MIN_VALUE);
+		places.clear();
+		for (long g = first; g <= newGeneration; g++) {
+			int place = (int) (g % hashes.length);
+			hashes[place] = oldHashes[(int) (sameInCycle(g) % hashes.length)];
+			generations[place] = g;
+			if (!places.containsKey(hashes[place])) {
+				places.put(hashes[place], place);
+			}
+		}
+		generation = newGeneration;
+	}
+	
+	/* Returns the generation of the last period recorded that is at the same point of the
+	 * cycle as a later generation.
+	 */
+	private long sameInCycle(long later) {
+		return generation - Math.floorMod(generation - later, period);
+	}
+	
+	/* Returns the hash a later generation should have, or the current hash with its bits
+	 * flipped if that part of the ring is gone (so that it never matches).
+	 */
+	private long hashInCycle(long later) {
+		long same = sameInCycle(later);
+		int place = (int) (same % hashes.length);
+		return (generations[place] == same) ? hashes[place] : ~hash.getHash();
+	}
+	
+	/* Records the time step the engine just did.  'newInputRow' is the new bottom row of
+	 * the input.
+	 */
+	public void record(LifeEngine engine, int[] newInputRow) {
+		hash.record(engine, newInputRow);
+		long current = hash.getHash();
+
+		if (period > 0) {
+			if (current != hashes[(int) ((generation + 1 - period) % hashes.length)]) {
+				period = 0; // it wasn't a cycle after all
+				confirmed = false;
+			} else if (!confirmed) {
+				orInto(everAlive, hash.getLiveBits(), newInputRow);
+				if (++matched >= period) {
+					confirmed = true;
+				}
+			}
+		}
+		if (period == 0) {
+			int place = places.get(current, -1);
+			if (place >= 0 && hashes[place] == current
+					&& generations[place] > generation - hashes.length) {
+				period = generation + 1 - generations[place];
+				cycleStart = generations[place];
+				matched = 0;
+				for (long[] row : everAlive) {
+					Arrays.fill(row, 0);
+				}
+				Arrays.fill(everAliveInput, 0);
+				orInto(everAlive, hash.getLiveBits(), newInputRow);
+			}
+		}
+		add(current);
+	}
+
+	/* Puts the hash of the next generation in the ring.  The map is rebuilt from the ring
+	 * once it has too many hashes that have left the ring, since nothing can be removed
+	 * from a LongIntHashMap.
+	 */
+	private void add(long current) {
+		generation++;
+		int place = (int) (generation % hashes.length);
+		hashes[place] = current;
+		generations[place] = generation;
+		if (places.size() >= 2 * hashes.length) {
+			places.clear();
+			for (long g = Math.max(0, generation - hashes.length + 1); g < generation; g++) {
+				int p = (int) (g % hashes.length);
+				if (generations[p] == g && !places.containsKey(hashes[p])) {
+					places.put(hashes[p], p);
+				}
+			}
+		}
+		int existing = places.get(current, -1);
+		if (existing < 0 || hashes[existing] != current
+				|| generations[existing] <= generation - hashes.length) {
+			places.put(current, place); // keep the earliest place of each hash
+		}
+	}
+
+	private void orInto(long[][] cells, long[][] liveBits, int[] newInputRow) {
+		for (int row = 0; row < numRows; row++) {
+			for (int w = 0; w < cells[row].length; w++) {
+				cells[row][w] |= liveBits[row][w];
+			}
+		}
+		for (int col = 0; col < cols; col++) {
+			if (newInputRow[col] == 0) {
+				everAliveInput[col >>> 6] |= 1L << col;
+			}
+		}
+	}
+
+	/* Returns true once the grid is known to be repeating. */
+	public boolean isConfirmed() {
+		return confirmed;
+	}
+
+	/* Returns the period of the cycle once it is confirmed, otherwise 0. */
+	public long getPeriod() {
+		return confirmed ? period : 0;
+	}
+
+	/* Returns the first generation of the cycle, if it is confirmed. */
+	public long getCycleStart() {
+		return cycleStart;
+	}
+
+	/* Returns the hash of the latest generation recorded. */
+	public long getHash() {
+		return hash.getHash();
+	}
+
+	/* Returns true if the cell of the Game of Life region is alive at some point in the
+	 * cycle, which must be confirmed.
+	 */
+	public boolean isAliveInCycle(int row, int col) {
+		return ((everAlive[row][col >>> 6] >>> col) & 1) != 0;
+	}
+
+	/* Returns true if the column is alive in any of the input rows made during the
+	 * cycle, which must be confirmed.
+	 */
+	public boolean isInputAliveInCycle(int col) {
+		return ((everAliveInput[col >>> 6] >>> col) & 1) != 0;
+	}
+
+	/* Runs each of the rules on the command line (a comma-separated list, or every rule
+	 * from 0 to 255 by default) until the grid settles into a cycle or 'limit' generations
+	 * have gone by (100000 by default), and prints when each one settled and its period.
+	 */
+	public static void main(String[] args) {
+		final int[] rules = (args.length > 0)
+				? Arrays.stream(args[0].split(",")).mapToInt(Integer::parseInt).toArray()
+				: IntStream.range(0, 256).toArray();
+		final long limit = (args.length > 1) ? Long.parseLong(args[1]) : 100000;
+
+		String[] lines = IntStream.range(0, rules.length).parallel().mapToObj(i -> {
+			Grid grid = new Grid(new CARowMaker(rules[i]));
+			grid.setEngine("stamped");
+			CycleDetector detector = new CycleDetector();
+			grid.setCycleDetector(detector);
+			while (!detector.isConfirmed() && grid.getGeneration() < limit) {
+				grid.update();
+			}
+			if (!detector.isConfirmed()) {
+				return String.format("rule %3d: no cycle within %d generations", rules[i], limit);
+			}
+			return String.format("rule %3d: period %d from generation %d (found at %d)",
+					rules[i], detector.getPeriod(), detector.getCycleStart(), grid.getGeneration());
+		}).toArray(String[]::new);
+		for (String line : lines) {
+			System.out.println(line);
+		}
+	}
+
+}
@@ -0,0 +1,54 @@
+package cellularAutomata;
+
+import java.util.Arrays;
+import java.util.List;
+
+/* This class times the LifeEngines against each other on the same work.  A run of a
+ * real Grid is recorded first (see EngineValidator.Recording), so every engine is given
+ * exactly the same starting state and input rows, and the time spent making the input
+ * rows isn't counted.  Each engine is run through the whole recording once to let the
+ * JIT compiler warm up, and then timed on a second run, one step at a time just like
+ * Grid.update does.
+ */
+public class EngineBenchmark {
+
+	/* Runs the engine through the recording and returns the time it took, in
+	 * nanoseconds.
+	 */
+	public static long time(LifeEngine engine, EngineValidator.Recording recording) {
+		engine.load(recording.start);
+		long start = System.nanoTime();
+		for (int[] input : recording.inputs) {
+			engine.step(input);
+		}
+		long elapsed = System.nanoTime() - start;
+		engine.getAges(); // engines that work out the ages lazily still have to do it once
+		return elapsed;
+	}
+
+	/* Times the engines named on the command line, or every registered engine if there
+	 * are none.  The first argument is the number of generations (20000 by default), and
+	 * the second is the rule used to make the input (30 by default).  The engines after
+	 * that can be given as a comma-separated list.
+	 */
+	public static void main(String[] args) {
+		int generations = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+		int rule = (args.length > 1) ? Integer.parseInt(args[1]) : 30;
+		List<String> names = (args.length > 2) ? Arrays.asList(args[2].split(","))
+				: LifeEngines.getNames();
+
+		EngineValidator.Recording recording = EngineValidator.Recording.record(
+				new CARowMaker(rule), 500, generations);
+		long cells = (long) recording.start.length * recording.start[0].length;
+		System.out.println(generations + " generations of " + recording.start.length + "x"
+				+ recording.start[0].length + ", rule " + rule);
+
+		for (String name : names) {
+			time(LifeEngines.create(name), recording); // warm up
+			long nanos = time(LifeEngines.create(name), recording);
+			System.out.printf("%-10s %8d ms %8.2f ns per cell%n", name, nanos / 1000000,
+					(double) nanos / (cells * generations));
+		}
+	}
+
+}
@@ -0,0 +1,249 @@
+package cellularAutomata;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/* This class checks a LifeEngine against the ReferenceEngine (GameOfLife.updateGrid).
+ * Both engines are started from the same state and given the same input rows, and the
+ * ages are compared after every generation.  If they ever differ, the first generation
+ * and cell where that happened is reported, which is usually enough to track down the
+ * bug.  An engine that passes on a wide range of states can then be used in place of
+ * the reference with confidence.
+ *
+ * Two kinds of states are used:
+ *     - random states, with random sizes, random ages and random input rows, which are
+ *       good at finding edge cases the real simulation rarely produces,
+ *     - recorded states, taken from running a real Grid with some rule.  These can be
+ *       saved to a file and replayed later, for example to check a bug fix.
+ *
+ * The main method runs both kinds against the engine named on the command line.
+ */
+public class EngineValidator {
+
+	private static final int RECORDING_MAGIC = 0x43414c52; // "CALR"
+
+	/* The first place where the engine being checked disagreed with the reference. */
+	public static class Divergence {
+		public final int generation, row, col, expected, actual;
+
+		private Divergence(int generation, int row, int col, int expected, int actual) {
+			this.generation = generation;
+			this.row = row;
+			this.col = col;
+			this.expected = expected;
+			this.actual = actual;
+		}
+
+		@Override
+		public String toString() {
+			return "generation " + generation + ", cell (" + row + ", " + col + "): expected "
+					+ expected + " but got " + actual;
+		}
+	}
+
+	/* A starting state for the Game of Life region along with the input rows to feed
+	 * it.  inputs[g] is the top row of the input for generation g.
+	 */
+	public static class Recording {
+		public final int[][] start;
+		public final int[][] inputs;
+
+		public Recording(int[][] start, int[][] inputs) {
+			this.start = start;
+			this.inputs = inputs;
+		}
+
+		/* Runs a Grid with the given rule for 'warmup' time steps, and then records
+		 * the next 'generations' time steps.
+		 */
+		public static Recording record(CARowMaker rowMaker, int warmup, int generations) {
+			Grid grid = new Grid(rowMaker);
+			for (int i = 0; i < warmup; i++) {
+				grid.update();
+			}
+			int[][] start = copy(grid.getGameOfLifeRegion());
+			int[][] inputs = new int[generations][];
+			for (int g = 0; g < generations; g++) {
+				grid.update();
+				inputs[g] = grid.getInputRegion()[0].clone();
+			}
+			return new Recording(start, inputs);
+		}
+
+		/* Makes a random state of the given size.  The density of living cells is
+		 * itself random, so that both sparse and crowded grids are covered.
+		 */
+		public static Recording random(Random random, int numRows, int numCols, int generations) {
+			double density = random.nextDouble();
+			int[][] start = new int[numRows][numCols];
+			for (int[] row : start) {
+				for (int col = 0; col < numCols; col++) {
+					row[col] = (random.nextDouble() < density) ? 0 : 1 + random.nextInt(200000);
+				}
+			}
+			int[][] inputs = new int[generations][numCols];
+			for (int[] row : inputs) {
+				for (int col = 0; col < numCols; col++) {
+					row[col] = (random.nextDouble() < density) ? 0 : 1 + random.nextInt(100);
+				}
+			}
+			return new Recording(start, inputs);
+		}
+
+		public void write(Path file) throws IOException {
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(file)))) {
+				out.writeInt(RECORDING_MAGIC);
+				out.writeInt(start.length);
+				out.writeInt(start[0].length);
+				out.writeInt(inputs.length);
+				for (int[] row : start) {
+					for (int value : row) {
+						out.writeInt(value);
+					}
+				}
+				for (int[] row : inputs) {
+					for (int value : row) {
+						out.writeInt(value);
+					}
+				}
+			}
+		}
+
+		public static Recording read(Path file) throws IOException {
+			try (DataInputStream in = new DataInputStream(
+					new BufferedInputStream(Files.newInputStream(file)))) {
+				if (in.readInt() != RECORDING_MAGIC) {
+					throw new IOException("Not A Recording: " + file);
+				}
+				int numRows = in.readInt(), numCols = in.readInt(), generations = in.readInt();
+				int[][] start = new int[numRows][numCols];
+				int[][] inputs = new int[generations][numCols];
+				for (int[] row : start) {
+					for (int col = 0; col < numCols; col++) {
+						row[col] = in.readInt();
+					}
+				}
+				for (int[] row : inputs) {
+					for (int col = 0; col < numCols; col++) {
+						row[col] = in.readInt();
+					}
+				}
+				return new Recording(start, inputs);
+			}
+		}
+	}
+
+	/* Runs the engine against the reference on the given recording, one step at a time.
+	 * Returns the first divergence, or null if the engines agreed on every generation.
+	 */
+	public static Divergence compare(LifeEngine engine, Recording recording) {
+		return compare(engine, recording, 1);
+	}
+
+	/* Like compare above, but the engine is given 'batchSize' generations at a time
+	 * through LifeEngine.advance, so that engines that block generations together are
+	 * exercised.  The ages can then only be compared at the end of each batch.
+	 */
+	public static Divergence compare(LifeEngine engine, Recording recording, int batchSize) {
+		LifeEngine reference = new ReferenceEngine();
+		reference.load(recording.start);
+		engine.load(recording.start);
+
+		Divergence divergence = compareAges(0, reference.getAges(), engine.getAges());
+		int generations = recording.inputs.length;
+		for (int g = 0; g < generations && divergence == null; g += batchSize) {
+			int count = Math.min(batchSize, generations - g);
+			for (int i = 0; i < count; i++) {
+				reference.step(recording.inputs[g + i]);
+			}
+			if (count == 1) {
+				engine.step(recording.inputs[g]);
+			} else {
+				engine.advance(Arrays.copyOfRange(recording.inputs, g, g + count), count);
+			}
+			divergence = compareAges(g + count, reference.getAges(), engine.getAges());
+		}
+		return divergence;
+	}
+
+	private static Divergence compareAges(int generation, int[][] expected, int[][] actual) {
+		for (int row = 0; row < expected.length; row++) {
+			for (int col = 0; col < expected[row].length; col++) {
+				if (expected[row][col] != actual[row][col]) {
+					return new Divergence(generation, row, col, expected[row][col],
+							actual[row][col]);
+				}
+			}
+		}
+		return null;
+	}
+
+	private static int[][] copy(int[][] grid) {
+		int[][] result = new int[grid.length][];
+		for (int row = 0; row < grid.length; row++) {
+			result[row] = grid[row].clone();
+		}
+		return result;
+	}
+
+	/* Checks the engine named by the first argument.  The optional second argument is
+	 * the number of random states to try, and the optional third is a file containing a
+	 * Recording to replay as well.  Exits with status 1 if the engine ever diverged.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: EngineValidator <engine> [random trials] [recording file]");
+			System.out.println("Engines: " + LifeEngines.getNames());
+			return;
+		}
+		String name = args[0];
+		int trials = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+		boolean failed = false;
+
+		Random random = new Random(1);
+		for (int trial = 0; trial < trials && !failed; trial++) {
+			Recording recording = Recording.random(random, 2 + random.nextInt(70),
+					2 + random.nextInt(200), 1 + random.nextInt(40));
+			int batchSize = 1 + random.nextInt(8);
+			failed |= report(name, "random state " + trial + ", batches of " + batchSize,
+					compare(LifeEngines.create(name), recording, batchSize));
+		}
+
+		int[] rules = {30, 110, 90, 150, 101, 129, 45, 73};
+		for (int rule : rules) {
+			Recording recording = Recording.record(new CARowMaker(rule), 200, 300);
+			failed |= report(name, "rule " + rule, compare(LifeEngines.create(name), recording));
+			failed |= report(name, "rule " + rule + ", batches of 16",
+					compare(LifeEngines.create(name), recording, 16));
+		}
+
+		if (args.length > 2) {
+			Recording recording = Recording.read(Paths.get(args[2]));
+			failed |= report(name, args[2], compare(LifeEngines.create(name), recording));
+		}
+
+		System.out.println(failed ? "FAILED" : "All states matched the reference.");
+		if (failed) {
+			System.exit(1);
+		}
+	}
+
+	/* Prints a divergence, if there was one, and returns true if there was. */
+	private static boolean report(String name, String description, Divergence divergence) {
+		if (divergence != null) {
+			System.out.println(name + " diverged on " + description + " at " + divergence);
+			return true;
+		}
+		return false;
+	}
+
+}
@@ -1,5 +1,9 @@
 package cellularAutomata;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 /* This class will store all of the information about the current
  * state of the grid being displayed by the graphical interface.
  * This includes the entire region of the screen where Conway's
@@ -16,16 +20,23 @@ public class Grid {
 	public static final int NUM_GRID_COLS = 299;
 	public static final int NUM_INPUT_ROWS = 50;
 	
-	private CARowMaker rowMaker; // Creates new input rows
+	private static final int BATCH_SIZE = 1024; // time steps per batch in advance
+	
+	private InputSource inputSource; // Creates new input rows, usually a CARowMaker
 	
-	private int[][] gameOfLifeRegion; // main section of the grid
-	private int[][] inputRows; // input section (below the gameOfLifeRegion)
+	private LifeEngine engine = new ReferenceEngine(); // stores and updates the main section
+	private int[][] inputRows; // input section (below the main section)
+	
+	private long generation = 0; // number of time steps since the grid was last reset
+	private ActivityHeatmap heatmap; // counts how active each cell is, null if not wanted
+	private GridHistory history; // the last few generations, null if not wanted
+	private CycleDetector cycleDetector; // notices when the grid repeats, null if not wanted
 	
 	/* Instance initializer block that sets the entire grid to be full of dead cells, 
 	 * except for a single living cell at the bottom of the input.
 	 */
 	{
-		gameOfLifeRegion = new int[NUM_GRID_ROWS][NUM_GRID_COLS]; 
+		int[][] gameOfLifeRegion = new int[NUM_GRID_ROWS][NUM_GRID_COLS]; 
 		for (int i = 0; i < NUM_GRID_ROWS; i++) {
 			for (int j = 0; j < NUM_GRID_COLS; j++) {
 				gameOfLifeRegion[i][j] = 100000; // all cells start as dead
@@ -42,13 +53,21 @@ public class Grid {
 		// place the single living cell in the center of the bottom row
 		inputRows[NUM_INPUT_ROWS - 1][NUM_GRID_COLS / 2] = 0;
 		
+		engine.load(gameOfLifeRegion);
 	}
 	
 	/* Constructor that has one parameter, a CARowMaker object, and uses
 	 * that parameter to generate new input rows.
 	 */
 	public Grid(CARowMaker rowMaker) {
-		this.rowMaker = rowMaker;		
+		this((InputSource) rowMaker);
+	}
+	
+	/* Constructor that takes the new input rows from any InputSource, for example a
+	 * ChannelInputSource that reads them from a file.
+	 */
+	public Grid(InputSource inputSource) {
+		this.inputSource = inputSource;
 	}
 	
 	/* No-arg constructor, defaults to rule 30 for the input. */
@@ -64,15 +83,24 @@ public class Grid {
 	 * on the grid. */
 	
 	public int[][] getGameOfLifeRegion() {
-		return gameOfLifeRegion;
+		return engine.getAges();
 	}
 	
 	public int[][] getInputRegion() {
 		return inputRows;
 	}
 	
+	/* Copies the live/dead state of the gameOfLifeRegion into 'dest' (NUM_GRID_ROWS rows
+	 * of PackedLife.words(NUM_GRID_COLS) longs), packed as in PackedLife.packRow.  For
+	 * the engines that keep the cells packed, this is much quicker than looking at the
+	 * ages.
+	 */
+	public void copyLiveBits(long[][] dest) {
+		engine.copyLiveBits(dest);
+	}
+	
 	/* This method performs a single time step in the game.  It will shift the input rows up, 
-	 * create a new bottom row for the input using the CARowMaker instance variable,
+	 * create a new bottom row for the input using the InputSource instance variable,
 	 * and then use the new top row of input to update the gameOfLifeRegion. */
 	public void update() {
 		
@@ -82,11 +110,199 @@ public class Grid {
 		}
 		
 		/* create the new bottom row */
-		inputRows[NUM_INPUT_ROWS - 1] = rowMaker.nextRow(inputRows[NUM_INPUT_ROWS - 1]);
+		inputRows[NUM_INPUT_ROWS - 1] = inputSource.nextRow(inputRows[NUM_INPUT_ROWS - 1]);
 		
 		/* update the gameOfLifeRegion using the new top input row */
-		gameOfLifeRegion = GameOfLife.updateGrid(gameOfLifeRegion, inputRows[0]);
+		engine.step(inputRows[0]);
+		generation++;
+		if (heatmap != null) {
+			heatmap.record(engine);
+		}
+		if (history != null) {
+			history.record(engine, inputRows[NUM_INPUT_ROWS - 1]);
+		}
+		if (cycleDetector != null) {
+			cycleDetector.record(engine, inputRows[NUM_INPUT_ROWS - 1]);
+		}
+		
+	}
+	
+	/* Performs 'generations' time steps, with exactly the same result as calling update
+	 * that many times, but much faster.  This is meant for skipping ahead without drawing
+	 * anything in between.  The monitor (which may be null) is told about the progress
+	 * every BATCH_SIZE time steps, and can cancel the run, in which case the grid is left
+	 * as it is after the last whole batch.  Returns the number of time steps performed.
+	 * 
+	 * The time steps are handed to the engine BATCH_SIZE at a time through 
+	 * LifeEngine.advance, so engines that block several generations together can do so.
+	 * Engines that keep ages for every cell have to write to every cell on every time 
+	 * step, so for those the run is done by a StampedLife instead, which only works out
+	 * the ages once at the end, and the result is then loaded back into the engine.  
+	 * Every engine gives the same results, so this makes no difference to the grid.  The
+	 * exception is ChunkedUniverse, which has no edges, so it always does its own run.
+	 * TiledLife is swapped out as well: its tiles need a halo as wide as the number of
+	 * generations blocked together, so a whole batch would make the grid a single tile,
+	 * which is slower than a StampedLife.  Its blocking pays off for shorter runs handed
+	 * to TiledLife.advance directly.
+	 * 
+	 * If a CycleDetector is attached and has found that the grid repeats, whole periods
+	 * are not run at all (see jumpCycles), so this takes no longer than one period.
+	 * Until it has, the batches are run one time step at a time, like with a heatmap, so
+	 * that the detector sees every generation, and the jump is tried again after each
+	 * batch.  So a grid that settles down part of the way through is only run until the
+	 * end of the batch in which the cycle is confirmed.
+	 */
+	public long advance(long generations, AdvanceMonitor monitor) {
+		if (generations < 0) {
+			throw new IllegalArgumentException("Illegal Number of Generations: " + generations);
+		}
+		long jumped = jumpCycles(generations);
+		if (jumped > 0) {
+			if (monitor != null) {
+				monitor.progress(jumped, generations);
+			}
+			return jumped + advance(generations - jumped, monitor);
+		}
+		LifeEngine runner = (engine instanceof StampedLife || engine instanceof SparseLife 
+				|| engine instanceof ChunkedUniverse) ? engine : new StampedLife();
+		if (runner != engine) {
+			runner.load(engine.getAges());
+		}
+		
+		boolean watching = canWatchCycles() && !canJumpCycles();
+		long done = 0;
+		int[][] inputs = new int[BATCH_SIZE][];
+		int[][] newInputs = new int[BATCH_SIZE][]; // the new bottom row of each time step
+		try {
+			while (done < generations && (monitor == null || !monitor.isCancelled())) {
+				int batch = (int) Math.min(BATCH_SIZE, generations - done);
+				
+				/* make the input rows for the whole batch, exactly like update does */
+				int made = 0;
+				try {
+					for (; made < batch; made++) {
+						System.arraycopy(inputRows, 1, inputRows, 0, NUM_INPUT_ROWS - 1);
+						inputRows[NUM_INPUT_ROWS - 1] = 
+								inputSource.nextRow(inputRows[NUM_INPUT_ROWS - 2]);
+						inputs[made] = inputRows[0];
+						newInputs[made] = inputRows[NUM_INPUT_ROWS - 1];
+					}
+				} finally {
+					/* if the input source failed, still use the rows it did make.  A 
+					 * heatmap or a cycle detector that is still watching has to see every
+					 * generation, so then the batch can't be handed over in one go.
+					 */
+					if (heatmap == null && !watching) {
+						runner.advance(inputs, made);
+					} else {
+						for (int g = 0; g < made; g++) {
+							runner.step(inputs[g]);
+							if (heatmap != null) {
+								heatmap.record(runner);
+							}
+							if (watching) {
+								cycleDetector.record(runner, newInputs[g]);
+							}
+						}
+					}
+					generation += made;
+					done += made;
+				}
+				if (monitor != null) {
+					monitor.progress(done, generations);
+				}
+				if (watching && canJumpCycles()) {
+					break;
+				}
+			}
+		} finally {
+			if (runner != engine) {
+				engine.load(runner.getAges());
+			}
+			if (history != null && done > 0) {
+				history.begin(engine, inputRows, generation);
+			}
+			if (cycleDetector != null && done > 0 && !watching) {
+				cycleDetector.jumpTo(engine, inputRows, generation);
+			}
+		}
+		if (done < generations && canJumpCycles()
+				&& (monitor == null || !monitor.isCancelled())) {
+			return done + advance(generations - done, monitor);
+		}
+		return done;
+	}
+	
+	/* Same as above, without a monitor. */
+	public long advance(long generations) {
+		return advance(generations, null);
+	}
+	
+	/* Returns true if whole periods could be skipped once the cycle detector has found a
+	 * cycle (see jumpCycles).
+	 */
+	private boolean canWatchCycles() {
+		return cycleDetector != null && heatmap == null && inputSource instanceof CARowMaker
+				&& !(engine instanceof ChunkedUniverse);
+	}
+	
+	/* Returns true if whole periods can be skipped right now. */
+	private boolean canJumpCycles() {
+		return canWatchCycles() && cycleDetector.isConfirmed()
+				&& generation - cycleDetector.getCycleStart() >= NUM_INPUT_ROWS;
+	}
+	
+	/* Skips as many whole periods as fit in 'generations', if the cycle detector has
+	 * confirmed that the grid repeats, and returns the number of generations skipped (0 if
+	 * it can't).  The living cells are the same after a whole period, and so are the ages
+	 * of the cells that are alive at some point in the cycle.  Every other cell stays dead
+	 * throughout, so it just gets older by the number of generations skipped (stopping at
+	 * Integer.MAX_VALUE, like StampedLife).  The same goes for the columns of the input.
+	 * 
+	 * This is only done when the next input row depends on nothing but the row before
+	 * (a CARowMaker), the whole input region is part of the cycle, and there is no
+	 * heatmap, which would have to see every generation.  It also isn't done for the
+	 * "unbounded" engine, which remembers cells that the detector can't see.
+	 */
+	private long jumpCycles(long generations) {
+		if (!canJumpCycles()) {
+			return 0;
+		}
+		long period = cycleDetector.getPeriod();
+		long skipped = generations - generations % period;
+		if (skipped == 0) {
+			return 0;
+		}
+		
+		int[][] ages = engine.getAges();
+		int[][] newAges = new int[ages.length][];
+		for (int row = 0; row < ages.length; row++) {
+			newAges[row] = ages[row].clone();
+			for (int col = 0; col < newAges[row].length; col++) {
+				if (!cycleDetector.isAliveInCycle(row, col)) {
+					newAges[row][col] = (int) Math.min(newAges[row][col] + skipped, 
+							Integer.MAX_VALUE);
+				}
+			}
+		}
+		for (int row = 0; row < NUM_INPUT_ROWS; row++) {
+			int[] newRow = inputRows[row].clone();
+			for (int col = 0; col < newRow.length; col++) {
+				if (!cycleDetector.isInputAliveInCycle(col)) {
+					newRow[col] = (int) Math.min(newRow[col] + skipped, Integer.MAX_VALUE);
+				}
+			}
+			inputRows[row] = newRow;
+		}
+		engine.load(newAges);
+		generation += skipped;
 		
+		/* still the same cycle, so it doesn't have to be found all over again */
+		cycleDetector.jumpTo(engine, inputRows, generation);
+		if (history != null) {
+			history.begin(engine, inputRows, generation);
+		}
+		return skipped;
 	}
 	
 	/* This method is essentially identical to the instance initializer block at the top
@@ -94,7 +310,7 @@ public class Grid {
 	 * living cell in the bottom of the input.  
 	 */
 	public void resetGrid() {
-		gameOfLifeRegion = new int[NUM_GRID_ROWS][NUM_GRID_COLS]; 
+		int[][] gameOfLifeRegion = new int[NUM_GRID_ROWS][NUM_GRID_COLS]; 
 		for (int i = 0; i < NUM_GRID_ROWS; i++) {
 			for (int j = 0; j < NUM_GRID_COLS; j++) {
 				gameOfLifeRegion[i][j] = 100000; // all cells start as dead
@@ -110,6 +326,264 @@ public class Grid {
 		
 		// place the single living cell in the center of the bottom row
 		inputRows[NUM_INPUT_ROWS - 1][NUM_GRID_COLS / 2] = 0;
+		
+		engine.load(gameOfLifeRegion);
+		generation = 0;
+		if (heatmap != null) {
+			heatmap.begin(engine);
+		}
+		if (history != null) {
+			history.begin(engine, inputRows, generation);
+		}
+		if (cycleDetector != null) {
+			cycleDetector.begin(engine, inputRows, generation);
+		}
+	}
+	
+	/* Returns the number of time steps since the grid was created or last reset. */
+	public long getGeneration() {
+		return generation;
+	}
+	
+	/* This method changes the LifeEngine used to update the gameOfLifeRegion, by name
+	 * (see LifeEngines for the names available).  Every engine produces exactly the same
+	 * grid (apart from "unbounded", which also keeps whatever has left the grid), so the 
+	 * new engine simply takes over the current state, and this can be done at any point 
+	 * without restarting the animation.  An IllegalArgumentException is
+	 * thrown if there is no engine with the given name.
+	 */
+	public void setEngine(String engineName) {
+		LifeEngine newEngine = LifeEngines.create(engineName);
+		newEngine.load(engine.getAges());
+		engine = newEngine;
+	}
+	
+	public String getEngineName() {
+		return engine.getName();
+	}
+	
+	/* Attaches a heatmap, which is then updated after every time step from now on, or
+	 * detaches the current one if the parameter is null.  The heatmap must be the same
+	 * size as the gameOfLifeRegion.  Its counts are kept when the grid is reset, so a
+	 * heatmap can cover several runs.
+	 */
+	public void setHeatmap(ActivityHeatmap newHeatmap) {
+		if (newHeatmap != null) {
+			if (newHeatmap.getNumRows() != NUM_GRID_ROWS || newHeatmap.getNumCols() != NUM_GRID_COLS) {
+				throw new IllegalArgumentException("Illegal Heatmap Size: " 
+						+ newHeatmap.getNumRows() + "x" + newHeatmap.getNumCols());
+			}
+			newHeatmap.begin(engine);
+		}
+		heatmap = newHeatmap;
+	}
+	
+	public ActivityHeatmap getHeatmap() {
+		return heatmap;
+	}
+	
+	/* Attaches a history, which then keeps a snapshot of every generation from now on
+	 * (see GridHistory), or detaches the current one if the parameter is null.  This is
+	 * needed for rewind.  Like a heatmap, the history costs a little on every time step:
+	 * copying the tiles of the region that changed.
+	 */
+	public void setHistory(GridHistory newHistory) {
+		if (newHistory != null) {
+			newHistory.begin(engine, inputRows, generation);
+		}
+		history = newHistory;
+	}
+	
+	public GridHistory getHistory() {
+		return history;
+	}
+	
+	/* Attaches a detector that notices when the grid starts repeating (see 
+	 * CycleDetector), or detaches the current one if the parameter is null.  Once it has
+	 * found a cycle, advance skips whole periods without running them.
+	 */
+	public void setCycleDetector(CycleDetector newDetector) {
+		if (newDetector != null) {
+			newDetector.begin(engine, inputRows, generation);
+		}
+		cycleDetector = newDetector;
+	}
+	
+	public CycleDetector getCycleDetector() {
+		return cycleDetector;
+	}
+	
+	/* Returns a snapshot of the current generation, which can be given to restore later,
+	 * on this grid or another one.  With a history attached this is just the latest
+	 * snapshot it has already made, so it takes no time at all.  Otherwise the whole grid
+	 * is copied.
+	 */
+	public GridSnapshot snapshot() {
+		if (history != null) {
+			return history.getLatest();
+		}
+		return GridSnapshot.capture(engine.getAges(), inputRows, generation);
+	}
+	
+	/* Puts the grid back to the state in the snapshot, including the generation number.
+	 * The snapshot must be of a grid of the same size.  The input source is left alone:
+	 * a CARowMaker only looks at the previous row, so the rows after the snapshot are
+	 * exactly the ones that came after it the first time, but a source that reads from
+	 * a file or stream just carries on from where it is.  With the "unbounded" engine,
+	 * anything that had left the grid is lost.  If there is a history, the generations
+	 * after the snapshot are dropped from it, and new ones are recorded from here.  A
+	 * snapshot that didn't come from the history (one from another Grid, say) has
+	 * nothing to do with what is in it, so then the history starts again from here.
+	 */
+	public void restore(GridSnapshot snapshot) {
+		if (snapshot.getNumRows() != NUM_GRID_ROWS || snapshot.getNumCols() != NUM_GRID_COLS) {
+			throw new IllegalArgumentException("Illegal Snapshot Size: " 
+					+ snapshot.getNumRows() + "x" + snapshot.getNumCols());
+		}
+		engine.load(snapshot.getAges());
+		inputRows = snapshot.getInputRegion();
+		generation = snapshot.getGeneration();
+		if (heatmap != null) {
+			heatmap.begin(engine);
+		}
+		if (history != null) {
+			if (history.find(generation) != snapshot) {
+				history.clear();
+			}
+			history.add(snapshot);
+		}
+		if (cycleDetector != null) {
+			cycleDetector.begin(engine, inputRows, generation);
+		}
+	}
+	
+	/* Goes back by the given number of generations, using the history, or as far back
+	 * as the history goes.  Returns the number of generations actually gone back.  An
+	 * IllegalStateException is thrown if there is no history attached.
+	 */
+	public long rewind(long generations) {
+		if (generations < 0) {
+			throw new IllegalArgumentException("Illegal Number of Generations: " + generations);
+		}
+		if (history == null || history.size() == 0) {
+			throw new IllegalStateException("No History To Rewind");
+		}
+		GridSnapshot snapshot = history.find(Math.max(generation - generations, 
+				history.getOldestGeneration()));
+		long rewound = generation - snapshot.getGeneration();
+		if (rewound > 0) {
+			restore(snapshot);
+		}
+		return rewound;
+	}
+	
+	/* Replaces the Game of Life region with a pattern from an RLE file (see RleReader),
+	 * centered in the region if the file gives its size, otherwise in the top left
+	 * corner.  Anything that doesn't fit is left out, and the rest of the region is dead.
+	 * The pattern is read a row at a time, so it can be far bigger than the grid.  The
+	 * input rows and the generation number are left alone.
+	 */
+	public void readRle(Path file) throws IOException {
+		int[][] gameOfLifeRegion = new int[NUM_GRID_ROWS][];
+		long[] bits = new long[PackedLife.words(NUM_GRID_COLS)];
+		try (RleReader reader = new RleReader(Files.newInputStream(file))) {
+			long firstRow = (reader.getHeight() < 0) ? 0 : (NUM_GRID_ROWS - reader.getHeight()) / 2;
+			long shift = (reader.getWidth() < 0) ? 0 : (NUM_GRID_COLS - reader.getWidth()) / 2;
+			
+			/* the rows above the top of the grid are read without keeping anything */
+			while (reader.getRow() < -firstRow && reader.nextRow(bits, 0, 0)) {
+			}
+			for (int row = 0; row < NUM_GRID_ROWS; row++) {
+				boolean inPattern = row >= firstRow && reader.nextRow(bits, shift, NUM_GRID_COLS);
+				gameOfLifeRegion[row] = unpackRow(inPattern ? bits : null);
+			}
+		}
+		engine.load(gameOfLifeRegion);
+		patternLoaded();
+	}
+	
+	/* Replaces the input rows with a pattern from an RLE file.  The last row of the
+	 * pattern becomes the bottom input row, which is the one the next row is made from,
+	 * so a pattern of a single row is all it takes to seed a CARowMaker.  The columns are
+	 * centered like in readRle, and if the pattern has more rows than the input, only the
+	 * last NUM_INPUT_ROWS of them are kept.
+	 */
+	public void readInputRle(Path file) throws IOException {
+		int words = PackedLife.words(NUM_GRID_COLS);
+		long[][] lastRows = new long[NUM_INPUT_ROWS][words]; // a ring, row r is at r % NUM_INPUT_ROWS
+		long[] bits = new long[words];
+		long numRows = 0;
+		try (RleReader reader = new RleReader(Files.newInputStream(file))) {
+			long shift = (reader.getWidth() < 0) ? 0 : (NUM_GRID_COLS - reader.getWidth()) / 2;
+			while (reader.nextRow(bits, shift, NUM_GRID_COLS)) {
+				System.arraycopy(bits, 0, lastRows[(int) (numRows % NUM_INPUT_ROWS)], 0, words);
+				numRows++;
+			}
+		}
+		int[][] newInputRows = new int[NUM_INPUT_ROWS][];
+		for (int row = 0; row < NUM_INPUT_ROWS; row++) {
+			long patternRow = numRows - NUM_INPUT_ROWS + row;
+			newInputRows[row] = unpackRow((patternRow >= 0)
+					? lastRows[(int) (patternRow % NUM_INPUT_ROWS)] : null);
+		}
+		inputRows = newInputRows;
+		patternLoaded();
+	}
+	
+	/* Writes the Game of Life region to an RLE file, which readRle (or any other Game of
+	 * Life program) can read back.  The rows are taken straight from the engine's packed
+	 * bits, so no ages are looked at.
+	 */
+	public void writeRle(Path file) throws IOException {
+		long[][] live = new long[NUM_GRID_ROWS][PackedLife.words(NUM_GRID_COLS)];
+		engine.copyLiveBits(live);
+		try (RleWriter writer = new RleWriter(Files.newOutputStream(file), NUM_GRID_COLS,
+				NUM_GRID_ROWS, "B3/S23", "Game of Life region at generation " + generation)) {
+			for (long[] row : live) {
+				writer.writeRow(row, NUM_GRID_COLS);
+			}
+		}
+	}
+	
+	/* Writes the input rows to an RLE file, which readInputRle can read back.  With a
+	 * CARowMaker, the rule is given as "W" and the rule number, as some programs do for
+	 * one-dimensional rules.
+	 */
+	public void writeInputRle(Path file) throws IOException {
+		String rule = (inputSource instanceof CARowMaker) 
+				? "W" + ((CARowMaker) inputSource).getRule() : null;
+		long[] bits = new long[PackedLife.words(NUM_GRID_COLS)];
+		try (RleWriter writer = new RleWriter(Files.newOutputStream(file), NUM_GRID_COLS,
+				NUM_INPUT_ROWS, rule, "Input rows at generation " + generation)) {
+			for (int[] row : inputRows) {
+				writer.writeRow(PackedLife.packRow(row, bits), NUM_GRID_COLS);
+			}
+		}
+	}
+	
+	/* Returns a row of ages with the cells whose bits are set alive, and the rest dead
+	 * (as if they had never been alive).  If 'bits' is null, the whole row is dead.
+	 */
+	private static int[] unpackRow(long[] bits) {
+		int[] row = new int[NUM_GRID_COLS];
+		for (int col = 0; col < NUM_GRID_COLS; col++) {
+			boolean alive = bits != null && ((bits[col >>> 6] >>> col) & 1) != 0;
+			row[col] = alive ? 0 : 100000; // all cells start as dead
+		}
+		return row;
+	}
+	
+	/* Starts the attachments again after readRle or readInputRle changed the grid. */
+	private void patternLoaded() {
+		if (heatmap != null) {
+			heatmap.begin(engine);
+		}
+		if (history != null) {
+			history.begin(engine, inputRows, generation);
+		}
+		if (cycleDetector != null) {
+			cycleDetector.begin(engine, inputRows, generation);
+		}
 	}
 	
 	/* This method allows the caller to change the Cellular Automata rule being used
@@ -117,7 +591,15 @@ public class Grid {
 	 * so it does not support changing the rule used in the middle of the animation.
 	 */
 	public void updateRule(CARowMaker newRule) {
-		rowMaker = newRule;
+		setInputSource(newRule);
+	}
+	
+	/* Like updateRule, but for any InputSource.  The grid is reset, and the first row 
+	 * the new source produces is the one after the single living cell at the bottom of
+	 * the input.  The old source is not closed.
+	 */
+	public void setInputSource(InputSource newSource) {
+		inputSource = newSource;
 		resetGrid();
 	}
 
@@ -0,0 +1,109 @@
+package cellularAutomata;
+
+/* This class keeps GridSnapshots of the last few generations of a Grid, so that the grid
+ * can be rewound (see Grid.rewind).  It is attached to a Grid with Grid.setHistory, and
+ * the Grid then calls record after every time step, the same way it does for an
+ * ActivityHeatmap.
+ *
+ * Each snapshot is made from the one before it with GridSnapshot.next, from the packed
+ * liveness bits of the engine, so recording a generation only copies the tiles that
+ * changed, and a snapshot of the latest generation is always on hand, which is what
+ * Grid.snapshot returns.  The snapshots are kept in a ring, and once it is full the
+ * oldest one is dropped (along with any tiles that no newer snapshot shares).  The
+ * generations kept are always consecutive: skipping ahead with Grid.advance starts the
+ * history again from the generation it ends at.
+ */
+public class GridHistory {
+
+	private final GridSnapshot[] snapshots; // a ring, the latest is at 'latest'
+	private int latest = -1;
+	private int size = 0;
+	private long[][] live; // scratch space for the liveness bits of the engine
+
+	/* Constructor for GridHistory, which keeps up to 'capacity' generations. */
+	public GridHistory(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Illegal Capacity: " + capacity);
+		}
+		snapshots = new GridSnapshot[capacity];
+	}
+
+	/* Forgets every generation and starts again from the given state.  This is called by
+	 * the Grid when the history is attached, when the grid is reset and whenever the
+	 * grid changes by more than a single time step.
+	 */
+	public void begin(LifeEngine engine, int[][] inputRows, long generation) {
+		clear();
+		add(GridSnapshot.capture(engine.getAges(), inputRows, generation));
+	}
+
+	/* Records the time step that the engine just did.  'newInputRow' is the new bottom
+	 * row of the input.
+	 */
+	public void record(LifeEngine engine, int[] newInputRow) {
+		GridSnapshot previous = getLatest();
+		if (live == null || live.length != previous.getNumRows()) {
+			live = new long[previous.getNumRows()][PackedLife.words(previous.getNumCols())];
+		}
+		engine.copyLiveBits(live);
+		add(previous.next(live, newInputRow));
+	}
+
+	/* Adds a snapshot as the latest generation, after dropping any that are not older
+	 * than it.  This is how a rewound grid carries on from the generation it was rewound
+	 * to, while the generations before that are kept.
+	 */
+	public void add(GridSnapshot snapshot) {
+		while (size > 0 && getLatest().getGeneration() >= snapshot.getGeneration()) {
+			snapshots[latest] = null;
+			latest = (latest + snapshots.length - 1) % snapshots.length;
+			size--;
+		}
+		latest = (latest + 1) % snapshots.length;
+		snapshots[latest] = snapshot;
+		size = Math.min(size + 1, snapshots.length);
+	}
+
+	/* Returns the snapshot of the latest generation, or null if there isn't one. */
+	public GridSnapshot getLatest() {
+		return (size == 0) ? null : snapshots[latest];
+	}
+
+	/* Returns the newest snapshot whose generation is no later than the given one, or
+	 * null if every snapshot kept is later.
+	 */
+	public GridSnapshot find(long generation) {
+		for (int i = 0; i < size; i++) {
+			GridSnapshot snapshot = snapshots[(latest - i + snapshots.length) % snapshots.length];
+			if (snapshot.getGeneration() <= generation) {
+				return snapshot;
+			}
+		}
+		return null;
+	}
+
+	/* Returns the earliest generation that can still be rewound to, or -1 if none. */
+	public long getOldestGeneration() {
+		return (size == 0) ? -1
+				: snapshots[(latest - size + 1 + snapshots.length) % snapshots.length].getGeneration();
+	}
+
+	/* Returns the number of generations kept. */
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return snapshots.length;
+	}
+
+	/* Forgets every generation. */
+	public void clear() {
+		for (int i = 0; i < snapshots.length; i++) {
+			snapshots[i] = null;
+		}
+		latest = -1;
+		size = 0;
+	}
+
+}
@@ -0,0 +1,209 @@
+package cellularAutomata;
+
+/* An unchangeable copy of one generation of a Grid: the Game of Life region, the input
+ * rows and the generation number.  Snapshots are taken with Grid.snapshot and put back
+ * with Grid.restore, which can also be a different Grid, to try something else from the
+ * same point.
+ *
+ * Keeping many generations as int[][] copies would cost a whole grid each, and the ages
+ * of all of the dead cells change on every time step, so no two generations have much
+ * in common.  So, like StampedLife, a snapshot stores the liveness bits of each cell
+ * along with the generation in which it last died (its "stamp"), and the ages are only
+ * worked out when asked for.  The stamps only change where cells die, so most of the
+ * region is the same from one generation to the next.  The region is split into tiles of
+ * TILE_ROWS rows by 64 columns (one word of bits), and a snapshot made from the one
+ * before it (see next) shares every tile that hasn't changed with it, and only copies
+ * the others.  Within a tile that did change, the stamps are kept in pieces of 16
+ * cells, and a piece is only copied if one of its cells died, since nothing else
+ * changes a stamp.  The
+ * input rows are shared in the same way, since each generation only adds one new row.
+ * Nothing in a snapshot is ever modified once it has been made, which is what makes the
+ * sharing safe.
+ */
+public final class GridSnapshot {
+
+	static final int TILE_ROWS = 16;
+	private static final int PIECE_SHIFT = 4; // the stamps are kept in pieces of 16 cells
+	private static final int PIECES = 64 >>> PIECE_SHIFT; // pieces per row of a tile
+	private static final int PIECE_MASK = (1 << PIECE_SHIFT) - 1;
+
+	/* One tile.  live[r] holds the bits of row r of the tile, and the stamp of column c
+	 * (relative to the tile) is diedAt[r * PIECES + c / 16][c % 16].  The last row of
+	 * tiles may be shorter.
+	 */
+	private static final class Tile {
+		private final long[] live;
+		private final long[][] diedAt;
+
+		private Tile(long[] live, long[][] diedAt) {
+			this.live = live;
+			this.diedAt = diedAt;
+		}
+	}
+
+	private final long generation;
+	private final int numRows, numCols;
+	private final int tileCols; // the number of tiles across, which is the number of words
+	private final Tile[] tiles; // tiles[tileRow * tileCols + tileCol]
+	private final int[][] inputRows;
+
+	private GridSnapshot(long generation, int numRows, int numCols, Tile[] tiles,
+			int[][] inputRows) {
+		this.generation = generation;
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.tileCols = PackedLife.words(numCols);
+		this.tiles = tiles;
+		this.inputRows = inputRows;
+	}
+
+	/* Makes a snapshot from scratch, copying everything.  The arrays are not changed. */
+	static GridSnapshot capture(int[][] ages, int[][] input, long generation) {
+		int numRows = ages.length;
+		int numCols = ages[0].length;
+		int tileCols = PackedLife.words(numCols);
+		int tileRows = (numRows + TILE_ROWS - 1) / TILE_ROWS;
+		Tile[] tiles = new Tile[tileRows * tileCols];
+		long[] bits = new long[tileCols];
+		for (int tileRow = 0; tileRow < tileRows; tileRow++) {
+			int firstRow = tileRow * TILE_ROWS;
+			int rows = Math.min(TILE_ROWS, numRows - firstRow);
+			for (int tileCol = 0; tileCol < tileCols; tileCol++) {
+				tiles[tileRow * tileCols + tileCol] = new Tile(new long[rows],
+						new long[rows * PIECES][1 << PIECE_SHIFT]);
+			}
+			for (int r = 0; r < rows; r++) {
+				int[] rowAges = ages[firstRow + r];
+				PackedLife.packRow(rowAges, bits);
+				for (int col = 0; col < numCols; col++) {
+					Tile tile = tiles[tileRow * tileCols + (col >>> 6)];
+					tile.live[r] = bits[col >>> 6];
+					tile.diedAt[piece(r, col)][col & PIECE_MASK] = generation - rowAges[col];
+				}
+			}
+		}
+
+		int[][] inputRows = new int[input.length][];
+		for (int row = 0; row < input.length; row++) {
+			inputRows[row] = input[row].clone();
+		}
+		return new GridSnapshot(generation, numRows, numCols, tiles, inputRows);
+	}
+
+	/* Makes the snapshot of the generation after this one, sharing everything that didn't
+	 * change.  'live' holds the liveness bits of the new generation, packed as in
+	 * PackedLife.packRow, and 'newInputRow' is the new bottom row of the input (which
+	 * is copied).  Only the words of 'live' are looked at, never the ages.
+	 */
+	GridSnapshot next(long[][] live, int[] newInputRow) {
+		long nextGeneration = generation + 1;
+		Tile[] nextTiles = new Tile[tiles.length];
+		for (int t = 0; t < tiles.length; t++) {
+			Tile tile = tiles[t];
+			int firstRow = (t / tileCols) * TILE_ROWS;
+			int word = t % tileCols;
+
+			boolean changed = false;
+			for (int r = 0; r < tile.live.length; r++) {
+				changed |= live[firstRow + r][word] != tile.live[r];
+			}
+			if (!changed) {
+				nextTiles[t] = tile;
+				continue;
+			}
+
+			long[] nextLive = new long[tile.live.length];
+			long[][] nextDiedAt = tile.diedAt.clone(); // the pieces are still shared
+			for (int r = 0; r < nextLive.length; r++) {
+				nextLive[r] = live[firstRow + r][word];
+
+				/* cells that died in this time step have an age of 1 in the next one */
+				long died = tile.live[r] & ~nextLive[r];
+				int copied = -1; // the last piece copied
+				while (died != 0) {
+					int col = Long.numberOfTrailingZeros(died);
+					int piece = piece(r, col);
+					if (piece != copied) {
+						nextDiedAt[piece] = tile.diedAt[piece].clone();
+						copied = piece;
+					}
+					nextDiedAt[piece][col & PIECE_MASK] = generation;
+					died &= died - 1;
+				}
+			}
+			nextTiles[t] = new Tile(nextLive, nextDiedAt);
+		}
+
+		int[][] nextInput = new int[inputRows.length][];
+		System.arraycopy(inputRows, 1, nextInput, 0, inputRows.length - 1);
+		nextInput[inputRows.length - 1] = newInputRow.clone();
+		return new GridSnapshot(nextGeneration, numRows, numCols, nextTiles, nextInput);
+	}
+
+	/* Returns the number of time steps the grid had done when this was taken. */
+	public long getGeneration() {
+		return generation;
+	}
+
+	public int getNumRows() {
+		return numRows;
+	}
+
+	public int getNumCols() {
+		return numCols;
+	}
+
+	/* Returns the age of a single cell of the Game of Life region. */
+	public int getAge(int row, int col) {
+		Tile tile = tiles[(row / TILE_ROWS) * tileCols + (col >>> 6)];
+		int r = row % TILE_ROWS;
+		if (((tile.live[r] >>> col) & 1) != 0) {
+			return 0;
+		}
+		return StampedLife.age(generation, tile.diedAt[piece(r, col)][col & PIECE_MASK]);
+	}
+
+	/* Returns the index in Tile.diedAt of the piece holding a cell of a tile. */
+	private static int piece(int r, int col) {
+		return r * PIECES + ((col & 63) >>> PIECE_SHIFT);
+	}
+
+	/* Returns a new copy of the ages of the Game of Life region, in the same format as
+	 * Grid.getGameOfLifeRegion.
+	 */
+	public int[][] getAges() {
+		int[][] ages = new int[numRows][numCols];
+		for (int row = 0; row < numRows; row++) {
+			for (int col = 0; col < numCols; col++) {
+				ages[row][col] = getAge(row, col);
+			}
+		}
+		return ages;
+	}
+
+	/* Returns a new copy of the input rows, in the same format as Grid.getInputRegion. */
+	public int[][] getInputRegion() {
+		int[][] copy = new int[inputRows.length][];
+		for (int row = 0; row < inputRows.length; row++) {
+			copy[row] = inputRows[row].clone();
+		}
+		return copy;
+	}
+
+	/* Returns the number of tiles, which is the same for every snapshot of a grid. */
+	public int getNumTiles() {
+		return tiles.length;
+	}
+
+	/* Returns the number of this snapshot's tiles that are not shared with 'other'. */
+	public int countTilesNotIn(GridSnapshot other) {
+		int count = 0;
+		for (int t = 0; t < tiles.length; t++) {
+			if (t >= other.tiles.length || other.tiles[t] != tiles[t]) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+}
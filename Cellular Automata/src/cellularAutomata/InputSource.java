@@ -0,0 +1,18 @@
+package cellularAutomata;
+
+/* An InputSource makes the rows that are fed into the bottom of the Game of Life region,
+ * one row for every time step.  CARowMaker is the usual one, which works out each row
+ * from the previous row with a 1-dimensional cellular automaton rule, but the rows could
+ * just as well come from somewhere else, such as a file or a socket (see
+ * ChannelInputSource).
+ */
+public interface InputSource {
+
+	/* Returns the next row of input, given the previous one.  The rows use the same
+	 * representation as everywhere else: 0 for a living cell, otherwise the number of
+	 * time steps since the cell died.  The new row must have the same length as the
+	 * previous one, and the previous row must not be modified.
+	 */
+	int[] nextRow(int[] row);
+
+}
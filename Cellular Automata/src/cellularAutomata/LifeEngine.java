@@ -0,0 +1,58 @@
+package cellularAutomata;
+
+/* A LifeEngine stores the Game of Life region of a Grid and updates it one time step at a
+ * time.  Grid.update hands each new top row of the input to its engine, so different
+ * ways of computing the Game of Life can be swapped in without changing anything else.
+ *
+ * Every engine must give exactly the same results as GameOfLife.updateGrid (which is
+ * wrapped by ReferenceEngine).  In particular the ages use the same representation: 0
+ * for a living cell, otherwise the number of time steps since the cell died.
+ * EngineValidator can be used to check an engine against the reference.  The one
+ * exception is ChunkedUniverse, which deliberately has no edges, and so only agrees with
+ * the reference until something reaches the top or the sides.
+ *
+ * Engines are created by name through LifeEngines.
+ */
+public interface LifeEngine {
+
+	/* Returns the name this engine is registered under in LifeEngines. */
+	String getName();
+
+	/* Replaces the state of the engine with the given ages.  The engine must make its
+	 * own copy, so the caller is free to modify the array afterwards.
+	 */
+	void load(int[][] ages);
+
+	/* Performs a single time step.  The parameter is the top row of the input, and must
+	 * not be modified.
+	 */
+	void step(int[] input);
+
+	/* Returns the ages of every cell.  Just like the getters in Grid, the caller must
+	 * not modify the returned array, and it is only guaranteed to be up to date until
+	 * the next call to step, advance or load.
+	 */
+	int[][] getAges();
+
+	/* Performs 'generations' time steps, where inputs[g] is the top row of the input for
+	 * generation g.  Engines that can do better than one step at a time (for example by
+	 * blocking several generations together) should override this.
+	 */
+	default void advance(int[][] inputs, int generations) {
+		for (int g = 0; g < generations; g++) {
+			step(inputs[g]);
+		}
+	}
+
+	/* Copies the live/dead state of every cell into 'dest', packed into bits in the same
+	 * way as PackedLife.packRow.  Engines that already keep the cells packed should
+	 * override this to avoid looking at the ages.
+	 */
+	default void copyLiveBits(long[][] dest) {
+		int[][] ages = getAges();
+		for (int row = 0; row < ages.length; row++) {
+			PackedLife.packRow(ages[row], dest[row]);
+		}
+	}
+
+}
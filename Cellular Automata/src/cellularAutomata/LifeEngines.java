@@ -0,0 +1,54 @@
+package cellularAutomata;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/* This class keeps track of every LifeEngine that can be selected by name, for example
+ * through Grid.setEngine.  The engines that come with the project are registered here,
+ * and other engines can be added at runtime with register.
+ */
+public class LifeEngines {
+
+	public static final String DEFAULT_ENGINE = "reference";
+
+	private static final Map<String, Supplier<LifeEngine>> engines = new LinkedHashMap<>();
+
+	static {
+		register("reference", ReferenceEngine::new);
+		register("packed", PackedLife::new);
+		register("tiled", TiledLife::new);
+		register("stamped", StampedLife::new);
+		register("sparse", SparseLife::new);
+		register("lookup", BlockLookupLife::new);
+		register("unbounded", ChunkedUniverse::new);
+		register("offheap", OffHeapLife::new);
+	}
+
+	/* Makes an engine available under the given name.  The supplier is called every time
+	 * an engine with that name is created, and must return a new engine each time.
+	 */
+	public static synchronized void register(String name, Supplier<LifeEngine> factory) {
+		engines.put(name, factory);
+	}
+
+	/* Creates a new engine with the given name.  Throws an IllegalArgumentException if
+	 * no engine has been registered under that name.  The engine has no state until
+	 * LifeEngine.load is called.
+	 */
+	public static synchronized LifeEngine create(String name) {
+		Supplier<LifeEngine> factory = engines.get(name);
+		if (factory == null) {
+			throw new IllegalArgumentException("Unknown Engine: " + name);
+		}
+		return factory.get();
+	}
+
+	/* Returns the names of every registered engine, in the order they were registered. */
+	public static synchronized List<String> getNames() {
+		return new ArrayList<>(engines.keySet());
+	}
+
+}
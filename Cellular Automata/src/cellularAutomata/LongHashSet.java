@@ -0,0 +1,125 @@
+package cellularAutomata;
+
+import java.util.Arrays;
+
+/* A set of longs that stores them directly in an array, rather than boxing each one into a
+ * Long like java.util.HashSet does.  It uses open addressing with linear probing: each key
+ * goes in the first free slot at or after the slot its hash points to.  The table is kept
+ * at most half full, so the runs of occupied slots stay short.
+ *
+ * EMPTY marks a free slot, so it can't be stored in the set.  Nothing can be removed
+ * either, only the whole set cleared, which is all the engines need.
+ *
+ * To loop over the keys without allocating anything, go through every slot from 0 to
+ * capacity() - 1 and skip the ones where keyAt returns EMPTY.
+ */
+public class LongHashSet {
+
+	public static final long EMPTY = Long.MIN_VALUE;
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private int size;
+	private int mask; // capacity - 1, the capacity is always a power of 2
+
+	public LongHashSet() {
+		this(MIN_CAPACITY);
+	}
+
+	/* Creates a set that can hold 'expectedSize' keys before it has to grow. */
+	public LongHashSet(int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+
+	/* Adds a key.  Returns true if it wasn't in the set already. */
+	public boolean add(long key) {
+		if (key == EMPTY) {
+			throw new IllegalArgumentException("Illegal Key: " + key);
+		}
+		int slot = slot(keys, mask, key);
+		if (keys[slot] == key) {
+			return false;
+		}
+		keys[slot] = key;
+		if (++size * 2 > keys.length) {
+			rehash(keys.length * 2);
+		}
+		return true;
+	}
+
+	public boolean contains(long key) {
+		return key != EMPTY && keys[slot(keys, mask, key)] == key;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/* Removes every key.  The table is shrunk if it's much bigger than it needs to be for
+	 * the number of keys that were in it, so that a set that was briefly large doesn't
+	 * keep making clear and iteration slow.
+	 */
+	public void clear() {
+		int capacity = capacityFor(size);
+		if (capacity * 4 < keys.length) {
+			allocate(capacity);
+		} else {
+			Arrays.fill(keys, EMPTY);
+		}
+		size = 0;
+	}
+
+	/* Returns the number of slots, for looping over the keys with keyAt. */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/* Returns the key in the given slot, or EMPTY if there isn't one. */
+	public long keyAt(int slot) {
+		return keys[slot];
+	}
+
+	/* Mixes the bits of a key, so that keys that only differ in a few bits (like the
+	 * coordinates of neighboring cells) end up far apart in the table.
+	 */
+	static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/* Returns the slot holding the key, or the free slot where it would go. */
+	private static int slot(long[] keys, int mask, long key) {
+		int slot = hash(key) & mask;
+		while (keys[slot] != EMPTY && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/* Returns the smallest power of 2 that keeps 'size' keys at most half full. */
+	static int capacityFor(int size) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < size * 2) {
+			capacity *= 2;
+		}
+		return capacity;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		mask = capacity - 1;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		allocate(capacity);
+		for (long key : oldKeys) {
+			if (key != EMPTY) {
+				keys[slot(keys, mask, key)] = key;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+package cellularAutomata;
+
+import java.util.Arrays;
+
+/* A map from longs to ints, stored in two parallel arrays with the same open addressing
+ * scheme as LongHashSet, so neither the keys nor the values are ever boxed.  The main
+ * use is counting things, such as the living neighbors of each cell, which addTo does
+ * with a single probe.
+ *
+ * Just like LongHashSet, LongHashSet.EMPTY can't be used as a key, nothing can be removed
+ * except by clearing the whole map, and the entries are looped over by slot.
+ */
+public class LongIntHashMap {
+
+	private long[] keys;
+	private int[] values;
+	private int size;
+	private int mask; // capacity - 1, the capacity is always a power of 2
+
+	public LongIntHashMap() {
+		this(0);
+	}
+
+	/* Creates a map that can hold 'expectedSize' entries before it has to grow. */
+	public LongIntHashMap(int expectedSize) {
+		allocate(LongHashSet.capacityFor(expectedSize));
+	}
+
+	/* Returns the value for the key, or 'missing' if the key isn't in the map. */
+	public int get(long key, int missing) {
+		if (key == LongHashSet.EMPTY) {
+			return missing;
+		}
+		int slot = slot(key);
+		return (keys[slot] == key) ? values[slot] : missing;
+	}
+
+	public void put(long key, int value) {
+		int slot = insert(key); // may replace the values array, so it must come first
+		values[slot] = value;
+	}
+
+	/* Adds 'delta' to the value for the key, treating a missing key as 0, and returns
+	 * the new value.
+	 */
+	public int addTo(long key, int delta) {
+		int slot = insert(key);
+		values[slot] += delta;
+		return values[slot];
+	}
+
+	public boolean containsKey(long key) {
+		return key != LongHashSet.EMPTY && keys[slot(key)] == key;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/* Removes every entry, shrinking the table if it has become much too big. */
+	public void clear() {
+		int capacity = LongHashSet.capacityFor(size);
+		if (capacity * 4 < keys.length) {
+			allocate(capacity);
+		} else {
+			Arrays.fill(keys, LongHashSet.EMPTY);
+		}
+		size = 0;
+	}
+
+	/* Returns the number of slots, for looping over the entries with keyAt and valueAt. */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/* Returns the key in the given slot, or LongHashSet.EMPTY if there isn't one. */
+	public long keyAt(int slot) {
+		return keys[slot];
+	}
+
+	/* Returns the value in the given slot.  Only meaningful if keyAt(slot) isn't EMPTY. */
+	public int valueAt(int slot) {
+		return values[slot];
+	}
+
+	/* Returns the slot for the key, adding it with a value of 0 if it isn't there. */
+	private int insert(long key) {
+		if (key == LongHashSet.EMPTY) {
+			throw new IllegalArgumentException("Illegal Key: " + key);
+		}
+		int slot = slot(key);
+		if (keys[slot] != key) {
+			if ((size + 1) * 2 > keys.length) {
+				rehash(keys.length * 2);
+				slot = slot(key);
+			}
+			keys[slot] = key;
+			values[slot] = 0;
+			size++;
+		}
+		return slot;
+	}
+
+	private int slot(long key) {
+		int slot = LongHashSet.hash(key) & mask;
+		while (keys[slot] != LongHashSet.EMPTY && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, LongHashSet.EMPTY);
+		mask = capacity - 1;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != LongHashSet.EMPTY) {
+				int slot = slot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+package cellularAutomata;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/* Memory fences for memory that is shared with other processes through a mapped file.
+ * The Java memory model only says how threads in one JVM see each other's writes, and
+ * says nothing at all about another process reading the same pages, so code that
+ * publishes data through shared memory has to order the writes itself.  storeFence
+ * stops writes after it from becoming visible before writes in front of it, and
+ * loadFence stops reads after it from being done before reads in front of it.
+ *
+ * The fences come from sun.misc.Unsafe, looked up by reflection since it isn't a public
+ * API.  If it can't be found, they fall back to a volatile write and read, which order
+ * the accesses around them on the common platforms but aren't guaranteed to.
+ */
+public final class MemoryFences {
+
+	private static final Object UNSAFE;
+	private static final Method STORE_FENCE, LOAD_FENCE;
+	private static volatile int fallback;
+
+	static {
+		Object foundUnsafe = null;
+		Method foundStore = null, foundLoad = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			foundUnsafe = field.get(null);
+			foundStore = unsafeClass.getMethod("storeFence");
+			foundLoad = unsafeClass.getMethod("loadFence");
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			foundUnsafe = null;
+		}
+		UNSAFE = foundUnsafe;
+		STORE_FENCE = foundStore;
+		LOAD_FENCE = foundLoad;
+	}
+
+	private MemoryFences() {
+	}
+
+	public static void storeFence() {
+		fence(STORE_FENCE);
+		fallback = 0;
+	}
+
+	public static void loadFence() {
+		if (fallback != 0) {
+			return;
+		}
+		fence(LOAD_FENCE);
+	}
+
+	private static void fence(Method method) {
+		if (UNSAFE != null) {
+			try {
+				method.invoke(UNSAFE);
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,209 @@
+package cellularAutomata;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/* This class is a headless version of Grid for universes that are far too large to keep
+ * on the Java heap.  The ages of the cells (with the same meaning as in Grid: 0 for a
+ * living cell, otherwise the number of time steps since it died) are stored in direct
+ * ByteBuffers instead of int[][] arrays, so the garbage collector never has to scan them
+ * and the memory footprint is fixed when the grid is created.  The buffers can also be
+ * memory-mapped from a file, in which case the operating system pages the grid in and
+ * out as needed and the grid can be larger than physical memory.
+ *
+ * The Game of Life region is an OffHeapLife, the engine that updates its CellStore in
+ * place, so the grid is stepped by an engine reading and writing the off-heap memory
+ * directly.  The input rows are a CellStore of their own, stored as a ring, so shifting
+ * them up only moves the index of the top row.  New input rows are made in scratch
+ * arrays that are kept from one time step to the next, so nothing is allocated while
+ * the simulation runs.
+ *
+ * Unlike Grid, this only does single time steps with a CARowMaker: there is no
+ * history, heatmap, cycle detector or choice of engine, since all of those keep
+ * something on the heap for every cell.
+ */
+public class OffHeapGrid {
+
+	private static final int DEAD = 100000; // the age every cell starts with, as in Grid
+
+	private final int numRows, numCols, numInputRows;
+	private CARowMaker rowMaker;
+
+	private final OffHeapLife region; // the Game of Life region
+	private final CellStore inputRows; // the input rows, stored as a ring
+	private int inputTop; // index in inputRows of the top row of the input
+
+	private final FileChannel channel; // null unless the grid is backed by a file
+
+	/* on-heap scratch rows: the bottom input row, the new one made from it, and the top
+	 * one handed to the engine
+	 */
+	private final int[] bottomRow, newRow, topRow;
+
+	/* Constructor that stores the grid in direct ByteBuffers allocated outside of the
+	 * heap.  The parameters give the size of the Game of Life region, the number of
+	 * input rows below it, and the rule used to generate new input rows.
+	 */
+	public OffHeapGrid(int numRows, int numCols, int numInputRows, CARowMaker rowMaker) {
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.numInputRows = numInputRows;
+		this.rowMaker = rowMaker;
+		channel = null;
+		checkSize();
+		try {
+			region = new OffHeapLife(numRows, numCols, null, 0);
+			inputRows = new CellStore(numInputRows, numCols, null, 0);
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // can't happen without a file
+		}
+		bottomRow = new int[numCols];
+		newRow = new int[numCols];
+		topRow = new int[numCols];
+		resetGrid();
+	}
+
+	/* Constructor that memory-maps the grid from the given file, which is created if it
+	 * does not exist and grown to the size needed.  The file is only used as backing
+	 * storage for the buffers; its previous contents are overwritten by resetGrid.  The
+	 * Game of Life region comes first in the file, followed by the input rows.
+	 */
+	public OffHeapGrid(int numRows, int numCols, int numInputRows, CARowMaker rowMaker,
+			Path file) throws IOException {
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.numInputRows = numInputRows;
+		this.rowMaker = rowMaker;
+		checkSize();
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			region = new OffHeapLife(numRows, numCols, channel, 0);
+			inputRows = new CellStore(numInputRows, numCols, channel,
+					CellStore.bytes(numRows, numCols));
+		} catch (IOException | RuntimeException e) {
+			/* mapping failed (out of disk space, say), so nobody else will close it */
+			try {
+				channel.close();
+			} catch (IOException closeError) {
+				e.addSuppressed(closeError);
+			}
+			throw e;
+		}
+		bottomRow = new int[numCols];
+		newRow = new int[numCols];
+		topRow = new int[numCols];
+		resetGrid();
+	}
+
+	/* The Game of Life needs at least two rows, since the bottom row looks at the row
+	 * above it, and the input rule needs at least two columns.
+	 */
+	private void checkSize() {
+		if (numRows < 2 || numCols < 2 || numInputRows < 1
+				|| numCols > CellStore.SLAB_BYTES / 4) {
+			throw new IllegalArgumentException("Illegal Grid Size: " + numRows + "x" + numCols
+					+ " with " + numInputRows + " input rows");
+		}
+	}
+
+	/* Sets the grid to be full of dead cells, apart from a single living cell in the
+	 * center of the bottom row of the input, just like Grid.resetGrid.
+	 */
+	public void resetGrid() {
+		region.fill(DEAD);
+		inputRows.fill(DEAD);
+		inputTop = 0;
+		inputRows.set(inputIndex(numInputRows - 1), numCols / 2, 0);
+	}
+
+	/* Changes the rule used to generate new input rows.  Like Grid.updateRule, this
+	 * also resets the grid.
+	 */
+	public void updateRule(CARowMaker newRule) {
+		rowMaker = newRule;
+		resetGrid();
+	}
+
+	/* Performs a single time step.  This does the same thing as Grid.update: the input
+	 * rows move up by one, a new bottom row is generated, and the new top row of the
+	 * input is handed to the engine, which updates the Game of Life region in place.
+	 */
+	public void update() {
+
+		/* generate the new bottom row from the current one, then shift the ring */
+		inputRows.readRow(inputIndex(numInputRows - 1), bottomRow);
+		rowMaker.nextRow(bottomRow, newRow);
+		inputTop = (inputTop + 1) % numInputRows;
+		inputRows.writeRow(inputIndex(numInputRows - 1), newRow);
+
+		inputRows.readRow(inputIndex(0), topRow);
+		region.step(topRow);
+	}
+
+	/* Returns the age of a cell in the Game of Life region. */
+	public int getAge(int row, int col) {
+		return region.getAge(row, col);
+	}
+
+	/* Returns the age of a cell in the input rows, where row 0 is the top row of the
+	 * input (the one next to the Game of Life region).
+	 */
+	public int getInputAge(int row, int col) {
+		return inputRows.get(inputIndex(row), col);
+	}
+
+	/* Copies a rectangular window of the Game of Life region into 'dest', starting at
+	 * the given row and column.  This lets a small part of a very large grid be shown
+	 * on the screen.  The window must fit inside the grid.
+	 */
+	public void copyRegion(int firstRow, int firstCol, int[][] dest) {
+		for (int row = 0; row < dest.length; row++) {
+			for (int col = 0; col < dest[row].length; col++) {
+				dest[row][col] = region.getAge(firstRow + row, firstCol + col);
+			}
+		}
+	}
+
+	/* Returns the engine holding the Game of Life region, which can be read a whole row
+	 * at a time.
+	 */
+	public OffHeapLife getRegion() {
+		return region;
+	}
+
+	public int getNumRows() {
+		return numRows;
+	}
+
+	public int getNumCols() {
+		return numCols;
+	}
+
+	/* Writes any changes to the grid back to the file, if the grid is backed by one. */
+	public void force() {
+		if (channel != null) {
+			region.force();
+			inputRows.force();
+		}
+	}
+
+	/* Closes the file backing the grid, if there is one.  The mapped buffers remain
+	 * valid until they are garbage collected, but the grid should not be used after it
+	 * has been closed.
+	 */
+	public void close() throws IOException {
+		if (channel != null) {
+			force();
+			channel.close();
+		}
+	}
+
+	/* Converts a row of the input (0 being the top) into an index in the ring. */
+	private int inputIndex(int row) {
+		return (inputTop + row) % numInputRows;
+	}
+
+}
@@ -0,0 +1,190 @@
+package cellularAutomata;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/* This engine keeps the ages of the Game of Life region outside of the heap, in a
+ * CellStore, so the garbage collector never has to scan them and the memory footprint is
+ * fixed when the store is made.  The store can also be memory-mapped from a file (see
+ * OffHeapGrid), in which case the operating system pages the grid in and out as needed
+ * and it can be larger than physical memory.
+ *
+ * A time step reads and writes the store directly, one row at a time, and updates it in
+ * place, so nothing is allocated and there is no second copy of the grid.  Each row's
+ * ages are read once with a bulk get and packed into bits, the new row is worked out
+ * with PackedLife's kernel from the packed rows above, at and below it, and the aged row
+ * is written back with a bulk put.  The rows above and below are packed before the row
+ * itself is overwritten, so the only extra memory is a few rows of scratch space.
+ *
+ * getAges has to make an on-heap copy of the whole region, so it is only meant for grids
+ * that also fit on the heap (such as a Grid's).  Bigger grids should be read a row at a
+ * time with readRow, or a cell at a time with getAge.
+ */
+public class OffHeapLife implements LifeEngine {
+
+	private CellStore cells;
+	private int numRows, cols;
+
+	/* scratch rows: the ages of the row being updated and of the row below it, and the
+	 * packed rows above, at and below it
+	 */
+	private int[] rowAges, belowAges;
+	private long[] above, middle, below, inputBits, nextBits;
+
+	private int[][] ages; // the on-heap copy made by getAges, null if it is out of date
+
+	/* No-arg constructor, used when this is created as a LifeEngine.  load must be
+	 * called before the first step, and it allocates the store outside of the heap.
+	 */
+	public OffHeapLife() {
+	}
+
+	/* Constructor for an engine of a given size whose store is memory-mapped from the
+	 * file behind the channel, starting at 'offset', or is made of direct buffers if the
+	 * channel is null.  Unlike load, this never needs the ages on the heap, so the cells
+	 * are not set to anything until fill is called.
+	 */
+	OffHeapLife(int numRows, int numCols, FileChannel channel, long offset) throws IOException {
+		if (numRows < 2 || numCols < 2) {
+			throw new IllegalArgumentException("Illegal Grid Size: " + numRows + "x" + numCols);
+		}
+		useStore(new CellStore(numRows, numCols, channel, offset));
+	}
+
+	@Override
+	public String getName() {
+		return "offheap";
+	}
+
+	/* Replaces the state with the given ages, which are copied into the store.  The store
+	 * is only made again if the size has changed, and then it is never file-backed.
+	 */
+	@Override
+	public void load(int[][] grid) {
+		if (cells == null || cells.getNumRows() != grid.length
+				|| cells.getNumCols() != grid[0].length) {
+			try {
+				useStore(new CellStore(grid.length, grid[0].length, null, 0));
+			} catch (IOException e) {
+				throw new IllegalStateException(e); // can't happen without a file
+			}
+		}
+		for (int row = 0; row < numRows; row++) {
+			cells.writeRow(row, grid[row]);
+		}
+		ages = null;
+	}
+
+	private void useStore(CellStore store) {
+		cells = store;
+		numRows = store.getNumRows();
+		cols = store.getNumCols();
+		int numWords = PackedLife.words(cols);
+		rowAges = new int[cols];
+		belowAges = new int[cols];
+		above = new long[numWords];
+		middle = new long[numWords];
+		below = new long[numWords];
+		inputBits = new long[numWords];
+		nextBits = new long[numWords];
+	}
+
+	/* Sets every cell to the same age. */
+	void fill(int age) {
+		cells.fill(age);
+		ages = null;
+	}
+
+	/* Performs a single time step in place, using the same rules as
+	 * GameOfLife.updateGrid.  The parameter is the top row of the input, and it is not
+	 * modified.
+	 */
+	@Override
+	public void step(int[] input) {
+		PackedLife.packRow(input, inputBits);
+		ages = null;
+
+		/* 'rowAges' and 'middle' always hold the row being updated, and 'above' the row
+		 * above it as it was before it was updated.
+		 */
+		cells.readRow(0, rowAges);
+		PackedLife.packRow(rowAges, middle);
+		for (int row = 0; row < numRows; row++) {
+			long[] belowRow;
+			if (row == numRows - 1) {
+				belowRow = inputBits;
+			} else {
+				cells.readRow(row + 1, belowAges);
+				belowRow = PackedLife.packRow(belowAges, below);
+			}
+
+			if (row == 0) {
+				/* Top row - kill everything */
+				for (int w = 0; w < nextBits.length; w++) {
+					nextBits[w] = 0;
+				}
+			} else {
+				PackedLife.stepRow(above, middle, belowRow, cols, nextBits);
+			}
+			PackedLife.ageRow(rowAges, nextBits);
+			cells.writeRow(row, rowAges);
+
+			long[] temp = above;
+			above = middle;
+			middle = below;
+			below = temp;
+			int[] tempAges = rowAges;
+			rowAges = belowAges;
+			belowAges = tempAges;
+		}
+	}
+
+	/* Returns an on-heap copy of the ages of every cell, which is made again after every
+	 * time step.
+	 */
+	@Override
+	public int[][] getAges() {
+		if (ages == null) {
+			ages = new int[numRows][cols];
+			for (int row = 0; row < numRows; row++) {
+				cells.readRow(row, ages[row]);
+			}
+		}
+		return ages;
+	}
+
+	/* Packs the rows straight out of the store, without making a copy of the ages. */
+	@Override
+	public void copyLiveBits(long[][] dest) {
+		for (int row = 0; row < numRows; row++) {
+			cells.readRow(row, rowAges);
+			PackedLife.packRow(rowAges, dest[row]);
+		}
+	}
+
+	/* Returns the age of a single cell. */
+	public int getAge(int row, int col) {
+		return cells.get(row, col);
+	}
+
+	/* Copies the ages of a whole row into 'dest', which must have a place for every
+	 * column.
+	 */
+	public void readRow(int row, int[] dest) {
+		cells.readRow(row, dest);
+	}
+
+	public int getNumRows() {
+		return numRows;
+	}
+
+	public int getNumCols() {
+		return cols;
+	}
+
+	/* Writes any changes back to the file, if the store is mapped from one. */
+	void force() {
+		cells.force();
+	}
+
+}
@@ -0,0 +1,243 @@
+package cellularAutomata;
+
+/* This class is an alternative to the scalar loop in GameOfLife.updateGrid.  Rather than
+ * looking at one cell at a time, it stores whether each cell is alive as a single bit,
+ * packing 64 cells into every long.  The neighbor counts for all 64 cells in a word are
+ * then computed at the same time using a handful of bitwise operations (essentially a
+ * small adder circuit that works on every bit position in parallel), so the inner loop
+ * has no branches at all.
+ *
+ * The ages of the cells (the number of time steps since each cell died, exactly as in
+ * GameOfLife) are kept in a separate int array for each row.  Once the new liveness bits
+ * are known, every age can be updated without a branch as well: living cells become 0 and
+ * dead cells are incremented.
+ *
+ * The results are identical to GameOfLife.updateGrid, including the edge handling: the
+ * left and right sides wrap around, the top row is always killed, and the bottom row
+ * treats the top row of the input as the row below it.
+ */
+public class PackedLife implements LifeEngine {
+
+	/* live[row] holds one bit per column.  Column c of a row is stored in bit (c % 64)
+	 * of word (c / 64), and the bit is set if the cell is alive.  Any unused bits at
+	 * the end of the last word are always kept at zero.
+	 */
+	private long[][] live;
+	private long[][] nextLive; // scratch space for the next generation, swapped with live
+	private long[] inputBits; // the packed top row of the input
+	private int[][] ages; // ticks since each cell was last alive, 0 if it is alive now
+	private int cols;
+
+	/* Constructor for PackedLife.  The parameter uses the same representation as the
+	 * grids passed to GameOfLife.updateGrid.  The ages are copied, so the caller is free
+	 * to keep using the array afterwards.
+	 */
+	public PackedLife(int[][] grid) {
+		load(grid);
+	}
+
+	/* No-arg constructor, used when this is created as a LifeEngine.  load must be
+	 * called before the first step.
+	 */
+	public PackedLife() {
+	}
+
+	@Override
+	public String getName() {
+		return "packed";
+	}
+
+	/* Replaces the state with the given ages, which are copied. */
+	@Override
+	public void load(int[][] grid) {
+		cols = grid[0].length;
+		int numWords = words(cols);
+		live = new long[grid.length][numWords];
+		nextLive = new long[grid.length][numWords];
+		inputBits = new long[numWords];
+		ages = new int[grid.length][];
+		for (int row = 0; row < grid.length; row++) {
+			ages[row] = grid[row].clone();
+			packRow(ages[row], live[row]);
+		}
+	}
+
+	/* Performs a single time step, using the same rules as GameOfLife.updateGrid.  The
+	 * parameter is the top row of the input, and it is not modified.
+	 */
+	@Override
+	public void step(int[] input) {
+		packRow(input, inputBits);
+
+		/* Top row - kill everything */
+		long[] top = nextLive[0];
+		for (int w = 0; w < top.length; w++) {
+			top[w] = 0;
+		}
+
+		/* Every other row looks at the row above and the row below.  The bottom row
+		 * uses the input in place of the row below it.
+		 */
+		int lastRow = live.length - 1;
+		for (int row = 1; row < lastRow; row++) {
+			stepRow(live[row - 1], live[row], live[row + 1], cols, nextLive[row]);
+		}
+		stepRow(live[lastRow - 1], live[lastRow], inputBits, cols, nextLive[lastRow]);
+
+		long[][] temp = live;
+		live = nextLive;
+		nextLive = temp;
+
+		for (int row = 0; row < ages.length; row++) {
+			ageRow(ages[row], live[row]);
+		}
+	}
+
+	/* Returns the ages of every cell, in the same format as GameOfLife.updateGrid.  Just
+	 * like the getters in Grid, the caller must not modify the returned array.
+	 */
+	@Override
+	public int[][] getAges() {
+		return ages;
+	}
+
+	/* The cells are already packed, so they can just be copied. */
+	@Override
+	public void copyLiveBits(long[][] dest) {
+		for (int row = 0; row < live.length; row++) {
+			System.arraycopy(live[row], 0, dest[row], 0, live[row].length);
+		}
+	}
+
+	/* Convenience method with exactly the same contract as GameOfLife.updateGrid.  This
+	 * has to pack the whole grid first, so it is only worthwhile for occasional use;
+	 * repeated updates should keep a PackedLife object around and call step instead.
+	 */
+	public static int[][] updateGrid(int[][] grid, int[] input) {
+		PackedLife packed = new PackedLife(grid);
+		packed.step(input);
+		return packed.getAges();
+	}
+
+	/* Returns the number of longs needed to store one bit for each of 'cols' cells. */
+	public static int words(int cols) {
+		return (cols + 63) >>> 6;
+	}
+
+	/* Packs a row of ages into bits.  A bit is set if the corresponding cell is alive
+	 * (has an age of 0).  The 'bits' array must have words(row.length) elements, and it
+	 * is returned for convenience.
+	 */
+	public static long[] packRow(int[] row, long[] bits) {
+		for (int w = 0; w < bits.length; w++) {
+			bits[w] = 0;
+		}
+		for (int col = 0; col < row.length; col++) {
+			if (row[col] == 0) {
+				bits[col >>> 6] |= 1L << col;
+			}
+		}
+		return bits;
+	}
+
+	/* Updates a row of ages in place using the liveness bits of the new generation.
+	 * Living cells get an age of 0 and dead cells get one added to their age.  The
+	 * mask is all ones for a dead cell and all zeros for a living one, so there is no
+	 * need to branch.
+	 */
+	public static void ageRow(int[] ages, long[] bits) {
+		for (int col = 0; col < ages.length; col++) {
+			int dead = (int) (~bits[col >>> 6] >>> col) & 1;
+			ages[col] = (ages[col] + 1) & -dead;
+		}
+	}
+
+	/* Computes the next generation of a single row, 64 cells at a time.  The three
+	 * arrays are the packed rows above, at, and below the row being updated, and the
+	 * result is written into 'out'.  The left and right edges wrap around, just like in
+	 * GameOfLife.updateGrid.
+	 *
+	 * For each word, the eight neighbors of every cell are lined up by shifting the
+	 * three rows one column to the left and right.  They are then added up with full
+	 * adders, where each long holds one bit of the count for all 64 cells.  The count
+	 * ends up as ones + 2 * twos + 4 * (foursA + foursB), and a cell is alive in the
+	 * next generation if the count is 3, or if the count is 2 and it is already alive.
+	 * Both cases need twos to be set and no fours, and then either the ones bit or the
+	 * cell itself must be set.
+	 */
+	public static void stepRow(long[] above, long[] row, long[] below, int cols, long[] out) {
+		int numWords = out.length;
+		int topBit = (cols - 1) & 63; // position of the last column within its word
+
+		for (int w = 0; w < numWords; w++) {
+			long aW = west(above, w, numWords, topBit);
+			long a = above[w];
+			long aE = east(above, w, numWords, topBit);
+			long bW = west(row, w, numWords, topBit);
+			long b = row[w];
+			long bE = east(row, w, numWords, topBit);
+			long cW = west(below, w, numWords, topBit);
+			long c = below[w];
+			long cE = east(below, w, numWords, topBit);
+
+			out[w] = nextWord(aW, a, aE, bW, b, bE, cW, c, cE);
+		}
+
+		/* keep the unused bits of the last word at zero */
+		if (topBit != 63) {
+			out[numWords - 1] &= (1L << (topBit + 1)) - 1;
+		}
+	}
+
+	/* Computes 64 cells of the next generation at once.  'b' holds the cells themselves,
+	 * 'a' the cells above them and 'c' the cells below, and the W and E versions are the
+	 * same rows shifted so that each bit holds its left or right neighbor.
+	 */
+	static long nextWord(long aW, long a, long aE, long bW, long b, long bE, long cW, long c,
+			long cE) {
+		/* add up the three cells above and the three cells below */
+		long aXor = aW ^ a;
+		long aSum = aXor ^ aE;
+		long aCarry = (aW & a) | (aE & aXor);
+		long cXor = cW ^ c;
+		long cSum = cXor ^ cE;
+		long cCarry = (cW & c) | (cE & cXor);
+
+		/* add up the two cells beside */
+		long bSum = bW ^ bE;
+		long bCarry = bW & bE;
+
+		/* combine the ones */
+		long onesXor = aSum ^ cSum;
+		long ones = onesXor ^ bSum;
+		long onesCarry = (aSum & cSum) | (bSum & onesXor);
+
+		/* combine the twos */
+		long twosXor = aCarry ^ cCarry;
+		long twosPartial = twosXor ^ bCarry;
+		long foursA = (aCarry & cCarry) | (bCarry & twosXor);
+		long twos = twosPartial ^ onesCarry;
+		long foursB = twosPartial & onesCarry;
+
+		return twos & ~(foursA | foursB) & (ones | b);
+	}
+
+	/* Returns word w of the row shifted so that each bit holds its left neighbor.  For
+	 * the first word, the left neighbor of column 0 is the last column of the row.
+	 */
+	private static long west(long[] bits, int w, int numWords, int topBit) {
+		long carry = (w == 0) ? (bits[numWords - 1] >>> topBit) : (bits[w - 1] >>> 63);
+		return (bits[w] << 1) | (carry & 1);
+	}
+
+	/* Returns word w of the row shifted so that each bit holds its right neighbor.  For
+	 * the last word, the right neighbor of the last column is column 0.
+	 */
+	private static long east(long[] bits, int w, int numWords, int topBit) {
+		if (w == numWords - 1) {
+			return (bits[w] >>> 1) | ((bits[0] & 1) << topBit);
+		}
+		return (bits[w] >>> 1) | (bits[w + 1] << 63);
+	}
+
+}
@@ -0,0 +1,562 @@
+package cellularAutomata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/* This class counts the objects (still lifes, oscillators and spaceships) that the input
+ * of each rule leaves behind in the Game of Life region, like a "soup census".  Every so
+ * many generations the grid is sampled: the living cells are split into connected
+ * groups (cells touching in any of the 8 directions), and each group is looked up in a
+ * table of the shapes seen so far.
+ *
+ * The first time a shape is seen, it is put in an empty box on its own and run for up
+ * to MAX_PERIOD generations, to see whether it comes back to the same shape, which makes
+ * it a still life (period 1), an oscillator or, if it came back somewhere else, a
+ * spaceship.  Anything else (shapes that die, grow or are still changing, which is most
+ * of what is near the input) is counted as "other".  The different phases of an
+ * oscillator or spaceship, and every rotation and reflection of it, are all counted as
+ * the same object.  After that, a shape costs only a hash and a lookup in a
+ * LongIntHashMap, so a sample costs about as much as looking at each living cell once.
+ *
+ * Shapes are hashed by adding up a mixed value for each cell, so the order the cells are
+ * found in doesn't matter and nothing has to be sorted.  The hashes are 64 bits, so two
+ * different shapes are very unlikely to be mistaken for each other.
+ *
+ * An object that stays where it is would be counted again in every sample, so an object
+ * is only counted if the same object wasn't in the same place in the previous sample
+ * (or, for a spaceship, where it would have been then).  Groups touching the top row,
+ * which is always killed, or the bottom row, which touches the input, are not counted.
+ * Neither are groups with other living cells less than 3 cells away, since those are
+ * still interacting with something, and aren't objects of their own yet.  Most of what
+ * is near the input is like that, so this also keeps the number of new shapes that have
+ * to be run down.
+ */
+public class PatternCensus {
+
+	public static final int STILL_LIFE = 0, OSCILLATOR = 1, SPACESHIP = 2, OTHER = 3;
+	public static final String[] KIND_NAMES = {"still life", "oscillator", "spaceship", "other"};
+
+	public static final int DEFAULT_INTERVAL = 60; // a multiple of the common periods
+	static final int MAX_PERIOD = 30; // the longest period looked for
+	static final int MAX_CELLS = 64; // larger groups aren't counted
+
+	/* An object that has been counted, in all of its phases and orientations. */
+	public static class Pattern {
+		public final long key; // the same for every phase and orientation
+		public final int kind; // STILL_LIFE, OSCILLATOR, SPACESHIP or OTHER
+		public final int period; // 0 for OTHER
+		public final int population; // the fewest cells in any phase
+		private int count;
+
+		private Pattern(long key, int kind, int period, int population) {
+			this.key = key;
+			this.kind = kind;
+			this.period = period;
+			this.population = population;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		/* Returns the usual name of the object if it is a common one, otherwise null. */
+		public String getName() {
+			int known = knownNames().get(key, -1);
+			return (known < 0) ? null : KNOWN_NAMES[known];
+		}
+
+		@Override
+		public String toString() {
+			String name = getName();
+			return KIND_NAMES[kind] + ", " + population + " cells"
+					+ ((kind == OSCILLATOR || kind == SPACESHIP) ? ", period " + period : "")
+					+ ((name != null) ? " (" + name + ")" : "");
+		}
+	}
+
+	/* One orientation of one phase of a Pattern, as it is found in the grid. */
+	private static class Shape {
+		private final Pattern pattern;
+		private final int period;
+		private final int rowShift, colShift; // how far it moves in one period
+
+		private Shape(Pattern pattern, int period, int rowShift, int colShift) {
+			this.pattern = pattern;
+			this.period = period;
+			this.rowShift = rowShift;
+			this.colShift = colShift;
+		}
+	}
+
+	private final LongIntHashMap shapeIndex = new LongIntHashMap(); // shape hash -> shapes
+	private final List<Shape> shapes = new ArrayList<>();
+	private final LongIntHashMap patternIndex = new LongIntHashMap(); // key -> patterns
+	private final List<Pattern> patterns = new ArrayList<>();
+	private final LongIntHashMap counts = new LongIntHashMap(); // key -> number counted
+	private long numSamples = 0, numCounted = 0;
+
+	/* where objects were in the previous sample, and where they are in this one */
+	private LongHashSet previous = new LongHashSet(), current = new LongHashSet();
+	private boolean havePrevious = false;
+
+	/* scratch space */
+	private long[][] bits; // the cells not yet put in a group
+	private long[][] live; // every living cell, during a sample
+	private int[] cellRows = new int[MAX_CELLS + 1], cellCols = new int[MAX_CELLS + 1];
+	private int[] stackRows = new int[256], stackCols = new int[256];
+
+	/* Runs the grid for the given number of generations, sampling it every 'interval'
+	 * generations.  The generations in between are done with Grid.advance, so nothing
+	 * is spent on them apart from the time steps themselves.
+	 */
+	public void run(Grid grid, long generations, int interval) {
+		if (interval < 1) {
+			throw new IllegalArgumentException("Illegal Interval: " + interval);
+		}
+		long[][] liveBits = new long[Grid.NUM_GRID_ROWS][PackedLife.words(Grid.NUM_GRID_COLS)];
+		for (long done = 0; done < generations; done += interval) {
+			int step = (int) Math.min(interval, generations - done);
+			grid.advance(step);
+			grid.copyLiveBits(liveBits);
+			sample(liveBits, Grid.NUM_GRID_COLS, step);
+		}
+	}
+
+	/* Counts the objects in one generation, given as ages in the same format as
+	 * Grid.getGameOfLifeRegion.
+	 */
+	public void sample(int[][] ages, int sinceLast) {
+		long[][] liveBits = new long[ages.length][PackedLife.words(ages[0].length)];
+		for (int row = 0; row < ages.length; row++) {
+			PackedLife.packRow(ages[row], liveBits[row]);
+		}
+		sample(liveBits, ages[0].length, sinceLast);
+	}
+
+	/* Counts the objects in one generation, given as rows of bits packed as in
+	 * PackedLife.packRow, which are not changed.  'sinceLast' is the number of
+	 * generations since the previous call, which is used to work out where each
+	 * spaceship was then.
+	 */
+	public void sample(long[][] liveBits, int cols, int sinceLast) {
+		int numRows = liveBits.length;
+		if (bits == null || bits.length != numRows || bits[0].length != liveBits[0].length) {
+			bits = new long[numRows][liveBits[0].length];
+		}
+		live = liveBits;
+		for (int row = 0; row < numRows; row++) {
+			System.arraycopy(live[row], 0, bits[row], 0, live[row].length);
+		}
+
+		for (int row = 0; row < numRows; row++) {
+			long[] rowBits = bits[row];
+			for (int w = 0; w < rowBits.length; w++) {
+				while (rowBits[w] != 0) {
+					int col = (w << 6) + Long.numberOfTrailingZeros(rowBits[w]);
+					rowBits[w] &= rowBits[w] - 1;
+					countGroup(row, col, numRows, cols, sinceLast);
+				}
+			}
+		}
+
+		LongHashSet temp = previous;
+		previous = current;
+		current = temp;
+		current.clear();
+		havePrevious = true;
+		numSamples++;
+	}
+
+	/* Finds the group of cells connected to the given one (clearing their bits, so that
+	 * each group is only found once), and counts it if it is small enough and away from
+	 * the top and bottom.  The columns wrap around, so the columns of the group are
+	 * kept unwrapped, relative to the first cell.
+	 */
+	private void countGroup(int startRow, int startCol, int numRows, int cols, int sinceLast) {
+		int n = 0, stackSize = 0;
+		int minRow = startRow, maxRow = startRow, minCol = startCol, maxCol = startCol;
+		stackRows[stackSize] = startRow;
+		stackCols[stackSize++] = startCol;
+		while (stackSize > 0) {
+			int row = stackRows[--stackSize];
+			int col = stackCols[stackSize];
+			if (n < cellRows.length) {
+				cellRows[n] = row;
+				cellCols[n] = col;
+			}
+			n++;
+			minRow = Math.min(minRow, row);
+			maxRow = Math.max(maxRow, row);
+			minCol = Math.min(minCol, col);
+			maxCol = Math.max(maxCol, col);
+			for (int r = Math.max(0, row - 1); r <= Math.min(numRows - 1, row + 1); r++) {
+				for (int c = col - 1; c <= col + 1; c++) {
+					int wrapped = (c >= 0 && c < cols) ? c : Math.floorMod(c, cols);
+					long bit = 1L << wrapped;
+					if ((bits[r][wrapped >>> 6] & bit) != 0) {
+						bits[r][wrapped >>> 6] &= ~bit;
+						if (stackSize == stackRows.length) {
+							stackRows = Arrays.copyOf(stackRows, stackSize * 2);
+							stackCols = Arrays.copyOf(stackCols, stackSize * 2);
+						}
+						stackRows[stackSize] = r;
+						stackCols[stackSize++] = c;
+					}
+				}
+			}
+		}
+		if (n > MAX_CELLS || minRow == 0 || maxRow == numRows - 1 || maxCol - minCol + 5 > cols
+				|| countLive(minRow - 2, maxRow + 2, minCol - 2, maxCol + 2, numRows, cols) != n) {
+			return;
+		}
+
+		long hash = shapeHash(cellRows, cellCols, n, minRow, minCol, maxRow - minRow + 1,
+				maxCol - minCol + 1);
+		int index = shapeIndex.get(hash, -1);
+		if (index < 0) {
+			index = shapes.size();
+			shapes.add(classify(n, minRow, minCol, maxRow - minRow + 1, maxCol - minCol + 1));
+			shapeIndex.put(hash, index);
+		}
+		Shape shape = shapes.get(index);
+
+		/* positions are the centres of the bounding boxes, doubled to keep them whole */
+		int rowCentre = minRow + maxRow;
+		int colCentre = minCol + maxCol;
+		long here = positionKey(shape.pattern.key, rowCentre, colCentre, cols);
+		long before = here;
+		if (shape.pattern.kind == SPACESHIP && sinceLast % shape.period == 0) {
+			int periods = sinceLast / shape.period;
+			before = positionKey(shape.pattern.key, rowCentre - 2 * periods * shape.rowShift,
+					colCentre - 2 * periods * shape.colShift, cols);
+		}
+		current.add(here);
+		if (!havePrevious || !previous.contains(before)) {
+			counts.addTo(shape.pattern.key, 1);
+			numCounted++;
+		}
+	}
+
+	/* Counts the living cells in a rectangle, which may wrap around the sides. */
+	private int countLive(int firstRow, int lastRow, int firstCol, int lastCol, int numRows,
+			int cols) {
+		int count = 0;
+		for (int row = Math.max(0, firstRow); row <= Math.min(numRows - 1, lastRow); row++) {
+			long[] rowBits = live[row];
+			for (int c = firstCol; c <= lastCol; c++) {
+				int col = (c >= 0 && c < cols) ? c : Math.floorMod(c, cols);
+				count += (int) (rowBits[col >>> 6] >>> col) & 1;
+			}
+		}
+		return count;
+	}
+
+	/* Works out what a newly seen shape is, by running it on its own (see the comment
+	 * above the class).  The cells are the first n in cellRows and cellCols.  Only the
+	 * shape as it is is compared at each step, and the other phases are only hashed in
+	 * all of their orientations once the shape turns out to repeat, since most shapes
+	 * don't.
+	 */
+	private Shape classify(int n, int minRow, int minCol, int height, int width) {
+		int[] bounds = new int[5]; // population, min row, min column, height, width
+		long[][] box = startBox(n, minRow, minCol, height, width);
+		boxCells(box, boxRows, boxCols, bounds);
+		long firstHash = shapeHash(boxRows, boxCols, n, bounds[1], bounds[2], bounds[3],
+				bounds[4]);
+		int firstRow = bounds[1], firstCol = bounds[2];
+
+		for (int t = 1; t <= MAX_PERIOD; t++) {
+			box = stepBox(box, width);
+			if (!boxCells(box, boxRows, boxCols, bounds)
+					|| touchesEdge(bounds, box.length - 2, boxCols(width))) {
+				break; // died out, grew too big, or reached the edge of the box
+			}
+			if (bounds[0] == n && shapeHash(boxRows, boxCols, n, bounds[1], bounds[2],
+					bounds[3], bounds[4]) == firstHash) {
+				int rowShift = bounds[1] - firstRow, colShift = bounds[2] - firstCol;
+				int kind = (t == 1 && rowShift == 0 && colShift == 0) ? STILL_LIFE
+						: (rowShift == 0 && colShift == 0) ? OSCILLATOR : SPACESHIP;
+
+				/* the key is the smallest hash of any phase in any orientation */
+				long key = Long.MAX_VALUE;
+				int population = n;
+				box = startBox(n, minRow, minCol, height, width);
+				for (int phase = 0; phase < t; phase++) {
+					boxCells(box, boxRows, boxCols, bounds);
+					key = Math.min(key, symmetricHash(boxRows, boxCols, bounds[0], bounds[1],
+							bounds[2], bounds[3], bounds[4]));
+					population = Math.min(population, bounds[0]);
+					box = stepBox(box, width);
+				}
+				return new Shape(pattern(key, kind, t, population), t, rowShift, colShift);
+			}
+		}
+		long otherKey = symmetricHash(cellRows, cellCols, n, minRow, minCol, height, width);
+		return new Shape(pattern(otherKey, OTHER, 0, n), 1, 0, 0);
+	}
+
+	/* The box a shape is run in has room all around it to move, since nothing goes
+	 * faster than c/2, and an empty row above and below it.
+	 */
+	private static final int MARGIN = MAX_PERIOD / 2 + 2;
+
+	/* scratch space for classify */
+	private final int[] boxRows = new int[MAX_CELLS * 4], boxCols = new int[MAX_CELLS * 4];
+	private long[][] nextBox;
+
+	private static int boxCols(int width) {
+		return width + 2 * MARGIN;
+	}
+
+	/* Puts the first n cells of cellRows and cellCols in a new box. */
+	private long[][] startBox(int n, int minRow, int minCol, int height, int width) {
+		long[][] box = new long[height + 2 * MARGIN + 2][PackedLife.words(boxCols(width))];
+		nextBox = new long[box.length][box[0].length];
+		for (int i = 0; i < n; i++) {
+			int row = cellRows[i] - minRow + MARGIN + 1;
+			int col = cellCols[i] - minCol + MARGIN;
+			box[row][col >>> 6] |= 1L << col;
+		}
+		return box;
+	}
+
+	/* Runs a box for one generation, and returns the new one. */
+	private long[][] stepBox(long[][] box, int width) {
+		for (int row = 1; row < box.length - 1; row++) {
+			PackedLife.stepRow(box[row - 1], box[row], box[row + 1], boxCols(width), nextBox[row]);
+		}
+		long[][] result = nextBox;
+		nextBox = box;
+		return result;
+	}
+
+	private static boolean touchesEdge(int[] bounds, int lastRow, int boxCols) {
+		return bounds[1] == 1 || bounds[1] + bounds[3] - 1 == lastRow || bounds[2] == 0
+				|| bounds[2] + bounds[4] == boxCols;
+	}
+
+	/* Returns the pattern with the given key, adding it if it is new. */
+	private Pattern pattern(long key, int kind, int period, int population) {
+		int index = patternIndex.get(key, -1);
+		if (index < 0) {
+			index = patterns.size();
+			patterns.add(new Pattern(key, kind, period, population));
+			patternIndex.put(key, index);
+		}
+		return patterns.get(index);
+	}
+
+	/* Lists the living cells of a box, and puts the population and bounding box in
+	 * 'bounds'.  Returns false if there are none, or too many to list.
+	 */
+	private static boolean boxCells(long[][] box, int[] rows, int[] cols, int[] bounds) {
+		int n = 0;
+		int minRow = Integer.MAX_VALUE, maxRow = -1, minCol = Integer.MAX_VALUE, maxCol = -1;
+		for (int row = 0; row < box.length; row++) {
+			for (int w = 0; w < box[row].length; w++) {
+				long word = box[row][w];
+				while (word != 0) {
+					if (n == rows.length) {
+						return false;
+					}
+					int col = (w << 6) + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					rows[n] = row;
+					cols[n++] = col;
+					minRow = Math.min(minRow, row);
+					maxRow = Math.max(maxRow, row);
+					minCol = Math.min(minCol, col);
+					maxCol = Math.max(maxCol, col);
+				}
+			}
+		}
+		bounds[0] = n;
+		bounds[1] = minRow;
+		bounds[2] = minCol;
+		bounds[3] = maxRow - minRow + 1;
+		bounds[4] = maxCol - minCol + 1;
+		return n > 0;
+	}
+
+	/* Hashes a shape as it is, apart from where it is.  The cells can be in any order. */
+	private static long shapeHash(int[] rows, int[] cols, int n, int minRow, int minCol,
+			int height, int width) {
+		long sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += Rule30Random.mix(((long) (rows[i] - minRow) << 32) | (cols[i] - minCol));
+		}
+		return finish(sum, n, height, width);
+	}
+
+	/* Hashes a shape in all 8 of its orientations and returns the smallest, which is
+	 * the same whichever orientation the shape was in to begin with.
+	 */
+	private static long symmetricHash(int[] rows, int[] cols, int n, int minRow, int minCol,
+			int height, int width) {
+		long[] sums = new long[8];
+		for (int i = 0; i < n; i++) {
+			long r = rows[i] - minRow, c = cols[i] - minCol;
+			long rFlip = height - 1 - r, cFlip = width - 1 - c;
+			sums[0] += Rule30Random.mix((r << 32) | c);
+			sums[1] += Rule30Random.mix((r << 32) | cFlip);
+			sums[2] += Rule30Random.mix((rFlip << 32) | c);
+			sums[3] += Rule30Random.mix((rFlip << 32) | cFlip);
+			sums[4] += Rule30Random.mix((c << 32) | r);
+			sums[5] += Rule30Random.mix((c << 32) | rFlip);
+			sums[6] += Rule30Random.mix((cFlip << 32) | r);
+			sums[7] += Rule30Random.mix((cFlip << 32) | rFlip);
+		}
+		long min = Long.MAX_VALUE;
+		for (int i = 0; i < 8; i++) {
+			min = Math.min(min, finish(sums[i], n, (i < 4) ? height : width,
+					(i < 4) ? width : height));
+		}
+		return min;
+	}
+
+	private static long finish(long sum, int n, int height, int width) {
+		long hash = Rule30Random.mix(sum ^ ((long) n << 40) ^ ((long) height << 20) ^ width);
+		return (hash == LongHashSet.EMPTY) ? 0 : hash;
+	}
+
+	private static long positionKey(long key, int rowCentre, int colCentre, int cols) {
+		long hash = Rule30Random.mix(key + (((long) rowCentre << 32)
+				| Math.floorMod(colCentre, 2 * cols)));
+		return (hash == LongHashSet.EMPTY) ? 0 : hash;
+	}
+
+	/* Adds the counts of another census to this one, for example one run in parallel
+	 * with a different rule.
+	 */
+	public void merge(PatternCensus other) {
+		for (Pattern theirs : other.patterns) {
+			int count = other.counts.get(theirs.key, 0);
+			pattern(theirs.key, theirs.kind, theirs.period, theirs.population);
+			if (count > 0) {
+				counts.addTo(theirs.key, count);
+			}
+		}
+		numSamples += other.numSamples;
+		numCounted += other.numCounted;
+	}
+
+	/* Returns the number of times the object with the given key has been counted. */
+	public int getCount(long key) {
+		return counts.get(key, 0);
+	}
+
+	/* Returns every object counted at least once, the most common first. */
+	public List<Pattern> getPatterns() {
+		List<Pattern> result = new ArrayList<>();
+		for (Pattern pattern : patterns) {
+			pattern.count = counts.get(pattern.key, 0);
+			if (pattern.count > 0) {
+				result.add(pattern);
+			}
+		}
+		Collections.sort(result, new Comparator<Pattern>() {
+			public int compare(Pattern a, Pattern b) {
+				return Integer.compare(b.count, a.count);
+			}
+		});
+		return result;
+	}
+
+	public long getNumSamples() {
+		return numSamples;
+	}
+
+	/* Returns the total number of objects counted. */
+	public long getNumCounted() {
+		return numCounted;
+	}
+
+	/* The names of some common objects, drawn with 'o' for a living cell and rows
+	 * separated by '/'.
+	 */
+	private static final String[] KNOWN_NAMES = {"block", "beehive", "loaf", "boat", "ship",
+			"tub", "pond", "long boat", "barge", "mango", "blinker", "toad", "beacon", "glider",
+			"lightweight spaceship"};
+	private static final String[] KNOWN_PICTURES = {"oo/oo", ".oo./o..o/.oo.",
+			".oo./o..o/.o.o/..o.", "oo./o.o/.o.", "oo./o.o/.oo", ".o./o.o/.o.",
+			".oo./o..o/o..o/.oo.", "oo../o.o./.o.o/..o.", ".o../o.o./.o.o/..o.",
+			".oo../o..o./.o..o/..oo.", "ooo", ".ooo/ooo.", "oo../oo../..oo/..oo",
+			".o./..o/ooo", ".o..o/o..../o...o/oooo."};
+	private static LongIntHashMap knownNames; // key -> index into KNOWN_NAMES
+
+	private static synchronized LongIntHashMap knownNames() {
+		if (knownNames == null) {
+			LongIntHashMap names = new LongIntHashMap(KNOWN_NAMES.length);
+			for (int i = 0; i < KNOWN_PICTURES.length; i++) {
+				String[] lines = KNOWN_PICTURES[i].split("/");
+				PatternCensus census = new PatternCensus();
+				int n = 0, width = 0;
+				for (int row = 0; row < lines.length; row++) {
+					width = Math.max(width, lines[row].length());
+					for (int col = 0; col < lines[row].length(); col++) {
+						if (lines[row].charAt(col) == 'o') {
+							census.cellRows[n] = row;
+							census.cellCols[n++] = col;
+						}
+					}
+				}
+				names.put(census.classify(n, 0, 0, lines.length, width).pattern.key, i);
+			}
+			knownNames = names;
+		}
+		return knownNames;
+	}
+
+	/* Runs a census of each of the rules given on the command line (as a comma-separated
+	 * list, 30 by default), in parallel, and prints the most common objects for each one
+	 * and for all of them together.  The other optional arguments are the number of
+	 * generations for each rule (one million by default), the number of generations
+	 * between samples and the engine.
+	 */
+	public static void main(String[] args) {
+		final int[] rules = (args.length > 0)
+				? Arrays.stream(args[0].split(",")).mapToInt(Integer::parseInt).toArray()
+				: new int[] {30};
+		final long generations = (args.length > 1) ? Long.parseLong(args[1]) : 1000000;
+		final int interval = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_INTERVAL;
+		final String engineName = (args.length > 3) ? args[3] : "stamped";
+
+		long start = System.nanoTime();
+		List<PatternCensus> results = IntStream.range(0, rules.length).parallel()
+				.mapToObj(i -> {
+					Grid grid = new Grid(new CARowMaker(rules[i]));
+					grid.setEngine(engineName);
+					PatternCensus census = new PatternCensus();
+					census.run(grid, generations, interval);
+					return census;
+				}).collect(Collectors.toList());
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		PatternCensus total = new PatternCensus();
+		for (int i = 0; i < rules.length; i++) {
+			print("Rule " + rules[i], results.get(i), 10);
+			total.merge(results.get(i));
+		}
+		if (rules.length > 1) {
+			print("All rules", total, 20);
+		}
+		System.out.printf("%d generations in %.1f s (%.0f generations per second)%n",
+				generations * rules.length, seconds, generations * rules.length / seconds);
+	}
+
+	private static void print(String title, PatternCensus census, int limit) {
+		System.out.println(title + ": " + census.getNumCounted() + " objects in "
+				+ census.getNumSamples() + " samples");
+		List<Pattern> found = census.getPatterns();
+		for (int i = 0; i < Math.min(limit, found.size()); i++) {
+			System.out.printf("%10d  %s%n", found.get(i).getCount(), found.get(i));
+		}
+		System.out.println();
+	}
+
+}
@@ -0,0 +1,345 @@
+package cellularAutomata;
+
+import java.io.Closeable;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntUnaryOperator;
+
+/* This class runs a Grid as a pipeline of three threads, instead of doing everything for
+ * a time step on one thread the way Grid.update and the GUI do:
+ *     1. the input stage makes new input rows with the InputSource,
+ *     2. the Life stage does the time steps of the Grid, and copies the ages of each
+ *        generation (the Game of Life region followed by the input rows) into a buffer,
+ *     3. the colour stage turns those ages into a frame of ARGB pixels, one per cell,
+ *        ready to be drawn.
+ * So while the Game of Life is working on one generation, the next input rows are
+ * already being made and the previous generation is being coloured.  Whatever draws the
+ * frames is the fourth stage: it takes them with pollFrame, and hands them back with
+ * releaseFrame once it is done with them.
+ *
+ * The stages hand their work to each other through SpscRings, which never lock.  The
+ * snapshot buffers and frames are allocated up front and passed back to the stage that
+ * fills them through rings going the other way, so those are never allocated again.
+ * The input rows are not reused, though: the grid keeps each one as one of its input
+ * rows, so the input stage makes a new array for every generation, and some engines
+ * (such as the reference one) make a whole new grid on every time step.  When a ring is
+ * full, the stage feeding it waits, so if the frames aren't being taken the whole
+ * pipeline stops instead of running ahead.  How full each ring is can be read at any
+ * time, which shows which stage is holding the others up: a full ring means the stage
+ * after it is the slow one.
+ */
+public class PipelinedSimulation implements Closeable {
+
+	/* One generation, coloured.  Row r, column c of the grid is argb[r * width + c], and
+	 * the rows are the Game of Life region followed by the input rows.
+	 */
+	public static class Frame {
+		public final int[] argb;
+		public final int width, height;
+		private long generation;
+
+		private Frame(int width, int height) {
+			this.width = width;
+			this.height = height;
+			argb = new int[width * height];
+		}
+
+		/* Returns the number of time steps the grid had done when this was made. */
+		public long getGeneration() {
+			return generation;
+		}
+	}
+
+	/* The ages of one generation, in the same layout as a Frame. */
+	private static class Snapshot {
+		private final int[] ages;
+		private long generation;
+
+		private Snapshot(int size) {
+			ages = new int[size];
+		}
+	}
+
+	private final Grid grid;
+	private final IntUnaryOperator colors;
+	private final int width, height;
+
+	private final SpscRing<int[]> inputRows; // input stage -> Life stage
+	private final SpscRing<Snapshot> snapshots; // Life stage -> colour stage
+	private final SpscRing<Snapshot> freeSnapshots; // colour stage -> Life stage
+	private final SpscRing<Frame> frames; // colour stage -> renderer
+	private final SpscRing<Frame> freeFrames; // renderer -> colour stage
+
+	private final Thread[] threads;
+	private volatile boolean closed = false;
+	private volatile Throwable failure; // set if one of the stages threw something
+
+	/* Constructor for PipelinedSimulation.  The grid starts out the same as a new Grid,
+	 * using the named engine and taking its input rows from 'source'.  'colors' turns an
+	 * age into an ARGB pixel (for example ColorTheme.getRGB), and 'queueDepth' is how
+	 * many items each ring can hold.  The threads aren't started until start is called.
+	 */
+	public PipelinedSimulation(InputSource source, String engineName, IntUnaryOperator colors,
+			int queueDepth) {
+		if (queueDepth < 1) {
+			throw new IllegalArgumentException("Illegal Queue Depth: " + queueDepth);
+		}
+		this.colors = colors;
+		inputRows = new SpscRing<>(queueDepth);
+		snapshots = new SpscRing<>(queueDepth);
+		frames = new SpscRing<>(queueDepth);
+
+		/* Every stage can be holding one item while its rings are full, so there are
+		 * two more buffers (and frames) than fit in a ring.
+		 */
+		int numBuffers = snapshots.capacity() + 2;
+		freeSnapshots = new SpscRing<>(numBuffers);
+		freeFrames = new SpscRing<>(numBuffers);
+		width = Grid.NUM_GRID_COLS;
+		height = Grid.NUM_GRID_ROWS + Grid.NUM_INPUT_ROWS;
+		for (int i = 0; i < numBuffers; i++) {
+			freeSnapshots.offer(new Snapshot(width * height));
+			freeFrames.offer(new Frame(width, height));
+		}
+
+		/* The grid takes its rows from the input stage, which starts from the same bottom
+		 * row as the grid, so the rows are exactly the ones the grid would have made.
+		 */
+		grid = new Grid(new InputSource() {
+			public int[] nextRow(int[] row) {
+				int[] next;
+				for (int attempt = 0; (next = inputRows.poll()) == null; attempt++) {
+					idle(attempt);
+				}
+				return next;
+			}
+		});
+		grid.setEngine(engineName);
+		final int[] firstRow = grid.getInputRegion()[Grid.NUM_INPUT_ROWS - 1].clone();
+
+		threads = new Thread[] {
+			new Thread(new Runnable() {
+				public void run() {
+					int[] row = firstRow;
+					while (!closed) {
+						row = source.nextRow(row);
+						put(inputRows, row);
+					}
+				}
+			}, "PipelinedSimulation input"),
+			new Thread(new Runnable() {
+				public void run() {
+					while (!closed) {
+						grid.update();
+						Snapshot snapshot = take(freeSnapshots);
+						copyAges(grid, snapshot);
+						put(snapshots, snapshot);
+					}
+				}
+			}, "PipelinedSimulation life"),
+			new Thread(new Runnable() {
+				public void run() {
+					while (!closed) {
+						Snapshot snapshot = take(snapshots);
+						Frame frame = take(freeFrames);
+						colour(colors, snapshot, frame);
+						put(freeSnapshots, snapshot);
+						put(frames, frame);
+					}
+				}
+			}, "PipelinedSimulation colour")
+		};
+		for (Thread thread : threads) {
+			thread.setDaemon(true);
+			thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+				public void uncaughtException(Thread t, Throwable e) {
+					if (!(e instanceof Stopped)) {
+						failure = e;
+					}
+				}
+			});
+		}
+	}
+
+	/* Starts the three stages. */
+	public void start() {
+		for (Thread thread : threads) {
+			thread.start();
+		}
+	}
+
+	/* Returns the oldest frame that hasn't been taken yet, or null if there isn't one.
+	 * The frame must be given back with releaseFrame.  Only one thread may take frames.
+	 * Throws an IllegalStateException if one of the stages has failed.
+	 */
+	public Frame pollFrame() {
+		if (failure != null) {
+			throw new IllegalStateException("Pipeline stage failed", failure);
+		}
+		return frames.poll();
+	}
+
+	/* Hands a frame back to the colour stage to be reused.  Must be called from the
+	 * thread that took it.
+	 */
+	public void releaseFrame(Frame frame) {
+		freeFrames.offer(frame);
+	}
+
+	/* Stops the stages.  Each one gives up as soon as it next has to wait, so the grid
+	 * may be left part of the way through a time step.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (Thread thread : threads) {
+			thread.interrupt();
+		}
+	}
+
+	/* The number of input rows made but not yet used by the Life stage. */
+	public int getInputQueueDepth() {
+		return inputRows.size();
+	}
+
+	/* The number of generations done but not yet coloured. */
+	public int getAgesQueueDepth() {
+		return snapshots.size();
+	}
+
+	/* The number of frames coloured but not yet taken. */
+	public int getFrameQueueDepth() {
+		return frames.size();
+	}
+
+	/* The most items any of the rings can hold. */
+	public int getQueueCapacity() {
+		return frames.capacity();
+	}
+
+	/* Returns the grid run by the Life stage.  It must not be touched while the
+	 * pipeline is running.
+	 */
+	public Grid getGrid() {
+		return grid;
+	}
+
+	/* Copies the ages of the grid's current generation into a snapshot. */
+	private static void copyAges(Grid grid, Snapshot snapshot) {
+		int[][] region = grid.getGameOfLifeRegion();
+		int[][] input = grid.getInputRegion();
+		int width = Grid.NUM_GRID_COLS;
+		for (int row = 0; row < region.length; row++) {
+			System.arraycopy(region[row], 0, snapshot.ages, row * width, width);
+		}
+		for (int row = 0; row < input.length; row++) {
+			System.arraycopy(input[row], 0, snapshot.ages, (region.length + row) * width, width);
+		}
+		snapshot.generation = grid.getGeneration();
+	}
+
+	private static void colour(IntUnaryOperator colors, Snapshot snapshot, Frame frame) {
+		int[] ages = snapshot.ages;
+		int[] argb = frame.argb;
+		for (int i = 0; i < ages.length; i++) {
+			argb[i] = colors.applyAsInt(ages[i]);
+		}
+		frame.generation = snapshot.generation;
+	}
+
+	/* Adds an item to a ring, waiting while it's full. */
+	private <E> void put(SpscRing<E> ring, E item) {
+		for (int attempt = 0; !ring.offer(item); attempt++) {
+			idle(attempt);
+		}
+	}
+
+	/* Takes an item from a ring, waiting while it's empty. */
+	private <E> E take(SpscRing<E> ring) {
+		E item;
+		for (int attempt = 0; (item = ring.poll()) == null; attempt++) {
+			idle(attempt);
+		}
+		return item;
+	}
+
+	/* Waits a little before trying a ring again.  The stages usually only wait for a
+	 * moment, so this spins at first, then yields, and only then sleeps for short spells,
+	 * so that a pipeline held up by a slow renderer doesn't keep the processors busy.
+	 * Throws Stopped, which ends the stage's thread, once the pipeline is closed.
+	 */
+	private void idle(int attempt) {
+		if (closed) {
+			throw new Stopped();
+		}
+		if (attempt > 1000) {
+			LockSupport.parkNanos(100000);
+		} else if (attempt > 100) {
+			Thread.yield();
+		}
+	}
+
+	/* Thrown to unwind a stage that is waiting on a ring when the pipeline is closed. */
+	private static class Stopped extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/* Runs a pipeline and, for comparison, the same work on a single thread, and prints
+	 * how fast each one went and how full the rings were on average.  The optional
+	 * arguments are the number of generations (5000 by default), the engine, and the
+	 * depth of the rings.
+	 */
+	public static void main(String[] args) {
+		int generations = (args.length > 0) ? Integer.parseInt(args[0]) : 5000;
+		String engineName = (args.length > 1) ? args[1] : "packed";
+		int queueDepth = (args.length > 2) ? Integer.parseInt(args[2]) : 16;
+
+		/* a plain grey scale, since the colour themes belong to the GUI */
+		IntUnaryOperator grey = new IntUnaryOperator() {
+			public int applyAsInt(int age) {
+				int level = 255 - Math.min(age, 255);
+				return 0xff000000 | (level << 16) | (level << 8) | level;
+			}
+		};
+
+		long start = System.nanoTime();
+		Grid grid = new Grid(new CARowMaker(30));
+		grid.setEngine(engineName);
+		int height = Grid.NUM_GRID_ROWS + Grid.NUM_INPUT_ROWS;
+		Snapshot snapshot = new Snapshot(Grid.NUM_GRID_COLS * height);
+		Frame frame = new Frame(Grid.NUM_GRID_COLS, height);
+		for (int g = 0; g < generations; g++) {
+			grid.update();
+			copyAges(grid, snapshot);
+			colour(grey, snapshot, frame);
+		}
+		long serialNanos = System.nanoTime() - start;
+
+		long[] depthTotals = new long[3];
+		start = System.nanoTime();
+		try (PipelinedSimulation pipeline = new PipelinedSimulation(new CARowMaker(30),
+				engineName, grey, queueDepth)) {
+			pipeline.start();
+			for (int g = 0; g < generations; ) {
+				Frame next = pipeline.pollFrame();
+				if (next == null) {
+					Thread.yield();
+					continue;
+				}
+				depthTotals[0] += pipeline.getInputQueueDepth();
+				depthTotals[1] += pipeline.getAgesQueueDepth();
+				depthTotals[2] += pipeline.getFrameQueueDepth();
+				pipeline.releaseFrame(next);
+				g++;
+			}
+		}
+		long pipelinedNanos = System.nanoTime() - start;
+
+		System.out.println(generations + " generations with the " + engineName + " engine");
+		System.out.println("serial:    " + serialNanos / 1000000 + " ms");
+		System.out.println("pipelined: " + pipelinedNanos / 1000000 + " ms");
+		System.out.printf("average queue depths: input %.1f, ages %.1f, frames %.1f (of %d)%n",
+				(double) depthTotals[0] / generations, (double) depthTotals[1] / generations,
+				(double) depthTotals[2] / generations, queueDepth);
+	}
+
+}
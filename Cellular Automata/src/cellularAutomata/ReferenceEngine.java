@@ -0,0 +1,33 @@
+package cellularAutomata;
+
+/* The reference LifeEngine, which simply uses GameOfLife.updateGrid.  Every other engine
+ * is checked against this one.
+ */
+public class ReferenceEngine implements LifeEngine {
+
+	private int[][] ages;
+
+	@Override
+	public String getName() {
+		return "reference";
+	}
+
+	@Override
+	public void load(int[][] ages) {
+		this.ages = new int[ages.length][];
+		for (int row = 0; row < ages.length; row++) {
+			this.ages[row] = ages[row].clone();
+		}
+	}
+
+	@Override
+	public void step(int[] input) {
+		ages = GameOfLife.updateGrid(ages, input);
+	}
+
+	@Override
+	public int[][] getAges() {
+		return ages;
+	}
+
+}
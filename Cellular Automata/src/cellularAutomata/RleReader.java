@@ -0,0 +1,218 @@
+package cellularAutomata;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/* Reads a pattern in the RLE format used by most Game of Life programs, one row at a
+ * time.  A pattern looks like this:
+ *     #C A glider
+ *     x = 3, y = 3, rule = B3/S23
+ *     bob$2bo$3o!
+ * After any "#" comment lines, the header gives the width and height (and optionally
+ * the rule).  Then 'b' is a dead cell, 'o' is a living one and '$' ends a row, each of
+ * which can have a count in front of it, and '!' ends the pattern.  Dead cells at the end
+ * of a row are left out.  Any other letter is a cell of a program with more than two
+ * states, and is read as alive.  The header can be missing, in which case the size isn't
+ * known until the end.
+ *
+ * Patterns can be much bigger than the grid, so nothing is stored but the row being
+ * read: nextRow reads the runs of a single row straight from the stream into a packed
+ * row (as in PackedLife.packRow), setting a whole word at a time, and only the columns
+ * the caller asked for are kept.  A run of blank rows ("1000$") is counted, not read.
+ * The stream is read through a buffer of its own, so it doesn't need to be buffered.
+ */
+public class RleReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final InputStream in;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int position = 0, limit = 0;
+
+	private long width = -1, height = -1; // -1 if there was no header
+	private String rule; // null if the header didn't give one
+	private long row = 0; // the number of rows read so far
+	private long blankRows = 0; // rows ended by the last '$' that haven't been returned yet
+	private boolean ended = false;
+
+	/* Constructor for RleReader, which reads the comments and the header straight away. */
+	public RleReader(InputStream in) throws IOException {
+		this.in = in;
+		readHeader();
+	}
+
+	/* Returns the width from the header, or -1 if there wasn't one. */
+	public long getWidth() {
+		return width;
+	}
+
+	/* Returns the height from the header, or -1 if there wasn't one. */
+	public long getHeight() {
+		return height;
+	}
+
+	/* Returns the rule from the header, such as "B3/S23", or null if it didn't give one. */
+	public String getRule() {
+		return rule;
+	}
+
+	/* Returns the number of rows read so far. */
+	public long getRow() {
+		return row;
+	}
+
+	/* Reads the next row of the pattern into 'bits', which is cleared first.  The cell in
+	 * column c of the pattern is put in column c + shift of 'bits', and only columns 0 to
+	 * cols - 1 are kept ('bits' must have at least PackedLife.words(cols) elements).
+	 * Returns false, and leaves 'bits' clear, once there are no more rows.
+	 */
+	public boolean nextRow(long[] bits, long shift, int cols) throws IOException {
+		for (int w = 0; w < PackedLife.words(cols); w++) {
+			bits[w] = 0;
+		}
+		if (blankRows > 0) {
+			blankRows--;
+			row++;
+			return true;
+		}
+		if (ended) {
+			return false;
+		}
+
+		long col = 0;
+		long count = 0;
+		while (true) {
+			int c = read();
+			if (c >= '0' && c <= '9') {
+				if (count > (Long.MAX_VALUE - 9) / 10) {
+					throw new IOException("Illegal Run Length in row " + row);
+				}
+				count = count * 10 + (c - '0');
+				continue;
+			}
+			long run = (count == 0) ? 1 : count;
+			count = 0;
+			if (c == 'b' || c == '.') {
+				col += run;
+			} else if (c == '$') {
+				blankRows = run - 1;
+				row++;
+				return true;
+			} else if (c == '!' || c < 0) {
+				ended = true;
+				if (col > 0) {
+					row++;
+					return true;
+				}
+				return false;
+			} else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+				setRange(bits, col + shift, col + run + shift, cols);
+				col += run;
+			} else if (c == '#') {
+				skipLine();
+			} else if (c > ' ') {
+				throw new IOException("Illegal Character in row " + row + ": " + (char) c);
+			}
+		}
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/* Sets the bits from 'from' up to (not including) 'to', clipped to 0 to cols - 1. */
+	private static void setRange(long[] bits, long from, long to, int cols) {
+		if (from >= cols || to <= 0 || from >= to) {
+			return;
+		}
+		int start = (int) Math.max(from, 0);
+		int end = (int) Math.min(to, cols);
+		int first = start >>> 6, last = (end - 1) >>> 6;
+		long firstMask = -1L << start; // shifts only use the low 6 bits
+		long lastMask = -1L >>> (63 - ((end - 1) & 63));
+		if (first == last) {
+			bits[first] |= firstMask & lastMask;
+			return;
+		}
+		bits[first] |= firstMask;
+		for (int w = first + 1; w < last; w++) {
+			bits[w] = -1L;
+		}
+		bits[last] |= lastMask;
+	}
+
+	/* Skips the comments and reads the header, if there is one.  Anything else is left
+	 * for nextRow.
+	 */
+	private void readHeader() throws IOException {
+		while (true) {
+			int c = peek();
+			if (c == '#') {
+				skipLine();
+			} else if (c == '\r' || c == '\n' || c == ' ' || c == '\t') {
+				read();
+			} else if (c == 'x') {
+				StringBuilder line = new StringBuilder();
+				for (c = read(); c >= 0 && c != '\n' && c != '\r'; c = read()) {
+					line.append((char) c);
+				}
+				parseHeader(line.toString());
+				return;
+			} else {
+				return; // no header
+			}
+		}
+	}
+
+	private void parseHeader(String line) throws IOException {
+		for (String field : line.split(",")) {
+			String[] parts = field.split("=", 2);
+			if (parts.length < 2) {
+				throw new IOException("Illegal RLE Header: " + line);
+			}
+			String name = parts[0].trim();
+			String value = parts[1].trim();
+			try {
+				if (name.equals("x")) {
+					width = Long.parseLong(value);
+				} else if (name.equals("y")) {
+					height = Long.parseLong(value);
+				} else if (name.equals("rule")) {
+					rule = value;
+				}
+			} catch (NumberFormatException e) {
+				throw new IOException("Illegal RLE Header: " + line);
+			}
+		}
+	}
+
+	private void skipLine() throws IOException {
+		int c;
+		do {
+			c = read();
+		} while (c >= 0 && c != '\n');
+	}
+
+	/* Returns the next byte of the stream without using it up, or -1 at the end. */
+	private int peek() throws IOException {
+		if (position == limit) {
+			limit = in.read(buffer, 0, buffer.length);
+			position = 0;
+			if (limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		return buffer[position] & 0xff;
+	}
+
+	private int read() throws IOException {
+		int c = peek();
+		if (c >= 0) {
+			position++;
+		}
+		return c;
+	}
+
+}
@@ -0,0 +1,138 @@
+package cellularAutomata;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/* Writes a pattern in the RLE format (see RleReader) one row at a time, from packed rows
+ * (as in PackedLife.packRow).  The runs of each row are found a word at a time with
+ * Long.numberOfTrailingZeros, so long stretches of dead or living cells cost next to
+ * nothing, and blank rows are only counted until the next row with a living cell, so
+ * they end up as a single "n$".  The text goes into a buffer that is written to the
+ * stream whenever it fills up, and the lines are kept to at most 70 characters, as the
+ * format asks.
+ *
+ * The pattern is only complete once close (or finish) has written the final '!'.
+ */
+public class RleWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int MAX_LINE_LENGTH = 70;
+
+	private final OutputStream out;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int length = 0;
+	private int lineLength = 0;
+	private final byte[] token = new byte[24]; // a run count and its tag
+
+	private long endedRows = 0; // rows ended but not written yet, since they might be blank
+	private boolean finished = false;
+
+	/* Constructor for RleWriter, which writes the comment (if it isn't null) and the header
+	 * straight away.  The rule can also be null, to leave it out of the header.
+	 */
+	public RleWriter(OutputStream out, long width, long height, String rule, String comment)
+			throws IOException {
+		if (width < 0 || height < 0) {
+			throw new IllegalArgumentException("Illegal Pattern Size: " + width + "x" + height);
+		}
+		this.out = out;
+		if (comment != null) {
+			appendText("#C " + comment + "\n");
+		}
+		appendText("x = " + width + ", y = " + height
+				+ ((rule != null) ? ", rule = " + rule : "") + "\n");
+	}
+
+	/* Writes the next row, which is the first 'cols' bits of 'bits'. */
+	public void writeRow(long[] bits, int cols) throws IOException {
+		int col = 0;
+		while (col < cols) {
+			int born = nextBit(bits, col, cols, true);
+			if (born >= cols) {
+				break; // the rest of the row is dead, so it is left out
+			}
+			int died = nextBit(bits, born, cols, false);
+			if (endedRows > 0) {
+				appendRun(endedRows, '$');
+				endedRows = 0;
+			}
+			if (born > col) {
+				appendRun(born - col, 'b');
+			}
+			appendRun(died - born, 'o');
+			col = died;
+		}
+		endedRows++;
+	}
+
+	/* Writes the final '!' and sends everything to the stream, without closing it. */
+	public void finish() throws IOException {
+		if (!finished) {
+			finished = true;
+			appendText("!\n");
+			out.write(buffer, 0, length);
+			length = 0;
+			out.flush();
+		}
+	}
+
+	/* Finishes the pattern, then closes the stream. */
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			out.close();
+		}
+	}
+
+	/* Returns the first column from 'from' onwards whose bit is set (or clear, if 'set'
+	 * is false), or cols if there isn't one.
+	 */
+	private static int nextBit(long[] bits, int from, int cols, boolean set) {
+		int w = from >>> 6;
+		long word = (set ? bits[w] : ~bits[w]) & (-1L << from);
+		while (word == 0) {
+			if (++w >= PackedLife.words(cols)) {
+				return cols;
+			}
+			word = set ? bits[w] : ~bits[w];
+		}
+		return Math.min((w << 6) + Long.numberOfTrailingZeros(word), cols);
+	}
+
+	/* Appends a run, starting a new line first if it wouldn't fit on this one. */
+	private void appendRun(long count, char tag) throws IOException {
+		int end = token.length;
+		token[--end] = (byte) tag;
+		if (count > 1) {
+			for (long n = count; n > 0; n /= 10) {
+				token[--end] = (byte) ('0' + n % 10);
+			}
+		}
+		int tokenLength = token.length - end;
+		if (lineLength + tokenLength > MAX_LINE_LENGTH) {
+			append('\n');
+			lineLength = 0;
+		}
+		for (int i = end; i < token.length; i++) {
+			append((char) token[i]);
+		}
+		lineLength += tokenLength;
+	}
+
+	private void appendText(String text) throws IOException {
+		for (int i = 0; i < text.length(); i++) {
+			append(text.charAt(i));
+		}
+	}
+
+	private void append(char c) throws IOException {
+		if (length == buffer.length) {
+			out.write(buffer, 0, length);
+			length = 0;
+		}
+		buffer[length++] = (byte) c;
+	}
+
+}
@@ -0,0 +1,465 @@
+package cellularAutomata;
+
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/* A random number generator driven by rule 30.  Taking the centre column of a
+ * CARowMaker running rule 30 is a well known source of random bits, but it only gives
+ * one bit per row, and each row costs a pass over an int array.  Here the automaton is
+ * stored packed into bits (a ring of 4096 cells in 64 longs), so a whole row is computed
+ * 64 cells at a time with the word-parallel form of rule 30,
+ *     new cell = left XOR (cell OR right),
+ * and every cell of the row is used, giving 4096 bits per row instead of 1.
+ *
+ * Neighboring cells of one row, and a cell and the cells next to it in the following
+ * row, are not independent of each other, which is why the centre column is normally
+ * used on its own.  So two rows are computed for every row that is used, and each
+ * word is passed through the same 64-bit mixing function as java.util.SplittableRandom
+ * on the way out, which spreads every bit of the word over all of the output bits.
+ *
+ * This is a subclass of java.util.Random, so it can be used anywhere a Random is (the
+ * project is built for Java 8, which doesn't have java.util.random.RandomGenerator).  All
+ * of the methods of Random work, since they are built on the overridden methods here,
+ * and nextBytes and the streams are overridden to go through whole words at a time.
+ * Unlike Random, it is not thread-safe.  Instead, like java.util.SplittableRandom, it
+ * can be split into independent generators, one for each thread, and the streams do
+ * that on their own when they are run in parallel.  Two generators made with the same
+ * seed give the same numbers.
+ */
+public class Rule30Random extends Random {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int WORDS = 64; // 4096 cells
+	private static final int STEPS_PER_ROW = 2; // rows computed for each row used
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private long[] cells;
+	private long[] next;
+	private final long[] output = new long[WORDS]; // mixed words of the last row used
+	private int position = WORDS; // the next word of 'output' to hand out
+
+	/* Constructor that seeds the generator from the given value. */
+	public Rule30Random(long seed) {
+		super(0);
+		reseed(seed);
+	}
+
+	/* Constructor with a seed that is different every time. */
+	public Rule30Random() {
+		this(System.nanoTime() ^ new Random().nextLong());
+	}
+
+	/* Reseeds the generator.  Random's constructor calls this before the cells exist,
+	 * which is ignored; the constructor above seeds the cells afterwards.
+	 */
+	@Override
+	public void setSeed(long seed) {
+		if (cells != null) {
+			reseed(seed);
+		}
+	}
+
+	/* Returns a new generator with its own state, taken from this one.  The two then go
+	 * their own way, and can be used on different threads.
+	 */
+	public Rule30Random split() {
+		return new Rule30Random(nextLong());
+	}
+
+	@Override
+	protected int next(int bits) {
+		return (int) (nextLong() >>> (64 - bits));
+	}
+
+	@Override
+	public long nextLong() {
+		if (position == WORDS) {
+			nextOutputRow();
+		}
+		return output[position++];
+	}
+
+	@Override
+	public int nextInt() {
+		return (int) (nextLong() >>> 32);
+	}
+
+	@Override
+	public int nextInt(int bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("Illegal Bound: " + bound);
+		}
+		return (int) boundedLong(0, bound);
+	}
+
+	@Override
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	@Override
+	public float nextFloat() {
+		return (nextLong() >>> 40) * 0x1.0p-24f;
+	}
+
+	@Override
+	public boolean nextBoolean() {
+		return nextLong() < 0;
+	}
+
+	/* Fills the array eight bytes at a time. */
+	@Override
+	public void nextBytes(byte[] bytes) {
+		int i = 0;
+		for (int end = bytes.length & ~7; i < end; i += 8) {
+			long word = nextLong();
+			for (int b = 0; b < 8; b++) {
+				bytes[i + b] = (byte) word;
+				word >>>= 8;
+			}
+		}
+		if (i < bytes.length) {
+			long word = nextLong();
+			for (; i < bytes.length; i++) {
+				bytes[i] = (byte) word;
+				word >>>= 8;
+			}
+		}
+	}
+
+	/* The streams.  These take the same arguments as the ones in Random, but split the
+	 * generator when they are run in parallel, rather than sharing it between threads.
+	 */
+
+	@Override
+	public IntStream ints(long streamSize) {
+		checkSize(streamSize);
+		return StreamSupport.intStream(new Ints(this, 0, streamSize, 0, 0), false);
+	}
+
+	@Override
+	public IntStream ints() {
+		return StreamSupport.intStream(new Ints(this, 0, Long.MAX_VALUE, 0, 0), false);
+	}
+
+	@Override
+	public IntStream ints(long streamSize, int origin, int bound) {
+		checkSize(streamSize);
+		checkRange(origin, bound);
+		return StreamSupport.intStream(new Ints(this, 0, streamSize, origin, bound), false);
+	}
+
+	@Override
+	public IntStream ints(int origin, int bound) {
+		checkRange(origin, bound);
+		return StreamSupport.intStream(new Ints(this, 0, Long.MAX_VALUE, origin, bound), false);
+	}
+
+	@Override
+	public LongStream longs(long streamSize) {
+		checkSize(streamSize);
+		return StreamSupport.longStream(new Longs(this, 0, streamSize, 0, 0), false);
+	}
+
+	@Override
+	public LongStream longs() {
+		return StreamSupport.longStream(new Longs(this, 0, Long.MAX_VALUE, 0, 0), false);
+	}
+
+	@Override
+	public LongStream longs(long streamSize, long origin, long bound) {
+		checkSize(streamSize);
+		checkRange(origin, bound);
+		return StreamSupport.longStream(new Longs(this, 0, streamSize, origin, bound), false);
+	}
+
+	@Override
+	public LongStream longs(long origin, long bound) {
+		checkRange(origin, bound);
+		return StreamSupport.longStream(new Longs(this, 0, Long.MAX_VALUE, origin, bound), false);
+	}
+
+	@Override
+	public DoubleStream doubles(long streamSize) {
+		checkSize(streamSize);
+		return StreamSupport.doubleStream(new Doubles(this, 0, streamSize, 0, 1), false);
+	}
+
+	@Override
+	public DoubleStream doubles() {
+		return StreamSupport.doubleStream(new Doubles(this, 0, Long.MAX_VALUE, 0, 1), false);
+	}
+
+	@Override
+	public DoubleStream doubles(long streamSize, double origin, double bound) {
+		checkSize(streamSize);
+		checkRange(origin, bound);
+		return StreamSupport.doubleStream(new Doubles(this, 0, streamSize, origin, bound), false);
+	}
+
+	@Override
+	public DoubleStream doubles(double origin, double bound) {
+		checkRange(origin, bound);
+		return StreamSupport.doubleStream(new Doubles(this, 0, Long.MAX_VALUE, origin, bound),
+				false);
+	}
+
+	/* Returns a number from origin (inclusive) to bound (exclusive), or any long if
+	 * origin >= bound.  Numbers that would make the result biased are thrown away and
+	 * tried again, as in Random.
+	 */
+	private long boundedLong(long origin, long bound) {
+		long r = nextLong();
+		if (origin >= bound) {
+			return r;
+		}
+		long n = bound - origin;
+		if (n > 0) {
+			/* take the top 63 bits, and reject the last partial multiple of n */
+			for (long u = r >>> 1; u + (n - 1) - (r = u % n) < 0; u = nextLong() >>> 1) {
+			}
+			return origin + r;
+		}
+		while (r < origin || r >= bound) { // the range is more than half of all longs
+			r = nextLong();
+		}
+		return r;
+	}
+
+	private double boundedDouble(double origin, double bound) {
+		double r = nextDouble() * (bound - origin) + origin;
+		return (r < bound) ? r : Math.nextDown(bound); // rounding can reach the bound
+	}
+
+	private static void checkSize(long streamSize) {
+		if (streamSize < 0) {
+			throw new IllegalArgumentException("Illegal Stream Size: " + streamSize);
+		}
+	}
+
+	private static void checkRange(double origin, double bound) {
+		if (!(origin < bound)) {
+			throw new IllegalArgumentException("Illegal Range: " + origin + " to " + bound);
+		}
+	}
+
+	/* Sets the cells from the seed.  Every word is made from the seed with the
+	 * SplitMix64 sequence, so similar seeds still give very different rows.
+	 */
+	private void reseed(long seed) {
+		cells = new long[WORDS];
+		next = new long[WORDS];
+		long state = seed;
+		for (int w = 0; w < WORDS; w++) {
+			state += GOLDEN_GAMMA;
+			cells[w] = mix(state);
+		}
+		position = WORDS;
+	}
+
+	/* Computes STEPS_PER_ROW new rows, and mixes the last one into 'output'. */
+	private void nextOutputRow() {
+		for (int step = 0; step < STEPS_PER_ROW; step++) {
+			long[] row = cells;
+			for (int w = 0; w < WORDS; w++) {
+				long cell = row[w];
+				long left = (cell << 1) | (row[(w - 1) & (WORDS - 1)] >>> 63);
+				long right = (cell >>> 1) | (row[(w + 1) & (WORDS - 1)] << 63);
+				next[w] = left ^ (cell | right);
+			}
+			cells = next;
+			next = row;
+		}
+		for (int w = 0; w < WORDS; w++) {
+			output[w] = mix(cells[w]);
+		}
+		position = 0;
+	}
+
+	/* The finishing function of java.util.SplittableRandom ("variant 13" of Stafford's
+	 * mixers for MurmurHash3).  It is a bijection, so no two words give the same result.
+	 */
+	static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/* The spliterators behind the streams.  Each one covers the numbers from 'index' up
+	 * to 'fence'.  Splitting one hands half of the remaining numbers to a new
+	 * spliterator with a generator split off from this one's.
+	 */
+
+	private static final class Ints implements Spliterator.OfInt {
+		private final Rule30Random random;
+		private long index;
+		private final long fence;
+		private final int origin, bound;
+
+		private Ints(Rule30Random random, long index, long fence, int origin, int bound) {
+			this.random = random;
+			this.index = index;
+			this.fence = fence;
+			this.origin = origin;
+			this.bound = bound;
+		}
+
+		@Override
+		public Ints trySplit() {
+			long middle = (index + fence) >>> 1;
+			if (middle <= index) {
+				return null;
+			}
+			Ints prefix = new Ints(random.split(), index, middle, origin, bound);
+			index = middle;
+			return prefix;
+		}
+
+		@Override
+		public boolean tryAdvance(IntConsumer action) {
+			if (index >= fence) {
+				return false;
+			}
+			action.accept(nextInt());
+			index++;
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(IntConsumer action) {
+			for (; index < fence; index++) {
+				action.accept(nextInt());
+			}
+		}
+
+		private int nextInt() {
+			return (origin < bound) ? (int) random.boundedLong(origin, bound) : random.nextInt();
+		}
+
+		@Override
+		public long estimateSize() {
+			return fence - index;
+		}
+
+		@Override
+		public int characteristics() {
+			return SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+		}
+	}
+
+	private static final class Longs implements Spliterator.OfLong {
+		private final Rule30Random random;
+		private long index;
+		private final long fence;
+		private final long origin, bound;
+
+		private Longs(Rule30Random random, long index, long fence, long origin, long bound) {
+			this.random = random;
+			this.index = index;
+			this.fence = fence;
+			this.origin = origin;
+			this.bound = bound;
+		}
+
+		@Override
+		public Longs trySplit() {
+			long middle = (index + fence) >>> 1;
+			if (middle <= index) {
+				return null;
+			}
+			Longs prefix = new Longs(random.split(), index, middle, origin, bound);
+			index = middle;
+			return prefix;
+		}
+
+		@Override
+		public boolean tryAdvance(LongConsumer action) {
+			if (index >= fence) {
+				return false;
+			}
+			action.accept(random.boundedLong(origin, bound));
+			index++;
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(LongConsumer action) {
+			for (; index < fence; index++) {
+				action.accept(random.boundedLong(origin, bound));
+			}
+		}
+
+		@Override
+		public long estimateSize() {
+			return fence - index;
+		}
+
+		@Override
+		public int characteristics() {
+			return SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+		}
+	}
+
+	private static final class Doubles implements Spliterator.OfDouble {
+		private final Rule30Random random;
+		private long index;
+		private final long fence;
+		private final double origin, bound;
+
+		private Doubles(Rule30Random random, long index, long fence, double origin,
+				double bound) {
+			this.random = random;
+			this.index = index;
+			this.fence = fence;
+			this.origin = origin;
+			this.bound = bound;
+		}
+
+		@Override
+		public Doubles trySplit() {
+			long middle = (index + fence) >>> 1;
+			if (middle <= index) {
+				return null;
+			}
+			Doubles prefix = new Doubles(random.split(), index, middle, origin, bound);
+			index = middle;
+			return prefix;
+		}
+
+		@Override
+		public boolean tryAdvance(DoubleConsumer action) {
+			if (index >= fence) {
+				return false;
+			}
+			action.accept(random.boundedDouble(origin, bound));
+			index++;
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(DoubleConsumer action) {
+			for (; index < fence; index++) {
+				action.accept(random.boundedDouble(origin, bound));
+			}
+		}
+
+		@Override
+		public long estimateSize() {
+			return fence - index;
+		}
+
+		@Override
+		public int characteristics() {
+			return SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+		}
+	}
+
+}
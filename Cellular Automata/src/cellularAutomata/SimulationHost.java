@@ -0,0 +1,308 @@
+package cellularAutomata;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* This class runs many independent simulations (each one a Grid with its own rule and
+ * color theme) on a small, fixed number of threads.  Before this, every GridPanel
+ * started its own java.util.Timer, which meant one platform thread per simulation.
+ *
+ * Each simulation is represented by a Session.  A single scheduler thread keeps the
+ * running sessions in a DelayQueue, ordered by the time their next tick is due.  When a
+ * session's tick is due, it is handed to a shared work-stealing ForkJoinPool, and the
+ * session is only put back into the queue once that tick has finished.  This means that:
+ *     - a session never has more than one tick in flight, so a slow session can't
+ *       flood the pool and starve the others,
+ *     - sessions are served in the order their ticks became due, so scheduling is fair,
+ *     - each session's rate is limited to its own number of ticks per second.  If a
+ *       session falls behind, the missed ticks are skipped rather than run in a burst,
+ *     - a paused session is simply not in the queue, so it costs nothing but the memory
+ *       used by its Grid.
+ */
+public class SimulationHost {
+
+	private static SimulationHost shared; // used by the GUI, created when first needed
+
+	private final ForkJoinPool workers;
+	private final DelayQueue<Session> dueSessions = new DelayQueue<>();
+	private final Thread scheduler;
+	private volatile boolean running = true;
+	private final AtomicInteger numSessions = new AtomicInteger();
+
+	/* Constructor for SimulationHost.  The parameter is the number of threads used to
+	 * run ticks.  The pool is created in asynchronous (FIFO) mode, since the tasks are
+	 * independent ticks rather than recursive work.
+	 */
+	public SimulationHost(int parallelism) {
+		workers = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+				null, true);
+		scheduler = new Thread(new Runnable() {
+			public void run() {
+				schedule();
+			}
+		}, "SimulationHost scheduler");
+		scheduler.setDaemon(true);
+		scheduler.start();
+	}
+
+	/* No-arg constructor, uses one thread per available processor. */
+	public SimulationHost() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/* Returns a host shared by the whole program, creating it the first time. */
+	public static synchronized SimulationHost getShared() {
+		if (shared == null) {
+			shared = new SimulationHost();
+		}
+		return shared;
+	}
+
+	/* Creates a new session that runs the given grid at no more than 'ticksPerSecond'
+	 * ticks per second.  The session starts out paused, so that the caller can finish
+	 * setting it up before calling resume.
+	 */
+	public Session createSession(Grid grid, double ticksPerSecond) {
+		numSessions.incrementAndGet();
+		return new Session(grid, ticksPerSecond);
+	}
+
+	/* Creates a new session with its own grid, which uses the given rule for input. */
+	public Session createSession(CARowMaker rowMaker, double ticksPerSecond) {
+		return createSession(new Grid(rowMaker), ticksPerSecond);
+	}
+
+	/* Returns the number of sessions that have been created and not closed. */
+	public int getNumSessions() {
+		return numSessions.get();
+	}
+
+	/* Stops the scheduler and the worker threads.  Any tick already running is allowed
+	 * to finish, but no more ticks will be started.
+	 */
+	public void shutdown() {
+		running = false;
+		scheduler.interrupt();
+		workers.shutdown();
+	}
+
+	/* The loop run by the scheduler thread.  It waits until the next session is due and
+	 * hands its tick to the worker threads.
+	 */
+	private void schedule() {
+		while (running) {
+			final Session session;
+			try {
+				session = dueSessions.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			workers.execute(new Runnable() {
+				public void run() {
+					session.tick();
+				}
+			});
+		}
+	}
+
+	/* A single simulation run by the host.  All of the methods can be called from any
+	 * thread.
+	 */
+	public class Session implements Delayed {
+
+		private final Grid grid;
+		private volatile long periodNanos; // the minimum time between two ticks
+		private volatile int colorTheme = 0; // the color theme code used by the GUI
+		private volatile Runnable listener; // called after every tick, may be null
+		private final AtomicLong numTicks = new AtomicLong(); // advance and tick can overlap
+
+		/* These are guarded by the session's lock.  'scheduled' is true while the session
+		 * is either waiting in the queue or running a tick.
+		 */
+		private long dueTime; // System.nanoTime() at which the next tick is due
+		private boolean paused = true;
+		private boolean scheduled = false;
+		private boolean closed = false;
+
+		private Session(Grid grid, double ticksPerSecond) {
+			this.grid = grid;
+			setTicksPerSecond(ticksPerSecond);
+		}
+
+		public Grid getGrid() {
+			return grid;
+		}
+
+		/* Sets the maximum rate for this session.  This takes effect after the next tick. */
+		public void setTicksPerSecond(double ticksPerSecond) {
+			if (!(ticksPerSecond > 0)) {
+				throw new IllegalArgumentException("Illegal Tick Rate: " + ticksPerSecond);
+			}
+			periodNanos = (long) (1e9 / ticksPerSecond);
+		}
+
+		public int getColorTheme() {
+			return colorTheme;
+		}
+
+		public void setColorTheme(int colorTheme) {
+			this.colorTheme = colorTheme;
+		}
+
+		/* Sets a listener that is called on a worker thread after every tick, such as a
+		 * GUI component that needs to be repainted.
+		 */
+		public void setListener(Runnable listener) {
+			this.listener = listener;
+		}
+
+		public long getNumTicks() {
+			return numTicks.get();
+		}
+
+		/* Changes the rule used by this session.  Like Grid.updateRule, this resets the
+		 * grid.  This waits for any tick in progress, so the grid is never reset halfway
+		 * through an update.
+		 */
+		public void updateRule(CARowMaker newRule) {
+			synchronized (grid) {
+				grid.updateRule(newRule);
+			}
+		}
+
+		/* Skips ahead by the given number of generations with Grid.advance, on the
+		 * calling thread.  The session is paused while this runs (so it should not be
+		 * called from a worker thread), and resumed afterwards if it was running before.
+		 * The listener is then called once, so the new state gets drawn.  Returns the
+		 * number of generations actually performed, which is less than asked for if
+		 * the monitor cancelled the run.
+		 */
+		public long advance(long generations, AdvanceMonitor monitor) {
+			boolean wasPaused = isPaused();
+			pause();
+			try {
+				long done;
+				synchronized (grid) {
+					done = grid.advance(generations, monitor);
+				}
+				numTicks.addAndGet(done);
+				Runnable currentListener = listener;
+				if (currentListener != null) {
+					currentListener.run();
+				}
+				return done;
+			} finally {
+				if (!wasPaused) {
+					resume();
+				}
+			}
+		}
+
+		/* Goes back by the given number of generations with Grid.rewind, which needs the
+		 * grid to have a history.  The listener is then called, so the earlier state gets
+		 * drawn, and the session carries on from there.  Returns the number of
+		 * generations actually gone back.
+		 */
+		public long rewind(long generations) {
+			long rewound;
+			synchronized (grid) {
+				rewound = grid.rewind(generations);
+			}
+			Runnable currentListener = listener;
+			if (currentListener != null) {
+				currentListener.run();
+			}
+			return rewound;
+		}
+
+		/* Starts (or restarts) running ticks, with the first one due immediately. */
+		public synchronized void resume() {
+			if (closed || !paused) {
+				return;
+			}
+			paused = false;
+			if (!scheduled) {
+				scheduled = true;
+				dueTime = System.nanoTime();
+				dueSessions.add(this);
+			}
+		}
+
+		/* Stops running ticks.  A tick that is already running is allowed to finish. */
+		public synchronized void pause() {
+			paused = true;
+			if (scheduled && dueSessions.remove(this)) {
+				scheduled = false;
+			}
+		}
+
+		public synchronized boolean isPaused() {
+			return paused;
+		}
+
+		/* Pauses the session for good and removes it from the host. */
+		public synchronized void close() {
+			if (!closed) {
+				pause();
+				closed = true;
+				numSessions.decrementAndGet();
+			}
+		}
+
+		/* Runs a single tick on a worker thread, then puts the session back into the
+		 * queue unless it was paused in the meantime.
+		 */
+		private void tick() {
+			try {
+				synchronized (grid) {
+					grid.update();
+				}
+				numTicks.incrementAndGet();
+				Runnable currentListener = listener;
+				if (currentListener != null) {
+					currentListener.run();
+				}
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				pause();
+			} finally {
+				reschedule();
+			}
+		}
+
+		/* Works out when the next tick is due.  If the session has fallen behind, the
+		 * missed ticks are dropped instead of being run back to back.
+		 */
+		private synchronized void reschedule() {
+			if (paused || closed || !running) {
+				scheduled = false;
+				return;
+			}
+			long now = System.nanoTime();
+			dueTime += periodNanos;
+			if (dueTime - now < 0) {
+				dueTime = now;
+			}
+			dueSessions.add(this);
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(dueTime - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			if (other instanceof Session) {
+				return Long.compare(dueTime - ((Session) other).dueTime, 0);
+			}
+			return Long.compare(getDelay(TimeUnit.NANOSECONDS),
+					other.getDelay(TimeUnit.NANOSECONDS));
+		}
+	}
+
+}
@@ -0,0 +1,296 @@
+package cellularAutomata;
+
+/* This engine is meant for rules where only a handful of cells are ever alive.  In that
+ * case, even PackedLife spends almost all of its time working out that dead cells with
+ * no living neighbors stay dead.
+ *
+ * While the population is small, the living cells are kept in a LongHashSet, keyed by
+ * their row and column.  Each living cell adds one to the neighbor count of the eight
+ * cells around it (counted in a LongIntHashMap), so the only cells that are looked at are
+ * the ones next to a living cell, and the work done is proportional to the population
+ * rather than the size of the grid.  When the population grows past a small fraction of
+ * the grid, the hash lookups become slower than just stepping every cell, so the engine
+ * switches to packed bits and steps them exactly like PackedLife.  It switches back once
+ * the population falls again.  The two thresholds are a few times apart, so a population
+ * that hovers around one of them doesn't cause a switch on every time step.
+ *
+ * Either way, ages are handled with generation stamps in the same way as StampedLife, so
+ * the only cells that are written to are the ones that die or come to life.
+ */
+public class SparseLife implements LifeEngine {
+
+	/* Switch to the sparse representation when fewer than 1 in SPARSE_RATIO cells are
+	 * alive, and to the dense one when more than 1 in DENSE_RATIO cells are alive.  A
+	 * sparse step costs roughly ten hash table operations per living cell, while a
+	 * dense step handles 64 cells with a few dozen bitwise operations, so the two take
+	 * about the same time when around 1 in 2000 cells are alive.
+	 */
+	private static final int SPARSE_RATIO = 8192;
+	private static final int DENSE_RATIO = 2048;
+
+	private int numRows, cols;
+	private boolean sparse;
+
+	/* sparse representation */
+	private LongHashSet liveSet = new LongHashSet();
+	private LongHashSet nextLiveSet = new LongHashSet();
+	private final LongIntHashMap neighbors = new LongIntHashMap();
+
+	/* dense representation, packed like PackedLife.packRow */
+	private long[][] live;
+	private long[][] nextLive;
+	private long[] inputBits;
+
+	private long[][] diedAt; // the generation each cell last died in, ignored if it's alive
+	private long generation;
+	private long population;
+
+	private int[][] ages; // the ages, only worked out when asked for
+	private long agesGeneration; // the generation 'ages' was worked out for, -1 if never
+
+	@Override
+	public String getName() {
+		return "sparse";
+	}
+
+	/* Replaces the state with the given ages, starting with whichever representation
+	 * suits the number of living cells.
+	 */
+	@Override
+	public void load(int[][] grid) {
+		numRows = grid.length;
+		cols = grid[0].length;
+		int numWords = PackedLife.words(cols);
+		live = new long[numRows][numWords];
+		nextLive = new long[numRows][numWords];
+		inputBits = new long[numWords];
+		diedAt = new long[numRows][cols];
+		generation = 0;
+		population = 0;
+		for (int row = 0; row < numRows; row++) {
+			PackedLife.packRow(grid[row], live[row]);
+			for (int col = 0; col < cols; col++) {
+				diedAt[row][col] = -grid[row][col];
+				if (grid[row][col] == 0) {
+					population++;
+				}
+			}
+		}
+		sparse = false;
+		ages = new int[numRows][cols];
+		agesGeneration = -1;
+		chooseRepresentation();
+	}
+
+	/* Performs a single time step, using the same rules as GameOfLife.updateGrid. */
+	@Override
+	public void step(int[] input) {
+		if (sparse) {
+			stepSparse(input);
+		} else {
+			stepDense(input);
+		}
+		generation++;
+		chooseRepresentation();
+	}
+
+	/* Returns the ages of every cell, in the same format as GameOfLife.updateGrid.  They
+	 * are worked out from the stamps the first time this is called after each time step.
+	 */
+	@Override
+	public int[][] getAges() {
+		if (agesGeneration != generation) {
+			for (int row = 0; row < numRows; row++) {
+				int[] rowAges = ages[row];
+				long[] rowDiedAt = diedAt[row];
+				for (int col = 0; col < cols; col++) {
+					rowAges[col] = StampedLife.age(generation, rowDiedAt[col]);
+				}
+			}
+			if (sparse) {
+				for (int slot = 0; slot < liveSet.capacity(); slot++) {
+					long key = liveSet.keyAt(slot);
+					if (key != LongHashSet.EMPTY) {
+						ages[row(key)][col(key)] = 0;
+					}
+				}
+			} else {
+				for (int row = 0; row < numRows; row++) {
+					for (int col = 0; col < cols; col++) {
+						if (((live[row][col >>> 6] >>> col) & 1) != 0) {
+							ages[row][col] = 0;
+						}
+					}
+				}
+			}
+			agesGeneration = generation;
+		}
+		return ages;
+	}
+
+	@Override
+	public void copyLiveBits(long[][] dest) {
+		for (int row = 0; row < numRows; row++) {
+			if (sparse) {
+				for (int w = 0; w < dest[row].length; w++) {
+					dest[row][w] = 0;
+				}
+			} else {
+				System.arraycopy(live[row], 0, dest[row], 0, live[row].length);
+			}
+		}
+		if (sparse) {
+			for (int slot = 0; slot < liveSet.capacity(); slot++) {
+				long key = liveSet.keyAt(slot);
+				if (key != LongHashSet.EMPTY) {
+					dest[row(key)][col(key) >>> 6] |= 1L << col(key);
+				}
+			}
+		}
+	}
+
+	/* Returns true if the living cells are currently kept in a hash set. */
+	public boolean isSparse() {
+		return sparse;
+	}
+
+	/* Returns the number of living cells. */
+	public long getPopulation() {
+		return population;
+	}
+
+	/* Every living cell adds itself to the neighbor counts of the cells around it, as
+	 * do the living cells in the top row of the input for the bottom row.  Only cells
+	 * with a count can be alive in the next generation.  The top row is never counted,
+	 * since everything in it is killed.
+	 */
+	private void stepSparse(int[] input) {
+		int lastRow = numRows - 1;
+		neighbors.clear();
+		for (int slot = 0; slot < liveSet.capacity(); slot++) {
+			long key = liveSet.keyAt(slot);
+			if (key == LongHashSet.EMPTY) {
+				continue;
+			}
+			int row = row(key), col = col(key);
+			for (int r = Math.max(1, row - 1); r <= Math.min(lastRow, row + 1); r++) {
+				for (int dc = -1; dc <= 1; dc++) {
+					if (r != row || dc != 0) {
+						neighbors.addTo(key(r, wrap(col + dc)), 1);
+					}
+				}
+			}
+		}
+		for (int col = 0; col < cols; col++) {
+			if (input[col] == 0) {
+				for (int dc = -1; dc <= 1; dc++) {
+					neighbors.addTo(key(lastRow, wrap(col + dc)), 1);
+				}
+			}
+		}
+
+		nextLiveSet.clear();
+		for (int slot = 0; slot < neighbors.capacity(); slot++) {
+			long key = neighbors.keyAt(slot);
+			if (key == LongHashSet.EMPTY) {
+				continue;
+			}
+			int count = neighbors.valueAt(slot);
+			if (count == 3 || (count == 2 && liveSet.contains(key))) {
+				nextLiveSet.add(key);
+			}
+		}
+
+		/* stamp the cells that died */
+		for (int slot = 0; slot < liveSet.capacity(); slot++) {
+			long key = liveSet.keyAt(slot);
+			if (key != LongHashSet.EMPTY && !nextLiveSet.contains(key)) {
+				diedAt[row(key)][col(key)] = generation;
+			}
+		}
+
+		LongHashSet temp = liveSet;
+		liveSet = nextLiveSet;
+		nextLiveSet = temp;
+		population = liveSet.size();
+	}
+
+	/* Exactly the same as StampedLife.step. */
+	private void stepDense(int[] input) {
+		PackedLife.packRow(input, inputBits);
+
+		/* Top row - kill everything */
+		long[] top = nextLive[0];
+		for (int w = 0; w < top.length; w++) {
+			top[w] = 0;
+		}
+
+		int lastRow = numRows - 1;
+		for (int row = 1; row < lastRow; row++) {
+			PackedLife.stepRow(live[row - 1], live[row], live[row + 1], cols, nextLive[row]);
+		}
+		PackedLife.stepRow(live[lastRow - 1], live[lastRow], inputBits, cols, nextLive[lastRow]);
+
+		population = 0;
+		for (int row = 0; row < numRows; row++) {
+			StampedLife.stampDeaths(live[row], nextLive[row], diedAt[row], generation);
+			for (long word : nextLive[row]) {
+				population += Long.bitCount(word);
+			}
+		}
+
+		long[][] temp = live;
+		live = nextLive;
+		nextLive = temp;
+	}
+
+	/* Switches between the sparse and dense representations if the population has
+	 * crossed one of the thresholds.
+	 */
+	private void chooseRepresentation() {
+		long cells = (long) numRows * cols;
+		if (!sparse && population * SPARSE_RATIO < cells) {
+			liveSet.clear();
+			for (int row = 0; row < numRows; row++) {
+				for (int w = 0; w < live[row].length; w++) {
+					long bits = live[row][w];
+					while (bits != 0) {
+						liveSet.add(key(row, (w << 6) + Long.numberOfTrailingZeros(bits)));
+						bits &= bits - 1;
+					}
+				}
+			}
+			sparse = true;
+		} else if (sparse && population * DENSE_RATIO > cells) {
+			for (long[] row : live) {
+				for (int w = 0; w < row.length; w++) {
+					row[w] = 0;
+				}
+			}
+			for (int slot = 0; slot < liveSet.capacity(); slot++) {
+				long key = liveSet.keyAt(slot);
+				if (key != LongHashSet.EMPTY) {
+					live[row(key)][col(key) >>> 6] |= 1L << col(key);
+				}
+			}
+			sparse = false;
+		}
+	}
+
+	private int wrap(int col) {
+		return (col < 0) ? col + cols : (col >= cols) ? col - cols : col;
+	}
+
+	private static long key(int row, int col) {
+		return ((long) row << 32) | col;
+	}
+
+	private static int row(long key) {
+		return (int) (key >>> 32);
+	}
+
+	private static int col(long key) {
+		return (int) key;
+	}
+
+}
@@ -0,0 +1,97 @@
+package cellularAutomata;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/* A bounded queue for exactly one producer thread and one consumer thread, which never
+ * locks or blocks.  The items are kept in a ring: the producer writes at 'tail' and the
+ * consumer reads at 'head', and each of them is the only thread that ever changes its
+ * own index, so all that is needed is for each index to be published with an ordered
+ * write once the item has been written (or taken).  Neither thread ever waits for the
+ * other; offer returns false when the ring is full and poll returns null when it is
+ * empty, and the caller decides how to wait.
+ *
+ * The two indexes sit in the same AtomicLongArray, 128 bytes apart, so they don't share
+ * a cache line (the producer writing the tail would otherwise keep taking the line away
+ * from the consumer, and the other way around).  Each side also keeps its own copy of
+ * the other side's index, and only reads the real one when its copy says the ring is
+ * full or empty.
+ */
+public class SpscRing<E> {
+
+	private static final int HEAD = 16; // longs into 'indexes', 128 bytes apart
+	private static final int TAIL = 32;
+
+	private final Object[] items;
+	private final int mask; // capacity - 1, the capacity is always a power of 2
+	private final AtomicLongArray indexes = new AtomicLongArray(48);
+
+	private long cachedHead; // only used by the producer
+	private long cachedTail; // only used by the consumer
+
+	/* Creates a ring that can hold at least 'capacity' items (rounded up to a power of
+	 * 2).
+	 */
+	public SpscRing(int capacity) {
+		if (capacity < 1 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("Illegal Capacity: " + capacity);
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		items = new Object[size];
+		mask = size - 1;
+	}
+
+	/* Adds an item at the tail.  Returns false, without adding it, if the ring is full.
+	 * Must only be called by the producer thread.
+	 */
+	public boolean offer(E item) {
+		if (item == null) {
+			throw new NullPointerException();
+		}
+		long tail = indexes.get(TAIL);
+		if (tail - cachedHead == items.length) {
+			cachedHead = indexes.get(HEAD);
+			if (tail - cachedHead == items.length) {
+				return false;
+			}
+		}
+		items[(int) tail & mask] = item;
+		indexes.lazySet(TAIL, tail + 1); // the item is visible before the new tail
+		return true;
+	}
+
+	/* Removes and returns the item at the head, or returns null if the ring is empty.
+	 * Must only be called by the consumer thread.
+	 */
+	@SuppressWarnings("unchecked")
+	public E poll() {
+		long head = indexes.get(HEAD);
+		if (head == cachedTail) {
+			cachedTail = indexes.get(TAIL);
+			if (head == cachedTail) {
+				return null;
+			}
+		}
+		int slot = (int) head & mask;
+		E item = (E) items[slot];
+		items[slot] = null;
+		indexes.lazySet(HEAD, head + 1);
+		return item;
+	}
+
+	/* Returns the number of items in the ring.  This can be called from any thread, but
+	 * if the other threads are busy, it may already be out of date.
+	 */
+	public int size() {
+		long head = indexes.get(HEAD);
+		long tail = indexes.get(TAIL);
+		return (int) Math.max(0, Math.min(tail - head, items.length));
+	}
+
+	public int capacity() {
+		return items.length;
+	}
+
+}
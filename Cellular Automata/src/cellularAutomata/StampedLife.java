@@ -0,0 +1,153 @@
+package cellularAutomata;
+
+/* This engine stores the Game of Life region without writing to every cell on every time
+ * step.  GameOfLife.updateGrid (and PackedLife) keep the age of each dead cell, so every
+ * dead cell has to be incremented on every time step even though nothing about it has
+ * changed, and almost all of the grid is usually dead.
+ *
+ * Instead, this class keeps a generation counter along with, for each cell, the
+ * generation in which it last died (its "stamp").  The age of a dead cell is then just
+ * the current generation minus its stamp, so it gets older without being touched.  Only
+ * cells that die need to be written: the stamp of a cell that comes to life is left
+ * alone, since the liveness bit already says it is alive.  Whether each cell is alive is
+ * stored as packed bits and updated in exactly the same way as PackedLife.
+ *
+ * The ages are only worked out when they are asked for (through getAges or getAge),
+ * for example when the grid is drawn, and they are identical to the ones produced by
+ * GameOfLife.updateGrid.  Since the generation and the stamps are longs, they never
+ * overflow.  The ages themselves are ints, and stop at Integer.MAX_VALUE rather than
+ * wrapping around to negative values like the ints in GameOfLife eventually do.
+ */
+public class StampedLife implements LifeEngine {
+
+	private long[][] live; // one bit per cell, packed like PackedLife.packRow
+	private long[][] nextLive; // scratch space for the next generation, swapped with live
+	private long[] inputBits; // the packed top row of the input
+	private long[][] diedAt; // the generation each cell last died in, ignored if it's alive
+	private long generation;
+	private int cols;
+
+	private int[][] ages; // the ages, only worked out when asked for
+	private long agesGeneration; // the generation 'ages' was worked out for, -1 if never
+
+	@Override
+	public String getName() {
+		return "stamped";
+	}
+
+	/* Replaces the state with the given ages.  The generation starts at 0, so a dead cell
+	 * with age n died in generation -n.
+	 */
+	@Override
+	public void load(int[][] grid) {
+		cols = grid[0].length;
+		int numWords = PackedLife.words(cols);
+		live = new long[grid.length][numWords];
+		nextLive = new long[grid.length][numWords];
+		inputBits = new long[numWords];
+		diedAt = new long[grid.length][cols];
+		generation = 0;
+		for (int row = 0; row < grid.length; row++) {
+			PackedLife.packRow(grid[row], live[row]);
+			for (int col = 0; col < cols; col++) {
+				diedAt[row][col] = -grid[row][col];
+			}
+		}
+		ages = new int[grid.length][cols];
+		agesGeneration = -1;
+	}
+
+	/* Performs a single time step, using the same rules as GameOfLife.updateGrid.  The
+	 * new liveness bits are computed by PackedLife.stepRow, and then the only other
+	 * writes are the stamps of the cells that died.
+	 */
+	@Override
+	public void step(int[] input) {
+		PackedLife.packRow(input, inputBits);
+
+		/* Top row - kill everything */
+		long[] top = nextLive[0];
+		for (int w = 0; w < top.length; w++) {
+			top[w] = 0;
+		}
+
+		int lastRow = live.length - 1;
+		for (int row = 1; row < lastRow; row++) {
+			PackedLife.stepRow(live[row - 1], live[row], live[row + 1], cols, nextLive[row]);
+		}
+		PackedLife.stepRow(live[lastRow - 1], live[lastRow], inputBits, cols, nextLive[lastRow]);
+
+		/* A cell that was alive and isn't any more died in this generation, so it will
+		 * have an age of 1 in the next one.
+		 */
+		for (int row = 0; row < live.length; row++) {
+			stampDeaths(live[row], nextLive[row], diedAt[row], generation);
+		}
+
+		long[][] temp = live;
+		live = nextLive;
+		nextLive = temp;
+		generation++;
+	}
+
+	/* Returns the ages of every cell, in the same format as GameOfLife.updateGrid.  They
+	 * are worked out from the stamps the first time this is called after each time step.
+	 */
+	@Override
+	public int[][] getAges() {
+		if (agesGeneration != generation) {
+			for (int row = 0; row < ages.length; row++) {
+				int[] rowAges = ages[row];
+				long[] rowLive = live[row];
+				long[] rowDiedAt = diedAt[row];
+				for (int col = 0; col < cols; col++) {
+					rowAges[col] = ((rowLive[col >>> 6] >>> col) & 1) != 0 ? 0
+							: age(generation, rowDiedAt[col]);
+				}
+			}
+			agesGeneration = generation;
+		}
+		return ages;
+	}
+
+	/* The cells are already packed, so they can just be copied. */
+	@Override
+	public void copyLiveBits(long[][] dest) {
+		for (int row = 0; row < live.length; row++) {
+			System.arraycopy(live[row], 0, dest[row], 0, live[row].length);
+		}
+	}
+
+	/* Returns the age of a single cell, without working out the ages of the others. */
+	public int getAge(int row, int col) {
+		if (((live[row][col >>> 6] >>> col) & 1) != 0) {
+			return 0;
+		}
+		return age(generation, diedAt[row][col]);
+	}
+
+	/* Returns the number of time steps since the last call to load. */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/* Returns the age of a dead cell that died in generation 'died'. */
+	static int age(long generation, long died) {
+		return (int) Math.min(generation - died, Integer.MAX_VALUE);
+	}
+
+	/* Sets the stamp of every cell that is alive in 'before' but not in 'after' to the
+	 * given generation.  Most words have no deaths at all, and those that do are walked
+	 * one set bit at a time.
+	 */
+	static void stampDeaths(long[] before, long[] after, long[] diedAt, long generation) {
+		for (int w = 0; w < before.length; w++) {
+			long died = before[w] & ~after[w];
+			while (died != 0) {
+				diedAt[(w << 6) + Long.numberOfTrailingZeros(died)] = generation;
+				died &= died - 1;
+			}
+		}
+	}
+
+}
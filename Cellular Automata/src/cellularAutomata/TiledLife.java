@@ -0,0 +1,222 @@
+package cellularAutomata;
+
+import java.util.stream.IntStream;
+
+/* This class advances the Game of Life region by several generations at once.  Calling
+ * GameOfLife.updateGrid once per generation reads and writes the entire grid every time,
+ * so for grids that don't fit in the cache, the speed is limited by memory bandwidth
+ * rather than by the amount of work being done.
+ *
+ * Instead, the grid is split into horizontal bands of rows (the "tiles"), and each tile
+ * is advanced by all of the requested generations before moving on to the next one, so
+ * that it only has to be brought into the cache once.  The catch is that after k
+ * generations, a cell can be affected by cells up to k rows away.  So each tile is loaded
+ * along with a "halo" of k extra rows above and below it.  After every generation the
+ * outermost row on each side of the halo is out of date, since its neighbors outside the
+ * halo were never computed, so the valid part of the tile shrinks by one row on each
+ * side per generation.  After k generations exactly the rows of the tile itself are left.
+ *
+ * Because every tile only reads from the starting generation and only writes its own
+ * rows of the final generation, the tiles don't depend on each other at all, and can be
+ * computed in any order, or in parallel.  The results are identical to calling
+ * GameOfLife.updateGrid once for each generation.
+ *
+ * The tiles always span the full width of the grid, and the cells are packed into bits
+ * just like in PackedLife, so the left and right edges wrap around exactly as before.
+ */
+public class TiledLife implements LifeEngine {
+
+	/* The amount of data each tile should try to fit into.  This is roughly the size of
+	 * a typical L2 cache.
+	 */
+	private static final int CACHE_BYTES = 256 * 1024;
+
+	private final int tileRows; // the number of rows per tile, or 0 to pick automatically
+	private final boolean parallel; // whether to compute the tiles on several threads
+
+	private int[][] ages; // the current state, when this is being used as a LifeEngine
+
+	/* Constructor for TiledLife.  If 'tileRows' is 0, the number of rows per tile is
+	 * chosen so that a tile and its halo fit in the cache.  If 'parallel' is true, the
+	 * tiles are spread across the common ForkJoinPool.
+	 */
+	public TiledLife(int tileRows, boolean parallel) {
+		if (tileRows < 0) {
+			throw new IllegalArgumentException("Illegal Tile Size: " + tileRows);
+		}
+		this.tileRows = tileRows;
+		this.parallel = parallel;
+	}
+
+	/* No-arg constructor, picks the tile size automatically and runs on one thread. */
+	public TiledLife() {
+		this(0, false);
+	}
+
+	@Override
+	public String getName() {
+		return "tiled";
+	}
+
+	@Override
+	public void load(int[][] grid) {
+		ages = new int[grid.length][];
+		for (int row = 0; row < grid.length; row++) {
+			ages[row] = grid[row].clone();
+		}
+	}
+
+	/* A single time step can't be blocked, so this just uses GameOfLife.updateGrid.
+	 * The speedup only comes from advancing several generations at once.
+	 */
+	@Override
+	public void step(int[] input) {
+		ages = GameOfLife.updateGrid(ages, input);
+	}
+
+	@Override
+	public void advance(int[][] inputs, int generations) {
+		ages = advance(ages, inputs, generations);
+	}
+
+	@Override
+	public int[][] getAges() {
+		return ages;
+	}
+
+	/* Advances the grid by 'generations' time steps.  The grid uses the same
+	 * representation as GameOfLife.updateGrid, and inputs[g] is the top row of the
+	 * input for generation g, so there must be at least 'generations' input rows.  Like
+	 * GameOfLife.updateGrid, this returns a new grid and does not modify the parameters.
+	 */
+	public int[][] advance(int[][] grid, int[][] inputs, int generations) {
+		if (generations < 0 || generations > inputs.length) {
+			throw new IllegalArgumentException("Illegal Number Of Generations: " + generations);
+		}
+
+		final int numRows = grid.length;
+		final int numCols = grid[0].length;
+		final int numWords = PackedLife.words(numCols);
+
+		/* copy the ages, and pack the starting generation and all of the inputs */
+		final int[][] newGrid = new int[numRows][];
+		final long[][] live = new long[numRows][numWords];
+		for (int row = 0; row < numRows; row++) {
+			newGrid[row] = grid[row].clone();
+			PackedLife.packRow(grid[row], live[row]);
+		}
+		if (generations == 0) {
+			return newGrid;
+		}
+
+		final long[][] inputBits = new long[generations][numWords];
+		for (int g = 0; g < generations; g++) {
+			PackedLife.packRow(inputs[g], inputBits[g]);
+		}
+
+		final int rowsPerTile = (tileRows > 0) ? tileRows : pickTileRows(numWords, generations);
+		int numTiles = (numRows + rowsPerTile - 1) / rowsPerTile;
+
+		IntStream tiles = IntStream.range(0, numTiles);
+		if (parallel) {
+			tiles = tiles.parallel();
+		}
+		tiles.forEach(tile -> {
+			int firstRow = tile * rowsPerTile;
+			int lastRow = Math.min(numRows, firstRow + rowsPerTile);
+			advanceTile(live, inputBits, generations, firstRow, lastRow, numCols, newGrid);
+		});
+
+		return newGrid;
+	}
+
+	/* Chooses a number of rows per tile so that the tile, its halo, and the history of
+	 * the tile's rows (used to compute the ages at the end) fit in the cache.  The tile
+	 * is never allowed to be smaller than the halo, since then most of the work would be
+	 * spent recomputing the halo.
+	 */
+	private static int pickTileRows(int numWords, int generations) {
+		int bytesPerRow = 8 * numWords;
+		int rows = CACHE_BYTES / (bytesPerRow * (generations + 2));
+		return Math.max(Math.max(rows, 2 * generations), 1);
+	}
+
+	/* Advances the rows from firstRow (inclusive) to lastRow (exclusive) by the given
+	 * number of generations, and writes their ages into newGrid, which starts out as a
+	 * copy of the original ages.
+	 */
+	private static void advanceTile(long[][] live, long[][] inputBits, int generations,
+			int firstRow, int lastRow, int numCols, int[][] newGrid) {
+		int numRows = live.length;
+		int numWords = live[0].length;
+
+		/* the rows of the tile plus the halo, clipped to the top and bottom of the grid */
+		int haloTop = Math.max(0, firstRow - generations);
+		int haloBottom = Math.min(numRows, lastRow + generations);
+		int haloRows = haloBottom - haloTop;
+
+		long[][] current = new long[haloRows][];
+		long[][] next = new long[haloRows][numWords];
+		for (int row = haloTop; row < haloBottom; row++) {
+			current[row - haloTop] = live[row].clone();
+		}
+
+		/* history[g] holds the rows of the tile itself after generation g + 1 */
+		long[][][] history = new long[generations][lastRow - firstRow][];
+
+		for (int g = 0; g < generations; g++) {
+
+			/* The rows that are still valid after this generation.  The real top and
+			 * bottom of the grid never go out of date, since nothing is missing there.
+			 */
+			int validTop = (haloTop == 0) ? 0 : haloTop + g + 1;
+			int validBottom = (haloBottom == numRows) ? numRows : haloBottom - g - 1;
+
+			for (int row = validTop; row < validBottom; row++) {
+				long[] out = next[row - haloTop];
+				if (row == 0) { // Top row - kill everything
+					for (int w = 0; w < numWords; w++) {
+						out[w] = 0;
+					}
+				} else {
+					long[] below = (row == numRows - 1) ? inputBits[g] : current[row + 1 - haloTop];
+					PackedLife.stepRow(current[row - 1 - haloTop], current[row - haloTop], below,
+							numCols, out);
+				}
+			}
+
+			for (int row = firstRow; row < lastRow; row++) {
+				history[g][row - firstRow] = next[row - haloTop].clone();
+			}
+
+			long[][] temp = current;
+			current = next;
+			next = temp;
+		}
+
+		/* Now work out the ages.  Every cell starts out 'generations' older than it was.
+		 * Then, going backwards through the history, the first generation in which a
+		 * cell is found alive determines its age: a cell that was alive in generation g
+		 * (counting from 0) and dead afterwards has an age of generations - 1 - g.
+		 */
+		for (int row = firstRow; row < lastRow; row++) {
+			int[] ages = newGrid[row];
+			for (int col = 0; col < numCols; col++) {
+				ages[col] += generations;
+			}
+			for (int w = 0; w < numWords; w++) {
+				long found = 0;
+				for (int g = generations - 1; g >= 0; g--) {
+					long alive = history[g][row - firstRow][w] & ~found;
+					found |= alive;
+					while (alive != 0) {
+						int col = (w << 6) + Long.numberOfTrailingZeros(alive);
+						ages[col] = generations - 1 - g;
+						alive &= alive - 1;
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,140 @@
+package cellularAutomata;
+
+import java.util.SplittableRandom;
+
+/* A 64-bit hash of which cells of a Grid are alive, both in the Game of Life region and
+ * in the input rows, that is kept up to date one time step at a time instead of being
+ * worked out from scratch.  Only which cells are alive matters, not the ages, since that
+ * is all the next generation depends on.
+ *
+ * This is Zobrist hashing: every cell of the Game of Life region has its own random key,
+ * and the hash of the region is the XOR of the keys of the living cells.  XOR undoes
+ * itself, so when a cell is born or dies its key is simply XORed in again.  After each
+ * time step, the packed liveness bits from the engine are XORed with the ones from the
+ * step before, which leaves only the cells that changed, and only their keys are looked
+ * at.  Most of a settled grid doesn't change, so this costs very little.
+ *
+ * The input rows are different, since they all move up by one row on every time step.
+ * So each row is hashed on its own (the XOR of a random key for each living column),
+ * and the input is hashed as
+ *     rowHash(0) ^ rotateLeft(rowHash(1), 1) ^ ... ^ rotateLeft(rowHash(n - 1), n - 1).
+ * When the rows move up, the top row's hash is XORed out, everything is rotated right by
+ * one bit, and the new bottom row's hash is XORed in at the other end, so only the new
+ * row has to be looked at.
+ *
+ * The keys come from a fixed seed, so the same state always gets the same hash, even in
+ * different grids.
+ */
+public class ZobristHash {
+
+	private static final long SEED = 0x5eed_c0de_ca11_0f1eL;
+
+	private final int numRows, cols, numInputRows;
+	private final long[] cellKeys; // cellKeys[row * cols + col]
+	private final long[] columnKeys; // for hashing the input rows
+	private long[][] live; // the liveness bits the hash was worked out for
+	private long[][] nextLive;
+	private final long[] rowHashes; // the hash of each input row, as a ring
+	private int topRow; // the index in rowHashes of the top input row
+	private long lifeHash, inputHash;
+
+	/* Constructor for ZobristHash, for a Game of Life region and input of the given size. */
+	public ZobristHash(int numRows, int cols, int numInputRows) {
+		if (numRows < 1 || cols < 1 || numInputRows < 1) {
+			throw new IllegalArgumentException("Illegal Grid Size: " + numRows + "x" + cols
+					+ " with " + numInputRows + " input rows");
+		}
+		this.numRows = numRows;
+		this.cols = cols;
+		this.numInputRows = numInputRows;
+		SplittableRandom random = new SplittableRandom(SEED);
+		cellKeys = new long[numRows * cols];
+		for (int i = 0; i < cellKeys.length; i++) {
+			cellKeys[i] = random.nextLong();
+		}
+		columnKeys = new long[cols];
+		for (int i = 0; i < cols; i++) {
+			columnKeys[i] = random.nextLong();
+		}
+		live = new long[numRows][PackedLife.words(cols)];
+		nextLive = new long[numRows][PackedLife.words(cols)];
+		rowHashes = new long[numInputRows];
+	}
+
+	/* Works out the hash from scratch. */
+	public void begin(LifeEngine engine, int[][] inputRows) {
+		engine.copyLiveBits(live);
+		lifeHash = 0;
+		for (int row = 0; row < numRows; row++) {
+			lifeHash ^= hashBits(live[row], row * cols);
+		}
+		inputHash = 0;
+		topRow = 0;
+		for (int row = 0; row < numInputRows; row++) {
+			rowHashes[row] = rowHash(inputRows[row]);
+			inputHash ^= Long.rotateLeft(rowHashes[row], row);
+		}
+	}
+
+	/* Updates the hash after a time step of the engine.  The input rows have moved up by
+	 * one, and 'newInputRow' is the new bottom row.
+	 */
+	public void record(LifeEngine engine, int[] newInputRow) {
+		engine.copyLiveBits(nextLive);
+		for (int row = 0; row < numRows; row++) {
+			long[] before = live[row], after = nextLive[row];
+			for (int w = 0; w < before.length; w++) {
+				long flipped = before[w] ^ after[w];
+				while (flipped != 0) {
+					lifeHash ^= cellKeys[row * cols + (w << 6) + Long.numberOfTrailingZeros(flipped)];
+					flipped &= flipped - 1;
+				}
+			}
+		}
+		long[][] temp = live;
+		live = nextLive;
+		nextLive = temp;
+
+		long newRowHash = rowHash(newInputRow);
+		inputHash = Long.rotateRight(inputHash ^ rowHashes[topRow], 1)
+				^ Long.rotateLeft(newRowHash, numInputRows - 1);
+		rowHashes[topRow] = newRowHash; // the old top row's place becomes the bottom row
+		topRow = (topRow + 1) % numInputRows;
+	}
+
+	/* Returns the hash of the state the hash was last brought up to date with. */
+	public long getHash() {
+		return lifeHash ^ inputHash;
+	}
+
+	/* Returns the liveness bits of the Game of Life region that the hash is for.  The
+	 * caller must not modify them, and they are only valid until the next record.
+	 */
+	long[][] getLiveBits() {
+		return live;
+	}
+
+	/* The XOR of the keys of the set bits, where bit c of the row has key offset + c. */
+	private long hashBits(long[] bits, int offset) {
+		long hash = 0;
+		for (int w = 0; w < bits.length; w++) {
+			long word = bits[w];
+			while (word != 0) {
+				hash ^= cellKeys[offset + (w << 6) + Long.numberOfTrailingZeros(word)];
+				word &= word - 1;
+			}
+		}
+		return hash;
+	}
+
+	private long rowHash(int[] row) {
+		long hash = 0;
+		for (int col = 0; col < cols; col++) {
+			if (row[col] == 0) {
+				hash ^= columnKeys[col];
+			}
+		}
+		return hash;
+	}
+
+}
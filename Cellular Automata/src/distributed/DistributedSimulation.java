@@ -0,0 +1,185 @@
+package distributed;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import cellularAutomata.CARowMaker;
+import cellularAutomata.Grid;
+import cellularAutomata.OffHeapGrid;
+
+/* This class runs the Game of Life across several processes on the same machine.  The
+ * Game of Life region is cut into horizontal strips, one per StripWorker process, and the
+ * processes swap the rows along the edges of their strips (the "halos") every generation
+ * through a memory-mapped SharedStripFile.  The last worker also owns the input rows and
+ * the CARowMaker that makes them, since only the bottom strip ever looks at them.
+ *
+ * The coordinator here creates the shared file, starts the workers as separate JVMs
+ * using the same class path as itself, waits for them to finish, and then reads the
+ * final ages back out of the file.  Since each worker does exactly what a Grid would do
+ * to its rows, the result is identical to running a single Grid for the same number of
+ * generations, which main checks.
+ */
+public class DistributedSimulation {
+
+	/* The final state of a run: the ages of the Game of Life region and of the input
+	 * rows, laid out the same way as Grid.getGameOfLifeRegion and Grid.getInputRegion.
+	 */
+	public static class Result {
+		public final int[][] gameOfLifeRegion;
+		public final int[][] inputRegion;
+
+		private Result(int[][] gameOfLifeRegion, int[][] inputRegion) {
+			this.gameOfLifeRegion = gameOfLifeRegion;
+			this.inputRegion = inputRegion;
+		}
+	}
+
+	/* Runs 'generations' generations with the given number of worker processes, using
+	 * 'file' to share the halos and the results.  Throws an IllegalStateException if any
+	 * worker fails.
+	 */
+	public static Result run(Path file, int numWorkers, int numRows, int numCols,
+			int numInputRows, int rule, long generations) throws IOException, InterruptedException {
+		try (SharedStripFile shared = SharedStripFile.create(file, numWorkers, numRows, numCols,
+				numInputRows, rule, generations)) {
+			String java = System.getProperty("java.home") + File.separator + "bin"
+					+ File.separator + "java";
+			Process[] workers = new Process[numWorkers];
+			for (int k = 0; k < numWorkers; k++) {
+				workers[k] = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+						StripWorker.class.getName(), file.toString(), Integer.toString(k))
+						.inheritIO().start();
+			}
+
+			/* If one worker fails, its neighbors time out waiting for it, and so on down
+			 * the line, so every worker always finishes one way or another.
+			 */
+			int failed = -1;
+			for (int k = 0; k < numWorkers; k++) {
+				if (workers[k].waitFor() != 0 && failed < 0) {
+					failed = k;
+				}
+			}
+			if (failed >= 0) {
+				throw new IllegalStateException("Worker " + failed + " failed with exit code "
+						+ workers[failed].exitValue());
+			}
+
+			return new Result(readRows(shared, false, numRows), readRows(shared, true,
+					numInputRows));
+		}
+	}
+
+	private static int[][] readRows(SharedStripFile shared, boolean input, int numRowsToRead)
+			throws IOException {
+		int numCols = shared.getNumCols();
+		int[][] rows = new int[numRowsToRead][numCols];
+		for (int row = 0; row < numRowsToRead; row++) {
+			IntBuffer results = shared.mapResults(input, row, 1).asIntBuffer();
+			results.get(rows[row]);
+		}
+		return rows;
+	}
+
+	/* Runs a single-process simulation with the same settings and returns the first
+	 * cell that differs from the result, as "row, col", or null if they all match.  A
+	 * Grid is used when the size is the same as Grid's, and an OffHeapGrid otherwise.
+	 */
+	public static String compareWithSingleProcess(Result result, int rule, long generations) {
+		int numRows = result.gameOfLifeRegion.length;
+		int numCols = result.gameOfLifeRegion[0].length;
+		int numInputRows = result.inputRegion.length;
+		int[][] expected, expectedInput;
+		if (numRows == Grid.NUM_GRID_ROWS && numCols == Grid.NUM_GRID_COLS
+				&& numInputRows == Grid.NUM_INPUT_ROWS) {
+			Grid grid = new Grid(new CARowMaker(rule));
+			for (long g = 0; g < generations; g++) {
+				grid.update();
+			}
+			expected = grid.getGameOfLifeRegion();
+			expectedInput = grid.getInputRegion();
+		} else {
+			OffHeapGrid grid = new OffHeapGrid(numRows, numCols, numInputRows,
+					new CARowMaker(rule));
+			for (long g = 0; g < generations; g++) {
+				grid.update();
+			}
+			expected = new int[numRows][numCols];
+			expectedInput = new int[numInputRows][numCols];
+			for (int row = 0; row < numRows; row++) {
+				for (int col = 0; col < numCols; col++) {
+					expected[row][col] = grid.getAge(row, col);
+				}
+			}
+			for (int row = 0; row < numInputRows; row++) {
+				for (int col = 0; col < numCols; col++) {
+					expectedInput[row][col] = grid.getInputAge(row, col);
+				}
+			}
+		}
+
+		String difference = firstDifference(expected, result.gameOfLifeRegion);
+		if (difference == null) {
+			difference = firstDifference(expectedInput, result.inputRegion);
+			if (difference != null) {
+				difference = "input " + difference;
+			}
+		}
+		return difference;
+	}
+
+	private static String firstDifference(int[][] expected, int[][] actual) {
+		for (int row = 0; row < expected.length; row++) {
+			for (int col = 0; col < expected[row].length; col++) {
+				if (expected[row][col] != actual[row][col]) {
+					return "cell (" + row + ", " + col + "): expected " + expected[row][col]
+							+ " but got " + actual[row][col];
+				}
+			}
+		}
+		return null;
+	}
+
+	/* Runs a distributed simulation and checks it against a single process.  The
+	 * arguments are the number of workers and of generations, optionally followed by
+	 * the number of rows, columns and input rows and the rule.  Exits with status 1 if
+	 * the results differ.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 2) {
+			System.out.println("Usage: DistributedSimulation <workers> <generations> "
+					+ "[rows cols input-rows rule]");
+			return;
+		}
+		int numWorkers = Integer.parseInt(args[0]);
+		long generations = Long.parseLong(args[1]);
+		int numRows = (args.length > 2) ? Integer.parseInt(args[2]) : Grid.NUM_GRID_ROWS;
+		int numCols = (args.length > 3) ? Integer.parseInt(args[3]) : Grid.NUM_GRID_COLS;
+		int numInputRows = (args.length > 4) ? Integer.parseInt(args[4]) : Grid.NUM_INPUT_ROWS;
+		int rule = (args.length > 5) ? Integer.parseInt(args[5]) : 30;
+
+		Path file = Files.createTempFile("strips", ".dat");
+		String difference;
+		try {
+			long start = System.nanoTime();
+			Result result = run(file, numWorkers, numRows, numCols, numInputRows, rule,
+					generations);
+			long millis = (System.nanoTime() - start) / 1000000;
+			System.out.println(numWorkers + " workers ran " + generations + " generations of "
+					+ numRows + "x" + numCols + " in " + millis + " ms");
+
+			difference = compareWithSingleProcess(result, rule, generations);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+		if (difference != null) {
+			System.out.println("FAILED: differs from a single process at " + difference);
+			System.exit(1);
+		}
+		System.out.println("Identical to a single process.");
+	}
+
+}
@@ -0,0 +1,221 @@
+package distributed;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import cellularAutomata.MemoryFences;
+import cellularAutomata.PackedLife;
+
+/* The memory-mapped file shared by the coordinator and every StripWorker of a
+ * DistributedSimulation.  It is laid out as:
+ *     - a header, written by the coordinator before the workers start, with the size of
+ *       the universe, the number of workers, the rule and the number of generations,
+ *     - one control block per worker, which holds the number of generations the worker
+ *       has published so far.  Each one has a cache line to itself, so that workers
+ *       spinning on their neighbors' counters don't slow down each other's writes,
+ *     - the halos: for every worker, its top and bottom rows, packed into bits like
+ *       PackedLife.packRow.  There are two copies, and generation g goes in copy g % 2,
+ *       so a worker can write generation g + 1 while its neighbors are still reading
+ *       generation g,
+ *     - the results: the final ages of the whole Game of Life region, followed by the
+ *       final input rows, as ints.  Each worker writes only its own rows.
+ *
+ * All of the workers map the same file, so a write by one is seen by the others through
+ * the operating system's page cache, with no system calls at all.  What the Java memory
+ * model doesn't say anything about is the order in which writes to shared memory become
+ * visible to another process, so publishing goes through fences: the halo rows are
+ * written, then a store fence, then the counter.  A reader waits for the counter, then
+ * does a load fence before reading the halo rows (see MemoryFences).
+ */
+public class SharedStripFile implements Closeable {
+
+	static final int MAGIC = 0x43415354; // "CAST"
+
+	private static final int HEADER_BYTES = 64;
+	private static final int CONTROL_BYTES = 64; // one cache line per worker
+
+	/* header fields */
+	private static final int MAGIC_OFFSET = 0;
+	private static final int WORKERS_OFFSET = 4;
+	private static final int ROWS_OFFSET = 8;
+	private static final int COLS_OFFSET = 12;
+	private static final int INPUT_ROWS_OFFSET = 16;
+	private static final int RULE_OFFSET = 20;
+	private static final int GENERATIONS_OFFSET = 24;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer shared; // header, control blocks and halos
+
+	private final int numWorkers, numRows, numCols, numInputRows, rule;
+	private final long generations;
+	private final int numWords;
+
+	/* Creates the file (replacing anything already there) and writes the header.  This
+	 * is done by the coordinator.
+	 */
+	public static SharedStripFile create(Path file, int numWorkers, int numRows, int numCols,
+			int numInputRows, int rule, long generations) throws IOException {
+		if (numWorkers < 1 || numRows < Math.max(2, numWorkers) || numCols < 2 || numInputRows < 1) {
+			throw new IllegalArgumentException("Illegal Universe: " + numRows + "x" + numCols
+					+ " with " + numInputRows + " input rows and " + numWorkers + " workers");
+		}
+		if ((long) numCols * Math.max(numRows / numWorkers + 1, numInputRows) * 4 > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Illegal Strip Size: " + numRows / numWorkers
+					+ "x" + numCols);
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(WORKERS_OFFSET, numWorkers);
+			header.putInt(ROWS_OFFSET, numRows);
+			header.putInt(COLS_OFFSET, numCols);
+			header.putInt(INPUT_ROWS_OFFSET, numInputRows);
+			header.putInt(RULE_OFFSET, rule);
+			header.putLong(GENERATIONS_OFFSET, generations);
+			header.putInt(MAGIC_OFFSET, MAGIC);
+			header.force();
+		}
+		return open(file);
+	}
+
+	/* Opens a file made by create, which is what the workers do. */
+	public static SharedStripFile open(Path file) throws IOException {
+		return new SharedStripFile(FileChannel.open(file, StandardOpenOption.READ,
+				StandardOpenOption.WRITE));
+	}
+
+	private SharedStripFile(FileChannel channel) throws IOException {
+		this.channel = channel;
+		MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		if (header.getInt(MAGIC_OFFSET) != MAGIC) {
+			channel.close();
+			throw new IOException("Not A Shared Strip File");
+		}
+		numWorkers = header.getInt(WORKERS_OFFSET);
+		numRows = header.getInt(ROWS_OFFSET);
+		numCols = header.getInt(COLS_OFFSET);
+		numInputRows = header.getInt(INPUT_ROWS_OFFSET);
+		rule = header.getInt(RULE_OFFSET);
+		generations = header.getLong(GENERATIONS_OFFSET);
+		numWords = PackedLife.words(numCols);
+
+		shared = channel.map(FileChannel.MapMode.READ_WRITE, 0, resultsOffset());
+		shared.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	public int getNumWorkers() {
+		return numWorkers;
+	}
+
+	public int getNumRows() {
+		return numRows;
+	}
+
+	public int getNumCols() {
+		return numCols;
+	}
+
+	public int getNumInputRows() {
+		return numInputRows;
+	}
+
+	public int getRule() {
+		return rule;
+	}
+
+	public long getGenerations() {
+		return generations;
+	}
+
+	/* Returns the first row of the strip owned by the given worker.  The strip ends
+	 * where the next worker's strip starts, and worker numWorkers "starts" at numRows.
+	 */
+	public int firstRow(int worker) {
+		return (int) ((long) numRows * worker / numWorkers);
+	}
+
+	/* Writes a worker's top and bottom rows for the given generation, then announces
+	 * that the generation has been published.
+	 */
+	public void publish(int worker, long generation, long[] topRow, long[] bottomRow) {
+		int offset = haloOffset(worker, generation);
+		for (int w = 0; w < numWords; w++) {
+			shared.putLong(offset + 8 * w, topRow[w]);
+			shared.putLong(offset + 8 * (numWords + w), bottomRow[w]);
+		}
+		MemoryFences.storeFence();
+		shared.putLong(controlOffset(worker), generation + 1);
+	}
+
+	/* Waits until the worker has published the given generation.  Spins for a while
+	 * first, since the neighbors are usually only a moment behind, and then backs off.
+	 * Throws an IllegalStateException if nothing is published for 'timeoutMillis'.
+	 */
+	public void awaitGeneration(int worker, long generation, long timeoutMillis) {
+		long deadline = 0;
+		for (int spins = 0; shared.getLong(controlOffset(worker)) < generation + 1; spins++) {
+			MemoryFences.loadFence(); // also stops the JIT from hoisting the read out of the loop
+			if (spins > 1000) {
+				if (deadline == 0) {
+					deadline = System.currentTimeMillis() + timeoutMillis;
+				} else if (System.currentTimeMillis() > deadline) {
+					throw new IllegalStateException("Worker " + worker + " timed out before "
+							+ "generation " + generation);
+				}
+				Thread.yield();
+			}
+		}
+		MemoryFences.loadFence();
+	}
+
+	/* Reads a row that a worker published for the given generation.  If 'top' is true
+	 * this is the first row of its strip, otherwise the last.
+	 */
+	public void readHalo(int worker, long generation, boolean top, long[] dest) {
+		int offset = haloOffset(worker, generation) + (top ? 0 : 8 * numWords);
+		for (int w = 0; w < numWords; w++) {
+			dest[w] = shared.getLong(offset + 8 * w);
+		}
+	}
+
+	/* Maps the part of the results that holds the given rows of the Game of Life region
+	 * (or of the input rows, if 'input' is true).
+	 */
+	public MappedByteBuffer mapResults(boolean input, int firstRow, int numRowsToMap)
+			throws IOException {
+		long offset = resultsOffset() + 4L * numCols * ((input ? numRows : 0) + firstRow);
+		MappedByteBuffer results = channel.map(FileChannel.MapMode.READ_WRITE, offset,
+				4L * numCols * numRowsToMap);
+		results.order(ByteOrder.LITTLE_ENDIAN);
+		return results;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private int controlOffset(int worker) {
+		return HEADER_BYTES + CONTROL_BYTES * worker;
+	}
+
+	private int haloOffset(int worker, long generation) {
+		int haloBytes = 2 * 8 * numWords; // top and bottom row
+		int copy = (int) (generation & 1);
+		return HEADER_BYTES + CONTROL_BYTES * numWorkers
+				+ haloBytes * (2 * worker + copy);
+	}
+
+	private int resultsOffset() {
+		return haloOffset(numWorkers, 0);
+	}
+
+}
@@ -0,0 +1,160 @@
+package distributed;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import cellularAutomata.CARowMaker;
+import cellularAutomata.PackedLife;
+
+/* One process of a DistributedSimulation.  Each worker owns a horizontal strip of the
+ * Game of Life region, and advances it one generation at a time with the bit-packed
+ * kernel from PackedLife.  To update the first and last rows of its strip, it needs the
+ * last row of the strip above and the first row of the strip below, as they were in the
+ * previous generation.  So every generation goes:
+ *     1. publish this strip's first and last rows through the SharedStripFile,
+ *     2. wait until both neighbors have published the same generation, and copy their
+ *        rows in as a one-row "halo" above and below the strip,
+ *     3. compute the next generation of the strip.
+ * Waiting on the neighbors' counters acts as a barrier between the generations, so no
+ * worker can get more than one generation ahead of the workers next to it.
+ *
+ * The top worker's strip contains row 0, which is always killed, just like in Grid.  The
+ * bottom worker owns the input rows and the CARowMaker, exactly as Grid does, and uses the
+ * top input row as the row below its strip.  When all of the generations are done, every
+ * worker writes the ages of its strip into the results part of the file (and the bottom
+ * worker writes the input rows as well).
+ */
+public class StripWorker {
+
+	private static final long TIMEOUT_MILLIS = 60000;
+	private static final int DEAD = 100000; // the age every cell starts with, as in Grid
+
+	private final SharedStripFile file;
+	private final int worker;
+	private final int firstRow, numStripRows, numCols;
+	private final boolean top, bottom;
+
+	/* live[0] is the halo above the strip, live[1] to live[numStripRows] are the strip
+	 * itself, and live[numStripRows + 1] is the halo below.
+	 */
+	private final long[][] live;
+	private final long[][] nextLive;
+	private final int[][] ages;
+
+	/* only used by the bottom worker */
+	private CARowMaker rowMaker;
+	private int[][] inputRows;
+
+	public StripWorker(SharedStripFile file, int worker) {
+		if (worker < 0 || worker >= file.getNumWorkers()) {
+			throw new IllegalArgumentException("Illegal Worker: " + worker);
+		}
+		this.file = file;
+		this.worker = worker;
+		firstRow = file.firstRow(worker);
+		numStripRows = file.firstRow(worker + 1) - firstRow;
+		numCols = file.getNumCols();
+		top = (worker == 0);
+		bottom = (worker == file.getNumWorkers() - 1);
+
+		int numWords = PackedLife.words(numCols);
+		live = new long[numStripRows + 2][numWords];
+		nextLive = new long[numStripRows][numWords];
+		ages = new int[numStripRows][numCols];
+		for (int[] row : ages) {
+			Arrays.fill(row, DEAD);
+		}
+
+		if (bottom) {
+			rowMaker = new CARowMaker(file.getRule());
+			int numInputRows = file.getNumInputRows();
+			inputRows = new int[numInputRows][numCols];
+			for (int[] row : inputRows) {
+				Arrays.fill(row, DEAD);
+			}
+			inputRows[numInputRows - 1][numCols / 2] = 0; // the single living cell
+		}
+	}
+
+	/* Runs every generation and then writes out the results. */
+	public void run() throws IOException {
+		long generations = file.getGenerations();
+		for (long g = 0; g < generations; g++) {
+			file.publish(worker, g, live[1], live[numStripRows]);
+			if (!top) {
+				file.awaitGeneration(worker - 1, g, TIMEOUT_MILLIS);
+				file.readHalo(worker - 1, g, false, live[0]);
+			}
+			if (bottom) {
+				nextInput();
+			} else {
+				file.awaitGeneration(worker + 1, g, TIMEOUT_MILLIS);
+				file.readHalo(worker + 1, g, true, live[numStripRows + 1]);
+			}
+			step();
+		}
+		file.publish(worker, generations, live[1], live[numStripRows]);
+		writeResults();
+	}
+
+	/* Shifts the input rows up and makes a new bottom row, just like Grid.update, then
+	 * uses the new top row as the halo below the strip.
+	 */
+	private void nextInput() {
+		int numInputRows = inputRows.length;
+		int[] oldBottom = inputRows[numInputRows - 1];
+		System.arraycopy(inputRows, 1, inputRows, 0, numInputRows - 1);
+		inputRows[numInputRows - 1] = rowMaker.nextRow(oldBottom);
+		PackedLife.packRow(inputRows[0], live[numStripRows + 1]);
+	}
+
+	/* Computes the next generation of the strip from the strip and its halos. */
+	private void step() {
+		for (int i = 0; i < numStripRows; i++) {
+			if (firstRow + i == 0) {
+				Arrays.fill(nextLive[i], 0); // the top row is always killed
+			} else {
+				PackedLife.stepRow(live[i], live[i + 1], live[i + 2], numCols, nextLive[i]);
+			}
+		}
+		for (int i = 0; i < numStripRows; i++) {
+			System.arraycopy(nextLive[i], 0, live[i + 1], 0, nextLive[i].length);
+			PackedLife.ageRow(ages[i], live[i + 1]);
+		}
+	}
+
+	private void writeResults() throws IOException {
+		MappedByteBuffer results = file.mapResults(false, firstRow, numStripRows);
+		for (int[] row : ages) {
+			for (int age : row) {
+				results.putInt(age);
+			}
+		}
+		results.force();
+		if (bottom) {
+			MappedByteBuffer input = file.mapResults(true, 0, inputRows.length);
+			for (int[] row : inputRows) {
+				for (int age : row) {
+					input.putInt(age);
+				}
+			}
+			input.force();
+		}
+	}
+
+	/* Runs a single worker.  The arguments are the shared file, which must already have
+	 * been created by the coordinator, and the number of this worker.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: StripWorker <shared file> <worker number>");
+			System.exit(2);
+		}
+		try (SharedStripFile file = SharedStripFile.open(Paths.get(args[0]))) {
+			new StripWorker(file, Integer.parseInt(args[1])).run();
+		}
+	}
+
+}
@@ -0,0 +1,147 @@
+package gui;
+
+import java.awt.BufferCapabilities;
+import java.awt.Canvas;
+import java.awt.Graphics;
+import java.awt.ImageCapabilities;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.lang.reflect.Constructor;
+
+/* This canvas draws the grid with active rendering, as an alternative to GridPanel
+ * painting itself.  A GridPanel normally calls repaint() after every time step, which only
+ * asks Swing to paint at some point in the future, and Swing is free to merge several
+ * requests together or delay them, so the frames don't come out evenly spaced.  Here the
+ * simulation thread draws each frame itself, as soon as the time step is done, into the
+ * back buffer of a BufferStrategy and then shows it.
+ *
+ * The BufferStrategy keeps two buffers, which are VolatileImages in video memory when the
+ * graphics pipeline supports it, so showing a frame is a single flip or blit.  The
+ * contents of a VolatileImage can be lost at any time (for example when the display mode
+ * changes), so every frame is drawn in the loop recommended by the BufferStrategy
+ * documentation, which redraws it until it makes it to the screen intact.
+ *
+ * Where the JDK supports it, the buffers are also created with vsync turned on, so that
+ * frames are shown in step with the display's refresh and don't tear.  This needs a
+ * class that isn't part of the public API, so it is looked up by reflection, and if it
+ * isn't available (or can't be accessed) the canvas just runs without vsync.  If a
+ * BufferStrategy can't be created at all, present returns false and the GridPanel goes
+ * back to painting itself.
+ */
+public class ActiveGridCanvas extends Canvas {
+
+	private static final long serialVersionUID = 1L;
+
+	private final GridPanel gridPanel; // the panel whose grid is drawn
+	private boolean failed = false; // true if a BufferStrategy couldn't be created
+
+	/* Constructor for ActiveGridCanvas.  The parameter is the panel this canvas draws
+	 * for, which must add the canvas to itself.
+	 */
+	public ActiveGridCanvas(GridPanel gridPanel) {
+		this.gridPanel = gridPanel;
+	}
+
+	/* Draws the current state of the grid and shows it on the screen.  This can be called
+	 * from any thread.  Returns false if nothing could be drawn, either because the canvas
+	 * isn't on the screen yet or because active rendering isn't supported, in which case
+	 * the caller should fall back to repainting.
+	 */
+	public synchronized boolean present() {
+		if (failed || !isDisplayable() || getWidth() <= 0 || getHeight() <= 0) {
+			return false;
+		}
+		BufferStrategy strategy = getBufferStrategy();
+		if (strategy == null) {
+			strategy = createStrategy();
+			if (strategy == null) {
+				failed = true;
+				return false;
+			}
+		}
+
+		do {
+			do {
+				Graphics g = strategy.getDrawGraphics();
+				try {
+					gridPanel.render(g, getWidth(), getHeight());
+				} finally {
+					g.dispose();
+				}
+			} while (strategy.contentsRestored());
+			strategy.show();
+		} while (strategy.contentsLost());
+
+		/* Make sure the frame is actually sent to the screen now, rather than whenever
+		 * the windowing system gets around to it.  This matters on X11 in particular.
+		 */
+		Toolkit.getDefaultToolkit().sync();
+		return true;
+	}
+
+	/* Returns true if present has failed, so this canvas will never draw anything. */
+	public synchronized boolean hasFailed() {
+		return failed;
+	}
+
+	/* The canvas draws itself on every time step, but it also has to draw itself when the
+	 * windowing system asks, for example when it has been covered up and is shown again.
+	 * update is overridden as well so that the canvas isn't cleared first, which would
+	 * make it flicker.
+	 */
+	public void paint(Graphics g) {
+		present();
+	}
+
+	public void update(Graphics g) {
+		present();
+	}
+
+	/* Creates a double-buffered strategy, with vsync if possible, and with whatever the
+	 * default capabilities are otherwise.  Returns null if no strategy could be created.
+	 */
+	private BufferStrategy createStrategy() {
+		BufferCapabilities accelerated = new BufferCapabilities(new ImageCapabilities(true),
+				new ImageCapabilities(true), BufferCapabilities.FlipContents.UNDEFINED);
+		BufferCapabilities vsync = withVSync(accelerated);
+		if (vsync != null) {
+			try {
+				createBufferStrategy(2, vsync);
+				return getBufferStrategy();
+			} catch (Exception e) {
+				// not supported by this pipeline, try without vsync
+			}
+		}
+		try {
+			createBufferStrategy(2, accelerated);
+			return getBufferStrategy();
+		} catch (Exception e) {
+			// not accelerated, try the defaults
+		}
+		try {
+			createBufferStrategy(2);
+			return getBufferStrategy();
+		} catch (Exception e) {
+			System.err.println("Active rendering is not available: " + e);
+			return null;
+		}
+	}
+
+	/* Returns a copy of the capabilities that also asks for vsync, using the JDK's
+	 * sun.java2d.pipe.hw.ExtendedBufferCapabilities, or null if it isn't available.
+	 */
+	private static BufferCapabilities withVSync(BufferCapabilities caps) {
+		try {
+			Class<?> extended = Class.forName("sun.java2d.pipe.hw.ExtendedBufferCapabilities");
+			Class<?> vSyncType = Class.forName(
+					"sun.java2d.pipe.hw.ExtendedBufferCapabilities$VSyncType");
+			Object vSyncOn = vSyncType.getField("VSYNC_ON").get(null);
+			Constructor<?> constructor = extended.getConstructor(BufferCapabilities.class,
+					vSyncType);
+			return (BufferCapabilities) constructor.newInstance(caps, vSyncOn);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+}
@@ -3,6 +3,8 @@ package gui;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.awt.event.KeyEvent;
@@ -13,17 +15,23 @@ import java.util.ArrayList;
 
 import javax.swing.JButton;
 import javax.swing.JComboBox;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
 import javax.swing.text.BadLocationException;
 
+import cellularAutomata.AdvanceMonitor;
 import cellularAutomata.CARowMaker;
 
 /* This handles the bottom bar on the graphical interface, which contains
- * options for the user when running the GUI.  This contains three main
+ * options for the user when running the GUI.  This contains five main
  * sections.  The left, which allows the user to enter a rule to use as input,
- * the middle, which allows the user to select a color theme, and the right,
- * which allows the user to restart the animation with the settings selected.  
+ * the middle, which allows the user to select a color theme, then a button
+ * which allows the user to restart the animation with the settings selected,
+ * and finally a button which goes back a few seconds and a button which skips
+ * ahead by many generations at once.
  */
 public class BottomPanel extends JPanel {
 
@@ -37,7 +45,7 @@ public class BottomPanel extends JPanel {
 
 	/* Constructor for the BottomPanel.  Sets the instance variable gridPanel to the parameter, 
 	 * sets the Layout Manager to GridLayout, which by default creates equally-sized components
-	 * in a single row.  The constructor then adds the three sub-components described in the 
+	 * in a single row.  The constructor then adds the five sub-components described in the 
 	 * comment above the class.
 	 */
 	public BottomPanel(GridPanel gridPanel) {
@@ -54,6 +62,8 @@ public class BottomPanel extends JPanel {
 		colorChoices.add("Neon");
 		add(new ColorPicker<String>(colorChoices));
 		add(new RestartButton(rulePrompt));
+		add(new RewindButton());
+		add(new SkipAheadButton());
 
 		this.setPreferredSize(new Dimension(900, 50));
 		this.setFocusable(false);
@@ -162,9 +172,9 @@ public class BottomPanel extends JPanel {
 						}
 						/* Now use the extracted rule to update the grid */
 						try {
-							gridPanel.grid.updateRule(new CARowMaker(rule));
+							gridPanel.session.updateRule(new CARowMaker(rule));
 						} catch (IllegalArgumentException e5) {
-							gridPanel.grid.updateRule(new CARowMaker(30));
+							gridPanel.session.updateRule(new CARowMaker(30));
 							rulePrompt.setText("Enter Rule Number (0-255): 30");
 						}
 						
@@ -201,6 +211,114 @@ public class BottomPanel extends JPanel {
 
 	}
 
+	/* This private class represents the button that goes back REWIND_GENERATIONS 
+	 * generations (see Grid.rewind), or as far back as the grid's history goes.  The
+	 * animation then carries on from there, and since the input rows are made from the
+	 * previous row, the same generations play out again.
+	 */
+	private class RewindButton extends JButton {
+
+		private static final long serialVersionUID = 1L;
+		
+		private static final long REWIND_GENERATIONS = 105; // 3 seconds of animation
+
+		private RewindButton() {
+			super("Rewind");
+			setFocusPainted(false);
+			setFocusable(false);
+			setFont(BOTTOM_PANEL_FONT);
+			addActionListener(new ActionListener() {
+				@Override
+				public void actionPerformed(ActionEvent e) {
+					gridPanel.session.rewind(REWIND_GENERATIONS);
+				}
+			});
+		}
+	}
+
+	/* This private class represents the button on the far right of the bottom panel.
+	 * It asks the user how many generations to skip, and then runs them as fast as 
+	 * possible (see Grid.advance) on a background thread without drawing any of them,
+	 * while a ProgressMonitor shows how far along it is and lets the user cancel.  The
+	 * animation is paused in the meantime, and carries on from the new generation.
+	 */
+	private class SkipAheadButton extends JButton {
+
+		private static final long serialVersionUID = 1L;
+		
+		private static final String DEFAULT_SKIP = "1000000";
+		private static final int PROGRESS_STEPS = 1000; // resolution of the progress bar
+
+		private SkipAheadButton() {
+			super("Skip Ahead");
+			setFocusPainted(false);
+			setFocusable(false);
+			setFont(BOTTOM_PANEL_FONT);
+			addActionListener(new ActionListener() {
+				@Override
+				public void actionPerformed(ActionEvent e) {
+					String input = JOptionPane.showInputDialog(gridPanel, 
+							"Number of generations to skip:", DEFAULT_SKIP);
+					if (input == null) {
+						return; // cancelled
+					}
+					long generations;
+					try {
+						generations = Long.parseLong(input.trim().replaceAll(",", ""));
+						if (generations < 0) {
+							throw new NumberFormatException();
+						}
+					} catch (NumberFormatException e1) {
+						JOptionPane.showMessageDialog(gridPanel, "Please enter a positive "
+								+ "whole number.", "Skip Ahead", JOptionPane.ERROR_MESSAGE);
+						return;
+					}
+					skip(generations);
+				}
+			});
+		}
+		
+		/* Runs the skip on a new thread, so that the GUI keeps responding. */
+		private void skip(final long generations) {
+			setEnabled(false);
+			final ProgressMonitor progressMonitor = new ProgressMonitor(gridPanel, 
+					"Skipping ahead " + generations + " generations...", null, 0, 
+					PROGRESS_STEPS);
+			progressMonitor.setMillisToDecideToPopup(100);
+			progressMonitor.setMillisToPopup(100);
+			
+			Thread thread = new Thread(new Runnable() {
+				public void run() {
+					try {
+						gridPanel.session.advance(generations, new AdvanceMonitor() {
+							public boolean isCancelled() {
+								return progressMonitor.isCanceled();
+							}
+							
+							public void progress(final long done, final long total) {
+								SwingUtilities.invokeLater(new Runnable() {
+									public void run() {
+										progressMonitor.setProgress(
+												(int) (PROGRESS_STEPS * (double) done / total));
+									}
+								});
+							}
+						});
+					} finally {
+						SwingUtilities.invokeLater(new Runnable() {
+							public void run() {
+								progressMonitor.close();
+								setEnabled(true);
+							}
+						});
+					}
+				}
+			}, "Skip Ahead");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
 	/* This class handles the bottom left portion of the GUI, which allows the user to 
 	 * choose a 1-dimensional cellular automata rule to use as input into the game of life.
 	 * This class uses a lot of checks, some of which may be inelegant, to ensure that the
@@ -0,0 +1,313 @@
+package gui;
+
+import java.awt.Color;
+
+/* This class holds the colors used for one of the six color themes.  Living cells are
+ * always white.  Dead cells are colored depending on how long they have been dead for
+ * (their "age"), and once they have been dead for more than BLACK_THRESHOLD time steps
+ * they are black.
+ *
+ * The colors for every age are worked out once, when the theme is created, so looking
+ * up the color of a cell is just an array access.  This is shared by everything that
+ * draws the grid, so that all of them look the same.
+ */
+public class ColorTheme {
+
+	public static final int BLACK_THRESHOLD = 5000;
+
+	/* The names of the color themes, in the order of their color codes. */
+	public static final String[] NAMES = {"Lilac (Default)", "September", "Sunset",
+			"Cherry Blossoms", "Beach", "Neon"};
+
+	/* The following colors depend on what color scheme is chosen.  However,
+	 * there will always be a fixed number of colors used for each color scheme.
+	 * color1 is the first major color used for dead cells.  trans1_1 and trans1_2
+	 * are the transition colors between white and color1.  trans2_1 and trans2_2
+	 * are the transition colors between color1 and the starting color
+	 * of the finalFade.  The finalFade is a progression of colors with
+	 * similar hue but decreasing luminosity.  For example, the first color
+	 * in finalFade might be a light blue, and in that case the subsequent
+	 * colors would be darker and darker shades of blue.  
+	 */
+	private Color color1;
+	private Color trans1_1;
+	private Color trans1_2;
+	private Color trans2_1;
+	private Color trans2_2;
+	private Color[] finalFade;
+
+	/* colors[age] and rgb[age] hold the color of a cell of the given age, for every age
+	 * from 0 up to BLACK_THRESHOLD.
+	 */
+	private final Color[] colors = new Color[BLACK_THRESHOLD + 1];
+	private final int[] rgb = new int[BLACK_THRESHOLD + 1];
+
+	private final int colorCode;
+
+	/* Constructor for ColorTheme.  6 color schemes are supported, numbered 0 to 5 in the
+	 * same order as NAMES, and they are described briefly in comments within the 
+	 * constructor.
+	 */
+	public ColorTheme(int colorCode) {
+		if (colorCode < 0 || colorCode >= NAMES.length) {
+			throw new IllegalArgumentException("Illegal Color Theme: " + colorCode);
+		}
+		this.colorCode = colorCode;
+		switch(colorCode) {
+		case 0: // default color scheme (pink and blue) - named "Lilac"
+			color1 = new Color(0xff09db); 
+			trans1_1 = new Color(0xff80ec); 
+			trans1_2 = new Color(0xff54e5); 
+			trans2_1 = new Color(0xc73fff); 
+			trans2_2 = new Color(0x935cff); 
+			
+			finalFade = new Color[5000]; 
+
+			float r = 30f, g = 240f, b = 254f;
+
+			for (int i = 0; i < finalFade.length; i++) {
+				finalFade[i] = new Color((int)r, (int)g, (int)b);
+				if (b > 150) {
+					r *= 0.99;
+					g *= 0.966;
+					b *= 0.99;
+				} else if (b > 90) {
+					r *= 0.998;
+					g *= 0.996;
+					b *= 0.998;
+				} else {
+					r *= 0.999;
+					g *= 0.999;
+					b *= 0.999;
+				}
+			}
+			break;
+		case 1: // summer to autumn color scheme - named "September"
+			color1 = new Color(0x37a13a); 
+			trans1_1 = new Color(0x5eab60); 
+			trans1_2 = new Color(0x4fab51); 
+			trans2_1 = new Color(0xacc756); 
+			trans2_2 = new Color(0xc7a756); 
+			
+			finalFade = new Color[5000]; 
+
+			r = 219f; 
+			g = 135f; 
+			b = 79f;
+
+			for (int i = 0; i < finalFade.length; i++) {
+				finalFade[i] = new Color((int)r, (int)g, (int)b);
+				if (r > 150) {
+					r *= 0.99;
+					g *= 0.966;
+					b *= 0.966;
+				} else if (r > 90) {
+					r *= 0.998;
+					g *= 0.996;
+					b *= 0.996;
+				} else {
+					r *= 0.999;
+					g *= 0.999;
+					b *= 0.999;
+				}
+			}
+			break;
+		case 2: // orange/red hues to purple/blue hues - named "Sunset"
+			color1 = new Color(0xec7034); 
+			trans1_1 = new Color(0xeda02d); 
+			trans1_2 = new Color(0xd48633); 
+			trans2_1 = new Color(0xb835b4); 
+			trans2_2 = new Color(0xb8357d); 
+			
+			finalFade = new Color[5000]; 
+
+			r = 184f; 
+			g = 53f; 
+			b = 53f;
+
+			for (int i = 0; i < finalFade.length; i++) {
+				finalFade[i] = new Color((int)r, (int)g, (int)b);
+				if (r > 150) {
+					r *= 0.99;
+					g *= 0.966;
+					b *= 0.99;
+				} else if (r > 100) {
+					r *= 0.99;
+					g *= 0.90;
+					b *= 1.01;
+				} else {
+					r *= 0.999;
+					b *= 0.9995;
+				}
+			}
+			break;
+		case 3: // pale pinks to deeper reds
+			color1 = new Color(0xffb7c5); 
+			trans1_1 = new Color(0xe8dfe4); 
+			trans1_2 = new Color(0xe8d3d1); 
+			trans2_1 = new Color(0xdfb1b6); 
+			trans2_2 = new Color(0xcea19f); 
+			
+			finalFade = new Color[5000]; 
+
+			r = 191f; 
+			g = 120f; 
+			b = 133f;
+
+			for (int i = 0; i < finalFade.length; i++) {
+				finalFade[i] = new Color((int)r, (int)g, (int)b);
+				if (b > 150) {
+					r *= 0.99;
+					g *= 0.99;
+					b *= 0.99;
+				} else if (b > 100) {
+					r *= 0.996;
+					g *= 0.996;
+					b *= 0.996;
+				} else {
+					r *= 0.999;
+					g *= 0.9975;
+					b *= 0.9985;
+				}
+			}
+			break;
+		case 4: // beach - yellow/orange for the sand/sun and then teal/blue for the ocean
+			color1 = new Color(0xffaa01); 
+			trans1_1 = new Color(0xe1ef7e);
+			trans1_2 = new Color(0xEFCDBB); 
+			trans2_1 = new Color(0xae8f60); 
+			trans2_2 = new Color(0x8cae60); 
+			
+			finalFade = new Color[5000];
+
+			r = 18f; 
+			g = 178f; 
+			b = 151f;
+
+			for (int i = 0; i < finalFade.length; i++) {
+				finalFade[i] = new Color((int)r, (int)g, (int)b);
+				if (g > 123) {
+					r *= 0.99;
+					g *= 0.99;
+					b *= 1.001;
+				} else if (b > 70) {
+					r *= 0.996;
+					g *= 0.996;
+					b *= 0.996;
+				} else {
+					r *= 0.999;
+					g *= 0.999;
+					b *= 0.999;
+				}
+			}
+			break;
+		case 5: // neon - this one is a lot different than the others
+			color1 = new Color(0x011ffd); 
+			trans1_1 = new Color(0x75d5fd);
+			trans1_2 = new Color(0x5b79f5); 
+			trans2_1 = new Color(0x9f6cfd); 
+			trans2_2 = new Color(0xb76cfd); 
+			
+			finalFade = new Color[5000]; 
+
+			r = 159f; 
+			g = 108f; 
+			b = 253f;
+			
+			int i = 0; 
+			
+			while (r < 241) {
+				r *= 1.01;
+				finalFade[i++] = new Color((int)r, (int)g, (int)b);
+			}
+			
+			while (g > 39) {
+				r *= 0.992;
+				g *= 0.95;
+				b *= 0.95;
+				finalFade[i++] = new Color((int)r, (int)g, (int)b);
+			}
+			
+			while (g < 104) {
+				g *= 1.01;
+				b *= 0.98;
+				finalFade[i++] = new Color((int)r, (int)g, (int)b);
+			}
+			
+			while (g < 224) {
+				g *= 1.02;
+				r *= 1.001;
+				finalFade[i++] = new Color((int)r, (int)g, (int)b);
+			}
+			
+			while (b < 224) {
+				r *= 0.97;
+				b *= 1.015;
+				finalFade[i++] = new Color((int)r, (int)g, (int)b);
+			}
+			
+			while (i < finalFade.length) {
+				r *= 0.985;
+				g *= 0.985;
+				b *= 0.985;
+				finalFade[i++] = new Color((int)r, (int)g, (int)b);
+			}
+			break;
+			
+			
+		}
+		
+		/* Now work out the color for every age. */
+		for (int age = 0; age <= BLACK_THRESHOLD; age++) {
+			Color color;
+			if (age == 0) {
+				color = Color.WHITE;
+			} else if (age == 1) {
+				color = trans1_1;
+			} else if (age == 2) {
+				color = trans1_2;
+			} else if (age < 6) {
+				color = color1;
+			} else if (age == 6) {
+				color = trans2_1;
+			} else if (age == 7) {
+				color = trans2_2;
+			} else if (age < BLACK_THRESHOLD) {
+				color = finalFade[age - 8];
+			} else {
+				color = Color.BLACK;
+			}
+			colors[age] = color;
+			rgb[age] = color.getRGB();
+		}
+	}
+
+	public int getColorCode() {
+		return colorCode;
+	}
+
+	/* Returns the color of a cell with the given age.  A negative age can only come from
+	 * an age that overflowed, and is treated the same way as GridPanel always has.
+	 */
+	public Color getColor(int age) {
+		if (age > BLACK_THRESHOLD) {
+			return Color.BLACK;
+		} else if (age < 0) {
+			return color1;
+		}
+		return colors[age];
+	}
+
+	/* Returns the color of a cell with the given age as an RGB int, in the format used
+	 * by BufferedImage.TYPE_INT_RGB (and TYPE_INT_ARGB, with an opaque alpha).
+	 */
+	public int getRGB(int age) {
+		if (age > BLACK_THRESHOLD) {
+			return 0xff000000;
+		} else if (age < 0) {
+			return rgb[3];
+		}
+		return rgb[age];
+	}
+
+}
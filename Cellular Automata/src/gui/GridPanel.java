@@ -1,338 +1,195 @@
 package gui;
 
+import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Graphics;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
+import cellularAutomata.ActivityHeatmap;
+import cellularAutomata.CycleDetector;
 import cellularAutomata.Grid;
+import cellularAutomata.GridHistory;
+import cellularAutomata.SimulationHost;
 
 public class GridPanel extends JPanel {
 	
 	private static final long serialVersionUID = 1L;
 	
-	private static final int BOX_SIZE = 3;
-	private static final int BLACK_THRESHOLD = 5000;
+	private static final double TICKS_PER_SECOND = 1000.0 / 35; // one tick every 35 ms
+	private static final double ZOOM_PER_NOTCH = 1.25; // zoom for each notch of the mouse wheel
+	private static final int HISTORY_GENERATIONS = 350; // 10 seconds that can be rewound
 	
-	/* The following colors will be changed depending on what color
-	 * scheme is chosen.  However, there will always be a fixed number
-	 * of colors used for each color scheme.  color1 is the first major
-	 * color used for dead cells.  trans1_1 and trans1_2 are the 
-	 * transition colors between white and color1.  trans2_1 and trans2_2
-	 * are the transition colors between color1 and the starting color
-	 * of the finalFade.  The finalFade is a progression of colors with
-	 * similar hue but decreasing luminosity.  For example, the first color
-	 * in finalFade might be a light blue, and in that case the subsequent
-	 * colors would be darker and darker shades of blue.  
-	 */
-	private Color color1;
-	private Color trans1_1;
-	private Color trans1_2;
-	private Color trans2_1;
-	private Color trans2_2;
-	private Color[] finalFade;
+	private ColorTheme theme; // the colors used to draw the cells
+	private final ViewportRenderer renderer = new ViewportRenderer();
+	private volatile ActiveGridCanvas canvas; // draws the grid when active rendering is used
 	
 	Grid grid; // stores the information displayed by the GridPanel
+	SimulationHost.Session session; // runs the time steps for the grid
 	
-	public GridPanel() {
+	/* Constructor for GridPanel.  The first parameter is the name of the LifeEngine used
+	 * by the grid.  If the second parameter is true, the grid is drawn by an 
+	 * ActiveGridCanvas as soon as each time step is done.  Otherwise (or if active 
+	 * rendering turns out not to work) this panel paints the grid itself.
+	 */
+	public GridPanel(String engineName, boolean activeRendering) {
 		grid = new Grid();
+		try {
+			grid.setEngine(engineName);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage() + ", using " + grid.getEngineName() + " instead");
+		}
+		grid.setHistory(new GridHistory(HISTORY_GENERATIONS));
+		grid.setCycleDetector(new CycleDetector());
+		session = SimulationHost.getShared().createSession(grid, TICKS_PER_SECOND);
 		
 		/* set default color scheme (defaults to "Lilac") */
 		setColorTheme(0);
 		
-		/* Every 35 milliseconds, move to the next time-step (update the grid)
-		 * and then repaint the grid
+		if (activeRendering) {
+			setLayout(new BorderLayout());
+			canvas = new ActiveGridCanvas(this);
+			add(canvas, BorderLayout.CENTER);
+		}
+		
+		/* Every 35 milliseconds, the shared SimulationHost moves to the next time-step 
+		 * (updates the grid), and then the renderer catches up with the grid and the 
+		 * grid is redrawn.
 		 */
-		Timer timer = new Timer();
-		timer.schedule(new TimerTask() {
+		session.setListener(new Runnable() {
 			public void run() {
-				grid.update();
-				repaint();
+				renderer.update(grid);
+				redraw();
 			}
-		}, 0, 35);
-	}
-	
-	/* This method is used to set the color scheme being used to display the living
-	 * and dead cells.  This is used in the constructor for this class.  It is also
-	 * called in the BottomPanel class to change the color scheme when another color
-	 * is selected by the user and the animation is restarted.  6 color schemes are 
-	 * supported, and they are described briefly in comments within the method.
-	 */
-	public void setColorTheme(int colorCode) {
-		switch(colorCode) {
-		case 0: // default color scheme (pink and blue) - named "Lilac"
-			color1 = new Color(0xff09db); 
-			trans1_1 = new Color(0xff80ec); 
-			trans1_2 = new Color(0xff54e5); 
-			trans2_1 = new Color(0xc73fff); 
-			trans2_2 = new Color(0x935cff); 
+		});
+		
+		/* The mouse wheel zooms in and out around the pointer, dragging moves the view
+		 * around, double clicking goes back to the default view, and right clicking
+		 * turns the heatmap on and off.
+		 */
+		MouseAdapter mouse = new MouseAdapter() {
+			private int lastX, lastY;
 			
-			finalFade = new Color[5000]; 
-
-			float r = 30f, g = 240f, b = 254f;
-
-			for (int i = 0; i < finalFade.length; i++) {
-				finalFade[i] = new Color((int)r, (int)g, (int)b);
-				if (b > 150) {
-					r *= 0.99;
-					g *= 0.966;
-					b *= 0.99;
-				} else if (b > 90) {
-					r *= 0.998;
-					g *= 0.996;
-					b *= 0.998;
-				} else {
-					r *= 0.999;
-					g *= 0.999;
-					b *= 0.999;
-				}
+			public void mousePressed(MouseEvent e) {
+				lastX = e.getX();
+				lastY = e.getY();
 			}
-			break;
-		case 1: // summer to autumn color scheme - named "September"
-			color1 = new Color(0x37a13a); 
-			trans1_1 = new Color(0x5eab60); 
-			trans1_2 = new Color(0x4fab51); 
-			trans2_1 = new Color(0xacc756); 
-			trans2_2 = new Color(0xc7a756); 
 			
-			finalFade = new Color[5000]; 
-
-			r = 219f; 
-			g = 135f; 
-			b = 79f;
-
-			for (int i = 0; i < finalFade.length; i++) {
-				finalFade[i] = new Color((int)r, (int)g, (int)b);
-				if (r > 150) {
-					r *= 0.99;
-					g *= 0.966;
-					b *= 0.966;
-				} else if (r > 90) {
-					r *= 0.998;
-					g *= 0.996;
-					b *= 0.996;
-				} else {
-					r *= 0.999;
-					g *= 0.999;
-					b *= 0.999;
-				}
+			public void mouseDragged(MouseEvent e) {
+				renderer.pan(e.getX() - lastX, e.getY() - lastY);
+				lastX = e.getX();
+				lastY = e.getY();
+				redraw();
 			}
-			break;
-		case 2: // orange/red hues to purple/blue hues - named "Sunset"
-			color1 = new Color(0xec7034); 
-			trans1_1 = new Color(0xeda02d); 
-			trans1_2 = new Color(0xd48633); 
-			trans2_1 = new Color(0xb835b4); 
-			trans2_2 = new Color(0xb8357d); 
 			
-			finalFade = new Color[5000]; 
-
-			r = 184f; 
-			g = 53f; 
-			b = 53f;
-
-			for (int i = 0; i < finalFade.length; i++) {
-				finalFade[i] = new Color((int)r, (int)g, (int)b);
-				if (r > 150) {
-					r *= 0.99;
-					g *= 0.966;
-					b *= 0.99;
-				} else if (r > 100) {
-					r *= 0.99;
-					g *= 0.90;
-					b *= 1.01;
-				} else {
-					r *= 0.999;
-					b *= 0.9995;
+			public void mouseClicked(MouseEvent e) {
+				if (SwingUtilities.isRightMouseButton(e)) {
+					setHeatmapVisible(renderer.getOverlay() == null);
+					redraw();
+				} else if (e.getClickCount() == 2) {
+					renderer.resetView();
+					redraw();
 				}
 			}
-			break;
-		case 3: // pale pinks to deeper reds
-			color1 = new Color(0xffb7c5); 
-			trans1_1 = new Color(0xe8dfe4); 
-			trans1_2 = new Color(0xe8d3d1); 
-			trans2_1 = new Color(0xdfb1b6); 
-			trans2_2 = new Color(0xcea19f); 
 			
-			finalFade = new Color[5000]; 
-
-			r = 191f; 
-			g = 120f; 
-			b = 133f;
-
-			for (int i = 0; i < finalFade.length; i++) {
-				finalFade[i] = new Color((int)r, (int)g, (int)b);
-				if (b > 150) {
-					r *= 0.99;
-					g *= 0.99;
-					b *= 0.99;
-				} else if (b > 100) {
-					r *= 0.996;
-					g *= 0.996;
-					b *= 0.996;
-				} else {
-					r *= 0.999;
-					g *= 0.9975;
-					b *= 0.9985;
-				}
+			public void mouseWheelMoved(MouseWheelEvent e) {
+				renderer.zoom(Math.pow(ZOOM_PER_NOTCH, -e.getPreciseWheelRotation()), 
+						e.getX(), e.getY());
+				redraw();
 			}
-			break;
-		case 4: // beach - yellow/orange for the sand/sun and then teal/blue for the ocean
-			color1 = new Color(0xffaa01); 
-			trans1_1 = new Color(0xe1ef7e);
-			trans1_2 = new Color(0xEFCDBB); 
-			trans2_1 = new Color(0xae8f60); 
-			trans2_2 = new Color(0x8cae60); 
-			
-			finalFade = new Color[5000];
-
-			r = 18f; 
-			g = 178f; 
-			b = 151f;
-
-			for (int i = 0; i < finalFade.length; i++) {
-				finalFade[i] = new Color((int)r, (int)g, (int)b);
-				if (g > 123) {
-					r *= 0.99;
-					g *= 0.99;
-					b *= 1.001;
-				} else if (b > 70) {
-					r *= 0.996;
-					g *= 0.996;
-					b *= 0.996;
-				} else {
-					r *= 0.999;
-					g *= 0.999;
-					b *= 0.999;
+		};
+		addMouseListener(mouse);
+		addMouseMotionListener(mouse);
+		addMouseWheelListener(mouse);
+		if (canvas != null) {
+			canvas.addMouseListener(mouse);
+			canvas.addMouseMotionListener(mouse);
+			canvas.addMouseWheelListener(mouse);
+		}
+		
+		session.resume();
+	}
+	
+	/* This method is used to set the color scheme being used to display the living
+	 * and dead cells.  This is used in the constructor for this class.  It is also
+	 * called in the BottomPanel class to change the color scheme when another color
+	 * is selected by the user and the animation is restarted.  The color schemes 
+	 * themselves are in ColorTheme.
+	 */
+	public void setColorTheme(int colorCode) {
+		session.setColorTheme(colorCode);
+		theme = new ColorTheme(colorCode);
+	}
+	
+	/* Shows or hides a heatmap of how many times each cell has come to life (see 
+	 * ActivityHeatmap) on top of the grid.  The heatmap is only kept up to date while it 
+	 * is visible, and it starts from scratch each time it is shown.
+	 */
+	public void setHeatmapVisible(boolean visible) {
+		ActivityHeatmap heatmap = null;
+		if (visible) {
+			heatmap = new ActivityHeatmap(Grid.NUM_GRID_ROWS, Grid.NUM_GRID_COLS);
+		}
+		synchronized (grid) {
+			grid.setHeatmap(heatmap);
+		}
+		renderer.setOverlay(heatmap);
+	}
+	
+	/* Draws the grid as it is now.  With active rendering, the canvas draws the frame
+	 * straight away on the calling thread.  Otherwise, or if the canvas couldn't draw
+	 * anything, this falls back to asking Swing to repaint the panel.  If the canvas
+	 * will never be able to draw anything, it is removed so that the panel is visible.
+	 */
+	private void redraw() {
+		ActiveGridCanvas activeCanvas = canvas;
+		if (activeCanvas != null && activeCanvas.present()) {
+			return;
+		}
+		if (activeCanvas != null && activeCanvas.hasFailed()) {
+			canvas = null;
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					remove(activeCanvas);
+					revalidate();
 				}
-			}
-			break;
-		case 5: // neon - this one is a lot different than the others
-			color1 = new Color(0x011ffd); 
-			trans1_1 = new Color(0x75d5fd);
-			trans1_2 = new Color(0x5b79f5); 
-			trans2_1 = new Color(0x9f6cfd); 
-			trans2_2 = new Color(0xb76cfd); 
-			
-			finalFade = new Color[5000]; 
-
-			r = 159f; 
-			g = 108f; 
-			b = 253f;
-			
-			int i = 0; 
-			
-			while (r < 241) {
-				r *= 1.01;
-				finalFade[i++] = new Color((int)r, (int)g, (int)b);
-			}
-			
-			while (g > 39) {
-				r *= 0.992;
-				g *= 0.95;
-				b *= 0.95;
-				finalFade[i++] = new Color((int)r, (int)g, (int)b);
-			}
-			
-			while (g < 104) {
-				g *= 1.01;
-				b *= 0.98;
-				finalFade[i++] = new Color((int)r, (int)g, (int)b);
-			}
-			
-			while (g < 224) {
-				g *= 1.02;
-				r *= 1.001;
-				finalFade[i++] = new Color((int)r, (int)g, (int)b);
-			}
-			
-			while (b < 224) {
-				r *= 0.97;
-				b *= 1.015;
-				finalFade[i++] = new Color((int)r, (int)g, (int)b);
-			}
-			
-			while (i < finalFade.length) {
-				r *= 0.985;
-				g *= 0.985;
-				b *= 0.985;
-				finalFade[i++] = new Color((int)r, (int)g, (int)b);
-			}
-			break;
-			
-			
+			});
+		}
+		repaint();
+	}
+	
+	/* Draws the grid into a width x height area, with the current view and colors.  This
+	 * is used both by paint and by ActiveGridCanvas.  Once the grid has settled into a
+	 * cycle, its period is shown in the bottom left corner.
+	 */
+	void render(Graphics g, int width, int height) {
+		renderer.render(g, width, height, theme, grid);
+		long period = grid.getCycleDetector().getPeriod();
+		if (period > 0) {
+			String caption = "Period " + period;
+			g.setColor(Color.BLACK);
+			g.drawString(caption, 7, height - 5);
+			g.setColor(Color.WHITE);
+			g.drawString(caption, 6, height - 6);
 		}
 	}
 	
 	/* This method is called to paint this component.  It uses the currently
 	 * selected color scheme to color in each cell either white, if it is
 	 * alive, or some other color (which depends on the color scheme) if it 
-	 * is dead.  
+	 * is dead.  Only the part of the grid in the current view is drawn, see
+	 * ViewportRenderer.  With active rendering, the canvas covers the panel
+	 * and draws the grid itself.
 	 */
 	public void paint(Graphics g) {
-		int startingX = ((-2) * BOX_SIZE), startingY = ((-5) * BOX_SIZE);
-
-		/* paint the gameOfLifeRegion first */
-		
-		int[][] life = grid.getGameOfLifeRegion();
-		
-		int val = 0;
-		for (int row = 5; row < Grid.NUM_GRID_ROWS; row++) {
-			for (int col = 2; col < Grid.NUM_GRID_COLS - 2; col++) {
-				val = life[row][col];
-				if (val == 0) {
-					g.setColor(Color.WHITE);
-				} else if (val > BLACK_THRESHOLD) {
-					g.setColor(Color.BLACK);
-				} else if (val == 1) {
-					g.setColor(trans1_1);
-				} else if (val == 2) {
-					g.setColor(trans1_2);
-				} else if (val < 6) {
-					g.setColor(color1);
-				} else if (val == 6) {
-					g.setColor(trans2_1);
-				} else if (val == 7) {
-					g.setColor(trans2_2);
-				} else if (val < BLACK_THRESHOLD) {
-					g.setColor(finalFade[val - 8]);
-				}
-				g.fillRect(startingX + (col * BOX_SIZE), startingY + (row * BOX_SIZE), 
-						BOX_SIZE, BOX_SIZE);
-			}
-		}
-		
-		startingY = (Grid.NUM_GRID_ROWS - 6) * BOX_SIZE;
-		
-		/* Now paint the input section */
-		
-		int[][] input = grid.getInputRegion();
-		
-		for (int row = 0; row < Grid.NUM_INPUT_ROWS; row++) {
-			for (int col = 2; col < Grid.NUM_GRID_COLS - 2; col++) {
-				val = input[row][col];
-				if (val == 0) {
-					g.setColor(Color.WHITE);
-				} else if (val > BLACK_THRESHOLD) {
-					g.setColor(Color.BLACK);
-				} else if (val == 1) {
-					g.setColor(trans1_1);
-				} else if (val == 2) {
-					g.setColor(trans1_2);
-				} else if (val < 6) {
-					g.setColor(color1);
-				} else if (val == 6) {
-					g.setColor(trans2_1);
-				} else if (val == 7) {
-					g.setColor(trans2_2);
-				} else if (val < BLACK_THRESHOLD) {
-					g.setColor(finalFade[val - 8]);
-				}
-				g.fillRect(startingX + (col * BOX_SIZE), startingY + (row * BOX_SIZE), 
-						BOX_SIZE, BOX_SIZE);
-			}
+		if (canvas != null) {
+			super.paint(g);
+		} else {
+			render(g, getWidth(), getHeight());
 		}
 	}
 
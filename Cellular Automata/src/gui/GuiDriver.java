@@ -5,11 +5,23 @@ import javax.swing.JFrame;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 
+import cellularAutomata.LifeEngines;
+
 /* Starts the Graphical User Interface.  
  * Includes the main method for this project. */
 public class GuiDriver {
 
 	public static void main(String[] args) {
+		/* The optional argument is the name of the LifeEngine used to run the Game of
+		 * Life (see LifeEngines for the names).  All engines look the same on screen.
+		 */
+		final String engineName = (args.length > 0) ? args[0] : LifeEngines.DEFAULT_ENGINE;
+		
+		/* The grid is drawn with active rendering (see ActiveGridCanvas) unless the second
+		 * argument is "passive", in which case the GridPanel paints itself like it used to.
+		 */
+		final boolean activeRendering = !(args.length > 1 && args[1].equals("passive"));
+		
 		/* Send a request to the Event-Dispatching Thread to initialize the
 		 * Graphical User Interface. The main thread then dies and the rest
 		 * is up to the EDT.
@@ -17,7 +29,7 @@ public class GuiDriver {
 		javax.swing.SwingUtilities.invokeLater(new Runnable() {
 			public void run() {
 				Thread.currentThread().setPriority(Thread.MAX_PRIORITY);
-				createAndDisplayFrame();
+				createAndDisplayFrame(engineName, activeRendering);
 			}
 		});
 	}
@@ -27,7 +39,7 @@ public class GuiDriver {
 	 * inside of it. This panel will be an instance of the class MainPanel, which will take care
 	 * of the rest of the work needed to get the animation started inside of its constructor.
 	 */
-	public static void createAndDisplayFrame() {
+	public static void createAndDisplayFrame(String engineName, boolean activeRendering) {
 		/* Set the Look and Feel of the interface to be the system default look and feel.
 		 * This program was written on a Windows PC, so it's possible that this will 
 		 * introduce some minor misalignments on other systems.  However, I still think that
@@ -43,7 +55,7 @@ public class GuiDriver {
 		
 		/* Fairly standard paradigm for initializing the JFrame for a GUI. */
 		JFrame frame = new JFrame("Cellular Automata and Conway's Game of Life");
-		frame.setContentPane(new MainPanel());  // Sets the panel inside the frame
+		frame.setContentPane(new MainPanel(engineName, activeRendering));  // Sets the panel inside the frame
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		frame.setResizable(false);
 		frame.setVisible(true);
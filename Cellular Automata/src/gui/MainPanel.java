@@ -15,10 +15,11 @@ public class MainPanel extends JPanel{
 	/* Constructor for the MainPanel.  Sets the layoutmanager to BorderLayout, since
 	 * the GridPanel will take up the majority of the screen (so I'll place that in
 	 * BorderLayout.CENTER, which is given any extra space) and the BottomPanel will
-	 * naturally go in BorderLayout.SOUTH */
-	public MainPanel() {
+	 * naturally go in BorderLayout.SOUTH.  The parameters are the name of the LifeEngine
+	 * used by the grid and whether the grid is drawn with active rendering. */
+	public MainPanel(String engineName, boolean activeRendering) {
 		setLayout(new BorderLayout());
-		GridPanel gridPanel = new GridPanel();
+		GridPanel gridPanel = new GridPanel(engineName, activeRendering);
 		add(gridPanel, BorderLayout.CENTER);
 		add(new BottomPanel(gridPanel), BorderLayout.SOUTH);
 		
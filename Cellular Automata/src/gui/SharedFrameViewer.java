@@ -0,0 +1,147 @@
+package gui;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Paths;
+
+import javax.swing.JComboBox;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.Timer;
+
+import cellularAutomata.Grid;
+import remote.SharedFrameBuffer;
+
+/* A window that shows a simulation running in another process, by reading the frames it
+ * publishes to a SharedFrameBuffer (run remote.SharedFrameBuffer to start one).  A timer
+ * looks for a new generation 35 times a second, and colours the ages straight from the
+ * shared memory into the pixels of an image, using the same colour themes as GridPanel.
+ * If the simulation overwrote the frame while it was being coloured, the image is
+ * coloured again from the newest frame, and if that keeps happening the tick is skipped
+ * and the old image stays up, so a half-written frame is never shown.
+ *
+ * The image is laid out the way GridPanel draws the grid: the top input row is drawn
+ * over the bottom row of the Game of Life region, and each cell is BOX_SIZE pixels.
+ * Any number of viewers can watch the same simulation, and starting or closing one
+ * makes no difference to it.
+ */
+public class SharedFrameViewer extends JPanel {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int BOX_SIZE = 3;
+	private static final int MAX_ATTEMPTS = 4; // at reading a frame, per tick
+
+	private final SharedFrameBuffer frames;
+	private final BufferedImage image;
+	private final int[] pixels;
+	private final int numLifeRows; // rows of the frame that belong to the Game of Life region
+	private ColorTheme theme = new ColorTheme(0);
+	private long shownGeneration = -1;
+	private int tornFrames = 0;
+	private final JLabel status = new JLabel(" ");
+
+	/* Constructor for SharedFrameViewer.  The frames must be the size of a standard Grid,
+	 * counting the input rows.
+	 */
+	public SharedFrameViewer(SharedFrameBuffer frames, int numLifeRows) {
+		super(new BorderLayout());
+		this.frames = frames;
+		this.numLifeRows = numLifeRows;
+		int shownRows = frames.getNumRows() - 1;
+		image = new BufferedImage(frames.getNumCols(), shownRows, BufferedImage.TYPE_INT_RGB);
+		pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+		JPanel canvas = new JPanel() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void paintComponent(Graphics g) {
+				super.paintComponent(g);
+				g.drawImage(image, 0, 0, image.getWidth() * BOX_SIZE,
+						image.getHeight() * BOX_SIZE, null);
+			}
+		};
+		canvas.setPreferredSize(new Dimension(image.getWidth() * BOX_SIZE,
+				image.getHeight() * BOX_SIZE));
+
+		final JComboBox<String> themes = new JComboBox<>(ColorTheme.NAMES);
+		themes.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				theme = new ColorTheme(themes.getSelectedIndex());
+				shownGeneration = -1; // recolour even if there is no new generation
+			}
+		});
+		JPanel bottom = new JPanel(new BorderLayout());
+		bottom.add(themes, BorderLayout.WEST);
+		bottom.add(status, BorderLayout.CENTER);
+		add(canvas, BorderLayout.CENTER);
+		add(bottom, BorderLayout.SOUTH);
+	}
+
+	/* Colours the latest frame into the image, if it is newer than the one shown. */
+	public void refresh() {
+		long latest = frames.getLatestGeneration();
+		if (latest < 0 || latest == shownGeneration) {
+			return;
+		}
+		final ColorTheme colors = theme;
+		long generation = frames.read(new SharedFrameBuffer.FrameVisitor() {
+			public void visit(IntBuffer ages, int numRows, int numCols, long generation) {
+				/* the last row of the Game of Life region is hidden by the top input row */
+				int hidden = (numLifeRows - 1) * numCols;
+				for (int i = 0; i < hidden; i++) {
+					pixels[i] = colors.getRGB(ages.get(i));
+				}
+				for (int i = hidden; i < pixels.length; i++) {
+					pixels[i] = colors.getRGB(ages.get(i + numCols));
+				}
+			}
+		}, MAX_ATTEMPTS);
+		if (generation < 0) {
+			tornFrames++;
+			shownGeneration = -1; // the image is half coloured, so try again next tick
+			return;
+		}
+		shownGeneration = generation;
+		status.setText("  Generation " + generation + (tornFrames > 0 ? ",  skipped "
+				+ tornFrames + " overwritten frames" : ""));
+		repaint();
+	}
+
+	/* Shows the frames published to the given file ("frames.dat" by default). */
+	public static void main(String[] args) throws IOException {
+		final SharedFrameBuffer frames = SharedFrameBuffer.openReadOnly(Paths.get(
+				(args.length > 0) ? args[0] : "frames.dat"));
+		if (frames.getNumRows() != Grid.NUM_GRID_ROWS + Grid.NUM_INPUT_ROWS) {
+			throw new IllegalArgumentException("Illegal Frame Size: " + frames.getNumRows()
+					+ "x" + frames.getNumCols());
+		}
+		javax.swing.SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				final SharedFrameViewer viewer = new SharedFrameViewer(frames,
+						Grid.NUM_GRID_ROWS);
+				JFrame frame = new JFrame("Cellular Automata (shared memory viewer)");
+				frame.setContentPane(viewer);
+				frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+				frame.setResizable(false);
+				frame.pack();
+				frame.setVisible(true);
+				new Timer(1000 / 35, new ActionListener() {
+					public void actionPerformed(ActionEvent e) {
+						viewer.refresh();
+					}
+				}).start();
+			}
+		});
+	}
+
+}
@@ -0,0 +1,93 @@
+package gui;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import cellularAutomata.CARowMaker;
+import cellularAutomata.CycleDetector;
+import cellularAutomata.Grid;
+import cellularAutomata.LifeEngines;
+import cellularAutomata.SimulationHost;
+
+/* Runs the simulation in a terminal instead of a window (see TerminalRenderer), for
+ * machines with no display.  It needs a terminal with 24-bit color, and it runs until
+ * it is stopped with Ctrl-C.
+ */
+public class TerminalDriver {
+
+	public static void main(String[] args) throws InterruptedException {
+		/* The arguments are all optional: the rule, the name of the LifeEngine, the color
+		 * theme (0 to 5, as in ColorTheme.NAMES), the number of time steps per second and
+		 * the size of the terminal.  The terminal size comes from the COLUMNS and LINES
+		 * environment variables if they are set, and otherwise is big enough for the
+		 * whole grid.
+		 */
+		int rule = (args.length > 0) ? Integer.parseInt(args[0]) : 30;
+		String engineName = (args.length > 1) ? args[1] : LifeEngines.DEFAULT_ENGINE;
+		int theme = (args.length > 2) ? Integer.parseInt(args[2]) : 0;
+		double ticksPerSecond = (args.length > 3) ? Double.parseDouble(args[3]) : 1000.0 / 35;
+		int columns = (args.length > 4) ? Integer.parseInt(args[4])
+				: sizeFromEnvironment("COLUMNS", Grid.NUM_GRID_COLS);
+		int lines = (args.length > 5) ? Integer.parseInt(args[5])
+				: sizeFromEnvironment("LINES", (Grid.NUM_GRID_ROWS + Grid.NUM_INPUT_ROWS) / 2 + 1);
+
+		final Grid grid = new Grid(new CARowMaker(rule));
+		grid.setEngine(engineName);
+		grid.setCycleDetector(new CycleDetector());
+
+		/* System.out has its own buffer, so the frames are written to standard output
+		 * directly, each in a single write.
+		 */
+		final TerminalRenderer renderer = new TerminalRenderer(
+				new FileOutputStream(FileDescriptor.out), columns, lines);
+		renderer.setColorTheme(theme);
+
+		final SimulationHost.Session session = SimulationHost.getShared().createSession(grid,
+				ticksPerSecond);
+		session.setListener(new Runnable() {
+			public void run() {
+				synchronized (renderer) {
+					try {
+						renderer.render(grid);
+					} catch (IOException e) {
+						session.close(); // the terminal has gone away
+					}
+				}
+			}
+		});
+
+		/* put the terminal back to normal when the program is stopped */
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				session.close();
+				synchronized (renderer) {
+					try {
+						renderer.close();
+					} catch (IOException e) {
+						// nothing more can be done
+					}
+				}
+			}
+		});
+
+		session.resume();
+		while (true) {
+			Thread.sleep(Long.MAX_VALUE);
+		}
+	}
+
+	/* Returns the value of an environment variable holding a terminal size, or the
+	 * default if it isn't set (Java programs often don't see COLUMNS and LINES, since
+	 * shells don't usually export them).
+	 */
+	private static int sizeFromEnvironment(String name, int defaultSize) {
+		String value = System.getenv(name);
+		try {
+			return (value != null) ? Integer.parseInt(value.trim()) : defaultSize;
+		} catch (NumberFormatException e) {
+			return defaultSize;
+		}
+	}
+
+}
@@ -0,0 +1,252 @@
+package gui;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import cellularAutomata.Grid;
+
+/* This class draws a Grid in a terminal, for machines with no display (for example over
+ * SSH).  It uses the same colors as the GUI, written as 24-bit ANSI escape codes, which
+ * most terminals understand.  Terminal characters are about twice as tall as they are
+ * wide, so each character shows two cells, one above the other: the "upper half block"
+ * character is drawn with the top cell's color in front and the bottom cell's color
+ * behind it.  When both cells have the same color, a space is drawn instead, which only
+ * needs the background color.
+ *
+ * Redrawing the whole grid on every time step would mean sending hundreds of kilobytes
+ * of escape codes per frame.  So the renderer remembers the colors it has already drawn
+ * in each character, and only the characters whose colors changed are written, with the
+ * cursor moved only when the next changed character isn't the one right after the last.
+ * The colors are also only set when they differ from the ones set last.  The dead cells
+ * fade a tiny bit on every time step, so a character counts as changed only once one of
+ * its colors is more than TOLERANCE away from the one on the screen in red, green or
+ * blue.  Then a fading cell is only redrawn every few time steps.  A settled grid costs
+ * next to nothing, and even a busy one (rule 30, say) sends about a quarter of what
+ * redrawing everything would.  The whole frame is put together in a byte array
+ * and handed to the stream in a single write, so the terminal never shows half of one.
+ *
+ * The rows are laid out the same way as the GUI shows them (see ViewportRenderer): the
+ * rows of the Game of Life region followed by the input rows, with the bottom row of the
+ * Game of Life region hidden.  Only the part that fits in the terminal is drawn, starting
+ * from the top left corner of the view (see setView).  The last line shows the generation.
+ */
+public class TerminalRenderer {
+
+	private static final byte[] HALF_BLOCK = {(byte) 0xe2, (byte) 0x96, (byte) 0x80}; // U+2580 in UTF-8
+	private static final int NONE = -1; // no color drawn yet, which never matches a color
+	private static final int TOLERANCE = 16; // how far a color can be from the one shown
+
+	private final OutputStream out;
+	private final int columns, lines; // the size of the terminal, in characters
+	private ColorTheme theme = new ColorTheme(0);
+	private int firstRow = 0, firstCol = 0; // the cell in the top left corner
+
+	/* the colors of the top and bottom cell drawn in each character of the grid */
+	private final int[] shownTop, shownBottom;
+	private boolean cleared = false; // false until the screen has been cleared
+
+	/* the frame being put together */
+	private byte[] buffer = new byte[1 << 16];
+	private int length;
+	private int foreground, background; // the colors set last in the terminal
+	private int cursorLine, cursorColumn; // where the terminal's cursor is (0-based)
+
+	/* Constructor for TerminalRenderer, which writes to 'out' for a terminal of the given
+	 * size.  One line is kept for the status, so the grid gets lines - 1 of them.
+	 */
+	public TerminalRenderer(OutputStream out, int columns, int lines) {
+		if (columns < 1 || lines < 2) {
+			throw new IllegalArgumentException("Illegal Terminal Size: " + columns + "x" + lines);
+		}
+		this.out = out;
+		this.columns = columns;
+		this.lines = lines;
+		shownTop = new int[columns * (lines - 1)];
+		shownBottom = new int[columns * (lines - 1)];
+		invalidate();
+	}
+
+	/* Changes the colors, which redraws everything in the next frame. */
+	public void setColorTheme(int colorCode) {
+		theme = new ColorTheme(colorCode);
+		invalidate();
+	}
+
+	/* Moves the view so that the given cell is in the top left corner.  The rows are
+	 * counted as in the GUI, so the input rows start at Grid.NUM_GRID_ROWS - 1.
+	 */
+	public void setView(int row, int col) {
+		if (row < 0 || col < 0) {
+			throw new IllegalArgumentException("Illegal View: " + row + ", " + col);
+		}
+		firstRow = row;
+		firstCol = col;
+		invalidate();
+	}
+
+	/* Forgets what is on the screen, so the next frame draws every character.  This is
+	 * needed if something else has written to the terminal.
+	 */
+	public void invalidate() {
+		Arrays.fill(shownTop, NONE);
+		Arrays.fill(shownBottom, NONE);
+		cleared = false;
+	}
+
+	/* Draws the grid's current generation, writing only the characters that changed since
+	 * the last frame.  The grid must not be changed while this runs.
+	 */
+	public void render(Grid grid) throws IOException {
+		int[][] life = grid.getGameOfLifeRegion();
+		int[][] input = grid.getInputRegion();
+		int numLifeRows = life.length - 1; // the last row is hidden by the top input row
+		int numRows = numLifeRows + input.length;
+		int numCols = life[0].length;
+
+		length = 0;
+		foreground = NONE;
+		background = NONE;
+		if (!cleared) {
+			append("\033[0m\033[?25l\033[2J"); // reset the colors, hide the cursor, clear
+			cleared = true;
+			cursorLine = -1; // unknown, so the cursor is always moved
+		}
+
+		int gridLines = lines - 1;
+		int width = Math.min(columns, numCols - firstCol);
+		for (int line = 0; line < gridLines; line++) {
+			int topRow = firstRow + 2 * line;
+			int[] top = (topRow < numLifeRows) ? life[topRow]
+					: (topRow < numRows) ? input[topRow - numLifeRows] : null;
+			int[] bottom = (topRow + 1 < numLifeRows) ? life[topRow + 1]
+					: (topRow + 1 < numRows) ? input[topRow + 1 - numLifeRows] : null;
+			for (int column = 0; column < width; column++) {
+				int col = firstCol + column;
+				int topColor = (top == null) ? 0 : theme.getRGB(top[col]) & 0xffffff;
+				int bottomColor = (bottom == null) ? 0 : theme.getRGB(bottom[col]) & 0xffffff;
+				int shown = line * columns + column;
+				if (isClose(shownTop[shown], topColor) && isClose(shownBottom[shown], bottomColor)) {
+					continue;
+				}
+				shownTop[shown] = topColor;
+				shownBottom[shown] = bottomColor;
+				moveTo(line, column);
+				if (topColor == bottomColor) {
+					setBackground(bottomColor);
+					append(' ');
+				} else {
+					setForeground(topColor);
+					setBackground(bottomColor);
+					append(HALF_BLOCK);
+				}
+				cursorColumn++;
+			}
+		}
+
+		/* the status line */
+		moveTo(gridLines, 0);
+		append("\033[0m\033[K Generation ");
+		append(grid.getGeneration());
+		if (grid.getCycleDetector() != null && grid.getCycleDetector().getPeriod() > 0) {
+			append("   Period ");
+			append(grid.getCycleDetector().getPeriod());
+		}
+		cursorLine = -1; // the status has a different length every time
+
+		out.write(buffer, 0, length);
+		out.flush();
+	}
+
+	/* Puts the terminal back the way it was: the default colors, the cursor shown and
+	 * below the grid.
+	 */
+	public void close() throws IOException {
+		length = 0;
+		append("\033[0m\033[?25h\r\n");
+		out.write(buffer, 0, length);
+		out.flush();
+	}
+
+	/* Returns true if the color on the screen is close enough to the one it should be.
+	 * Living cells (white) and black are always drawn exactly, so that they never linger
+	 * or stay faintly colored.
+	 */
+	private static boolean isClose(int shown, int color) {
+		if (shown == color) {
+			return true;
+		} else if (shown == NONE || color == 0xffffff || color == 0 || shown == 0xffffff) {
+			return false;
+		}
+		return Math.abs(((shown >>> 16) & 0xff) - ((color >>> 16) & 0xff)) <= TOLERANCE
+				&& Math.abs(((shown >>> 8) & 0xff) - ((color >>> 8) & 0xff)) <= TOLERANCE
+				&& Math.abs((shown & 0xff) - (color & 0xff)) <= TOLERANCE;
+	}
+
+	private void moveTo(int line, int column) {
+		if (line == cursorLine && column == cursorColumn) {
+			return;
+		}
+		append("\033[");
+		append(line + 1);
+		append(';');
+		append(column + 1);
+		append('H');
+		cursorLine = line;
+		cursorColumn = column;
+	}
+
+	private void setForeground(int color) {
+		if (color != foreground) {
+			appendColor("\033[38;2;", color);
+			foreground = color;
+		}
+	}
+
+	private void setBackground(int color) {
+		if (color != background) {
+			appendColor("\033[48;2;", color);
+			background = color;
+		}
+	}
+
+	private void appendColor(String prefix, int color) {
+		append(prefix);
+		append((color >>> 16) & 0xff);
+		append(';');
+		append((color >>> 8) & 0xff);
+		append(';');
+		append(color & 0xff);
+		append('m');
+	}
+
+	/* The following append to the frame.  Numbers are written digit by digit, so putting
+	 * a frame together doesn't make any Strings.
+	 */
+	private void append(char c) {
+		if (length == buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		}
+		buffer[length++] = (byte) c;
+	}
+
+	private void append(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			append(s.charAt(i));
+		}
+	}
+
+	private void append(byte[] bytes) {
+		for (byte b : bytes) {
+			append((char) (b & 0xff));
+		}
+	}
+
+	private void append(long number) {
+		if (number >= 10) {
+			append(number / 10);
+		}
+		append((char) ('0' + number % 10));
+	}
+
+}
@@ -0,0 +1,352 @@
+package gui;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+import cellularAutomata.ActivityHeatmap;
+import cellularAutomata.Grid;
+import cellularAutomata.PackedLife;
+
+/* This class draws a Grid through a viewport that can be panned and zoomed.  GridPanel
+ * used to draw every cell as a BOX_SIZE square, which only works because the grid is
+ * small enough to fit in the window.  Here, the amount of work done to draw a frame
+ * depends only on the size of the window, not the size of the grid:
+ *     - when zoomed in (at least one pixel per cell), each pixel of the window is
+ *       mapped back to the cell underneath it, so only the visible cells are looked at,
+ *     - when zoomed out (several cells per pixel), each pixel is colored using a
+ *       precomputed, downsampled copy of the grid (a "pyramid"), where level L holds
+ *       one value for every 2^L by 2^L block of cells.  Each pixel only has to look up
+ *       a single block.
+ *
+ * A block is colored as if it were its "most alive" cell, i.e. the cell with the lowest
+ * age, so that living cells and fresh trails stay visible when zoomed out.  Storing the
+ * lowest age directly would mean rewriting every block on every time step, since every
+ * dead cell gets older.  So the pyramid stores the generation at which the cells of each
+ * block were last alive instead, which only changes for blocks that contain a living
+ * cell.  The pyramid is split into tiles, and on each time step only the tiles of the
+ * Game of Life region with living cells are recomputed, along with the input rows, which
+ * move up every time step.  The age is worked out from the generation when drawing.
+ *
+ * The rows of the universe are the rows of the Game of Life region followed by the
+ * input rows, laid out exactly as GridPanel has always drawn them: the top input row
+ * is drawn over the bottom row of the Game of Life region, so that row is never shown.
+ * The default view is also the same as it has always been, with 3 pixels per cell and
+ * the margin on the top and left hidden.
+ */
+public class ViewportRenderer {
+
+	private static final int DEFAULT_SCALE = 3; // pixels per cell, the old BOX_SIZE
+	private static final int DEFAULT_FIRST_ROW = 5, DEFAULT_FIRST_COL = 2; // the old margin
+	private static final double MIN_SCALE = 1.0 / 1024, MAX_SCALE = 64;
+	private static final int TILE_SHIFT = 4; // tiles are 16 by 16 cells
+	private static final int HEAT_COLOR = 0xff3000; // the color of the busiest cells
+	private static final double MAX_HEAT_OPACITY = 0.8;
+
+	/* The viewport.  'scale' is the number of pixels per cell, and the top left corner
+	 * of the window shows the cell at (firstRow, firstCol).
+	 */
+	private double scale = DEFAULT_SCALE;
+	private double firstRow = DEFAULT_FIRST_ROW, firstCol = DEFAULT_FIRST_COL;
+
+	/* The pyramid.  levels[L] holds, for every 2^L by 2^L block of cells, the latest
+	 * generation in which any of its cells was alive.  levels[0] is not used, since the
+	 * ages of individual cells can be read straight from the grid.  The values are
+	 * correct as of generation 'pyramidGeneration' of the grid.
+	 */
+	private long[][] levels;
+	private int[] levelRows, levelCols;
+	private int numRows, numCols, maxLevel;
+	private long pyramidGeneration = -1;
+
+	/* The tiles of the Game of Life region with a living cell in them, found from the
+	 * grid's packed liveness bits.  touched[tileRow * tileCols + tileCol]
+	 */
+	private boolean[] touched;
+	private int tileCols;
+	private long[][] liveBits;
+
+	private BufferedImage image; // the frame is drawn into this, then copied to the screen
+	private int[] pixels;
+	private int[] rowOfPixel, colOfPixel;
+	
+	private volatile ActivityHeatmap overlay; // drawn over the Game of Life region if not null
+
+	/* Brings the pyramid up to date with the grid.  This should be called after every
+	 * time step.  If a time step was missed, or the grid was reset, the whole pyramid
+	 * is rebuilt.
+	 */
+	public synchronized void update(Grid grid) {
+		int[][] life = grid.getGameOfLifeRegion();
+		int[][] input = grid.getInputRegion();
+		long generation = grid.getGeneration();
+		if (generation == pyramidGeneration) {
+			return;
+		}
+
+		int rows = life.length - 1 + input.length;
+		int cols = life[0].length;
+		if (levels == null || rows != numRows || cols != numCols
+				|| generation != pyramidGeneration + 1) {
+			allocate(rows, cols);
+			for (int level = 1; level <= maxLevel; level++) {
+				computeBlocks(level, 0, levelRows[level], 0, levelCols[level], life, input, generation);
+			}
+		} else {
+			/* In the Game of Life region a dead cell just gets older, so the blocks only
+			 * change where a cell is alive.  The input rows all move up on every time step
+			 * though, so the tiles covering them (starting with the one that straddles the
+			 * Game of Life region and the input) are always recomputed.
+			 */
+			int tileSize = 1 << TILE_SHIFT;
+			int firstInputTile = ((life.length - 1) >> TILE_SHIFT) << TILE_SHIFT;
+			markLivingTiles(grid, life.length - 1);
+			for (int tileRow = 0; tileRow < numRows; tileRow += tileSize) {
+				for (int tileCol = 0; tileCol < numCols; tileCol += tileSize) {
+					if (tileRow >= firstInputTile 
+							|| touched[(tileRow >> TILE_SHIFT) * tileCols + (tileCol >> TILE_SHIFT)]) {
+						updateTile(tileRow, tileCol, life, input, generation);
+					}
+				}
+			}
+
+			/* the levels above the tiles are tiny, so they are just recomputed */
+			for (int level = TILE_SHIFT + 1; level <= maxLevel; level++) {
+				computeBlocks(level, 0, levelRows[level], 0, levelCols[level], life, input, generation);
+			}
+		}
+		pyramidGeneration = generation;
+	}
+
+	/* Draws the visible part of the grid into a width x height area of 'g'. */
+	public synchronized void render(Graphics g, int width, int height, ColorTheme theme,
+			Grid grid) {
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+		if (image == null || image.getWidth() != width || image.getHeight() != height) {
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+			rowOfPixel = new int[height];
+			colOfPixel = new int[width];
+		}
+		if (levels == null) {
+			update(grid);
+		}
+
+		/* work out which row and column is under every pixel, -1 if it's outside */
+		for (int y = 0; y < height; y++) {
+			int row = (int) Math.floor(firstRow + y / scale);
+			rowOfPixel[y] = (row >= 0 && row < numRows) ? row : -1;
+		}
+		for (int x = 0; x < width; x++) {
+			int col = (int) Math.floor(firstCol + x / scale);
+			colOfPixel[x] = (col >= 0 && col < numCols) ? col : -1;
+		}
+
+		int black = 0xff000000;
+		if (scale >= 1) {
+			/* zoomed in - look up each visible cell directly */
+			int[][] life = grid.getGameOfLifeRegion();
+			int[][] input = grid.getInputRegion();
+			int lifeRows = life.length - 1;
+			for (int y = 0; y < height; y++) {
+				int row = rowOfPixel[y];
+				int[] ages = (row < 0) ? null : (row < lifeRows) ? life[row] : input[row - lifeRows];
+				int offset = y * width;
+				for (int x = 0; x < width; x++) {
+					int col = colOfPixel[x];
+					pixels[offset + x] = (ages == null || col < 0) ? black : theme.getRGB(ages[col]);
+				}
+			}
+		} else {
+			/* zoomed out - use the smallest level whose blocks cover a whole pixel */
+			int level = (int) Math.ceil(Math.log(1 / scale) / Math.log(2));
+			level = Math.max(1, Math.min(level, maxLevel));
+			long[] blocks = levels[level];
+			int blockCols = levelCols[level];
+			for (int y = 0; y < height; y++) {
+				int row = rowOfPixel[y];
+				int offset = y * width;
+				for (int x = 0; x < width; x++) {
+					int col = colOfPixel[x];
+					if (row < 0 || col < 0) {
+						pixels[offset + x] = black;
+					} else {
+						long lastAlive = blocks[(row >> level) * blockCols + (col >> level)];
+						long age = pyramidGeneration - lastAlive;
+						pixels[offset + x] = theme.getRGB((int) Math.min(age, Integer.MAX_VALUE));
+					}
+				}
+			}
+		}
+		if (overlay != null) {
+			drawOverlay(overlay, width, height);
+		}
+		g.drawImage(image, 0, 0, null);
+	}
+	
+	/* Sets a heatmap to draw on top of the Game of Life region, or removes it if the 
+	 * parameter is null.
+	 */
+	public void setOverlay(ActivityHeatmap heatmap) {
+		overlay = heatmap;
+	}
+	
+	public ActivityHeatmap getOverlay() {
+		return overlay;
+	}
+
+	/* Moves the view by the given number of pixels, as if the grid were dragged. */
+	public synchronized void pan(int dx, int dy) {
+		firstCol -= dx / scale;
+		firstRow -= dy / scale;
+	}
+
+	/* Zooms in (factor > 1) or out (factor < 1), keeping the cell under the pixel (x, y)
+	 * in the same place.
+	 */
+	public synchronized void zoom(double factor, int x, int y) {
+		double row = firstRow + y / scale;
+		double col = firstCol + x / scale;
+		scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale * factor));
+		firstRow = row - y / scale;
+		firstCol = col - x / scale;
+	}
+
+	/* Goes back to the default view. */
+	public synchronized void resetView() {
+		scale = DEFAULT_SCALE;
+		firstRow = DEFAULT_FIRST_ROW;
+		firstCol = DEFAULT_FIRST_COL;
+	}
+
+	/* Tints every pixel of the Game of Life region towards HEAT_COLOR, by an amount that
+	 * depends on how many times the cell under it has come to life.  A logarithmic scale
+	 * is used, since the busiest cells are usually far busier than the rest.  The tint
+	 * is worked out once for each cell rather than for each pixel.
+	 */
+	private void drawOverlay(ActivityHeatmap heatmap, int width, int height) {
+		double scaleFactor = 1 / Math.log1p(Math.max(1, heatmap.getMaxBirths()));
+		int lastRow = heatmap.getNumRows() - 1; // the hidden bottom row isn't drawn
+		int heatR = (HEAT_COLOR >> 16) & 0xff, heatG = (HEAT_COLOR >> 8) & 0xff;
+		int heatB = HEAT_COLOR & 0xff;
+		for (int y = 0; y < height; y++) {
+			int row = rowOfPixel[y];
+			if (row < 0 || row >= lastRow || row >= heatmap.getNumRows()) {
+				continue;
+			}
+			int offset = y * width;
+			int lastCol = -1, opacity = 0; // opacity out of 256
+			for (int x = 0; x < width; x++) {
+				int col = colOfPixel[x];
+				if (col < 0 || col >= heatmap.getNumCols()) {
+					continue;
+				}
+				if (col != lastCol) {
+					double heat = Math.log1p(heatmap.getBirths(row, col)) * scaleFactor;
+					opacity = (int) (256 * MAX_HEAT_OPACITY * heat);
+					lastCol = col;
+				}
+				if (opacity > 0) {
+					int pixel = pixels[offset + x];
+					int r = (pixel >> 16) & 0xff, g = (pixel >> 8) & 0xff, b = pixel & 0xff;
+					r += ((heatR - r) * opacity) >> 8;
+					g += ((heatG - g) * opacity) >> 8;
+					b += ((heatB - b) * opacity) >> 8;
+					pixels[offset + x] = 0xff000000 | (r << 16) | (g << 8) | b;
+				}
+			}
+		}
+	}
+
+	private void allocate(int rows, int cols) {
+		numRows = rows;
+		numCols = cols;
+		maxLevel = 1;
+		while ((rows - 1) >> maxLevel > 0 || (cols - 1) >> maxLevel > 0) {
+			maxLevel++;
+		}
+		tileCols = ((cols - 1) >> TILE_SHIFT) + 1;
+		touched = new boolean[(((rows - 1) >> TILE_SHIFT) + 1) * tileCols];
+		levels = new long[maxLevel + 1][];
+		levelRows = new int[maxLevel + 1];
+		levelCols = new int[maxLevel + 1];
+		for (int level = 1; level <= maxLevel; level++) {
+			levelRows[level] = ((rows - 1) >> level) + 1;
+			levelCols[level] = ((cols - 1) >> level) + 1;
+			levels[level] = new long[levelRows[level] * levelCols[level]];
+		}
+	}
+
+	/* Marks the tiles that have a living cell in the first 'lifeRows' rows of the Game of
+	 * Life region.  The bits are packed 64 columns to a word, so a word covers whole
+	 * tiles, and once a living cell is found, the rest of its tile in that word is
+	 * skipped.
+	 */
+	private void markLivingTiles(Grid grid, int lifeRows) {
+		int tileSize = 1 << TILE_SHIFT;
+		long tileMask = (1L << tileSize) - 1;
+		if (liveBits == null || liveBits.length != lifeRows + 1) {
+			liveBits = new long[lifeRows + 1][PackedLife.words(numCols)];
+		}
+		grid.copyLiveBits(liveBits);
+		Arrays.fill(touched, false);
+		for (int row = 0; row < lifeRows; row++) {
+			long[] bits = liveBits[row];
+			for (int w = 0; w < bits.length; w++) {
+				long word = bits[w];
+				while (word != 0) {
+					int col = (w << 6) + Long.numberOfTrailingZeros(word);
+					touched[(row >> TILE_SHIFT) * tileCols + (col >> TILE_SHIFT)] = true;
+					word &= ~(tileMask << (col & (64 - tileSize)));
+				}
+			}
+		}
+	}
+
+	/* Recomputes the blocks of every level up to TILE_SHIFT that lie inside the tile. */
+	private void updateTile(int tileRow, int tileCol, int[][] life, int[][] input,
+			long generation) {
+		int tileSize = 1 << TILE_SHIFT;
+		for (int level = 1; level <= Math.min(TILE_SHIFT, maxLevel); level++) {
+			int firstBlockRow = tileRow >> level;
+			int firstBlockCol = tileCol >> level;
+			computeBlocks(level, firstBlockRow,
+					Math.min(levelRows[level], (tileRow + tileSize) >> level),
+					firstBlockCol, Math.min(levelCols[level], (tileCol + tileSize) >> level),
+					life, input, generation);
+		}
+	}
+
+	/* Recomputes a rectangle of blocks of one level, from the cells for level 1 and
+	 * from the level below otherwise.
+	 */
+	private void computeBlocks(int level, int fromRow, int toRow, int fromCol, int toCol,
+			int[][] life, int[][] input, long generation) {
+		int lifeRows = life.length - 1;
+		long[] blocks = levels[level];
+		for (int blockRow = fromRow; blockRow < toRow; blockRow++) {
+			for (int blockCol = fromCol; blockCol < toCol; blockCol++) {
+				long lastAlive = Long.MIN_VALUE;
+				for (int i = 0; i < 2; i++) {
+					for (int j = 0; j < 2; j++) {
+						int row = 2 * blockRow + i, col = 2 * blockCol + j;
+						if (level == 1) {
+							if (row < numRows && col < numCols) {
+								int age = (row < lifeRows) ? life[row][col] : input[row - lifeRows][col];
+								lastAlive = Math.max(lastAlive, generation - age);
+							}
+						} else if (row < levelRows[level - 1] && col < levelCols[level - 1]) {
+							lastAlive = Math.max(lastAlive,
+									levels[level - 1][row * levelCols[level - 1] + col]);
+						}
+					}
+				}
+				blocks[blockRow * levelCols[level] + blockCol] = lastAlive;
+			}
+		}
+	}
+
+}
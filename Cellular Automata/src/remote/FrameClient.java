@@ -0,0 +1,148 @@
+package remote;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+
+import cellularAutomata.PackedLife;
+
+/* This class connects to a FrameServer and keeps a copy of the grid it is streaming.
+ *
+ * Only the live/dead bitmap is sent over the network, so the ages of the dead cells are
+ * worked out here, in the same format as Grid uses (0 for a living cell, otherwise the
+ * number of time steps since the cell died).  Every frame moves the ages forward by the
+ * number of generations since the previous frame.  If frames were dropped, a cell that
+ * died in the middle of the gap is treated as if it died at the start of it, so the
+ * colors may be slightly off until the cell comes back to life.  Cells that are dead in
+ * the first keyframe, or in a RESET (sent when the grid was reset, rewound or skipped
+ * ahead, so that counting on from the old ages would be wrong), start out with the
+ * same age as in a freshly reset Grid.
+ */
+public class FrameClient implements Closeable {
+
+	private static final int DEAD = 100000; // the age every cell starts with, as in Grid
+
+	private final Socket socket;
+	private final DataInputStream in;
+
+	private long generation = -1;
+	private long[][] bits;
+	private int[][] ages;
+	private long bytesReceived = 0;
+	private long framesReceived = 0;
+
+	/* Connects to a FrameServer on the given host and port. */
+	public FrameClient(String host, int port) throws IOException {
+		socket = new Socket(host, port);
+		in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+	}
+
+	/* Connects to a FrameServer on this machine. */
+	public FrameClient(int port) throws IOException {
+		this(InetAddress.getLoopbackAddress().getHostAddress(), port);
+	}
+
+	/* Blocks until the next frame arrives, and applies it.  Returns the generation of
+	 * the new frame.
+	 */
+	public long readFrame() throws IOException {
+		byte type = in.readByte();
+		long frameGeneration = in.readLong();
+		int numRows = in.readInt();
+		int numCols = in.readInt();
+		byte[] payload = new byte[in.readInt()];
+		in.readFully(payload);
+		bytesReceived += 21 + payload.length;
+		framesReceived++;
+
+		if (bits == null || bits.length != numRows || ages[0].length != numCols
+				|| type == FrameCodec.RESET) {
+			if (type == FrameCodec.DELTA) {
+				throw new IOException("Expected A Keyframe");
+			}
+			bits = new long[numRows][PackedLife.words(numCols)];
+			ages = new int[numRows][numCols];
+			for (int[] row : ages) {
+				Arrays.fill(row, DEAD);
+			}
+			generation = frameGeneration - 1;
+		}
+		FrameCodec.decode(type, payload, bits);
+
+		int elapsed = (int) Math.min(frameGeneration - generation, Integer.MAX_VALUE);
+		for (int row = 0; row < numRows; row++) {
+			int[] ageRow = ages[row];
+			long[] bitRow = bits[row];
+			for (int col = 0; col < numCols; col++) {
+				if (((bitRow[col >>> 6] >>> col) & 1) != 0) {
+					ageRow[col] = 0;
+				} else {
+					ageRow[col] += elapsed;
+				}
+			}
+		}
+		generation = frameGeneration;
+		return generation;
+	}
+
+	public long getGeneration() {
+		return generation;
+	}
+
+	/* Returns the ages of every cell, with the rows of the Game of Life region first,
+	 * followed by the input rows.  The caller must not modify the returned array.
+	 */
+	public int[][] getAges() {
+		return ages;
+	}
+
+	/* Returns the live/dead bitmap, packed in the same way as in PackedLife.  The caller
+	 * must not modify the returned array.
+	 */
+	public long[][] getBits() {
+		return bits;
+	}
+
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+
+	public long getFramesReceived() {
+		return framesReceived;
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+
+	/* Connects to a server and prints how much bandwidth it is using compared to
+	 * sending every generation as raw ints.  The optional arguments are the host and
+	 * the port.
+	 */
+	public static void main(String[] args) throws IOException {
+		String host = (args.length > 0) ? args[0] : InetAddress.getLoopbackAddress().getHostAddress();
+		int port = (args.length > 1) ? Integer.parseInt(args[1]) : FrameServer.DEFAULT_PORT;
+
+		try (FrameClient client = new FrameClient(host, port)) {
+			long lastReport = System.currentTimeMillis();
+			while (true) {
+				client.readFrame();
+				long now = System.currentTimeMillis();
+				if (now - lastReport >= 1000) {
+					int[][] ages = client.getAges();
+					long rawBytes = 4L * ages.length * ages[0].length * client.getFramesReceived();
+					System.out.printf("generation %d: %d frames, %d bytes (%.2f%% of raw)%n",
+							client.getGeneration(), client.getFramesReceived(),
+							client.getBytesReceived(), 100.0 * client.getBytesReceived() / rawBytes);
+					lastReport = now;
+				}
+			}
+		}
+	}
+
+}
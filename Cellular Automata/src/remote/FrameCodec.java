@@ -0,0 +1,153 @@
+package remote;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import cellularAutomata.PackedLife;
+
+/* This class handles the wire format used by FrameServer and FrameClient.
+ *
+ * A frame is the live/dead bitmap of the whole grid: the rows of the Game of Life region
+ * followed by the input rows, each packed into longs the same way as in PackedLife.  Only
+ * whether each cell is alive is sent, not its age; the viewer works the ages out itself
+ * by counting frames (see FrameClient).
+ *
+ * There are two kinds of frames.  A keyframe contains the bitmap itself, and a delta
+ * contains the XOR of the bitmap with the bitmap of the previous generation, so its set
+ * bits are exactly the cells that changed.  A reset is a keyframe sent when the grid
+ * didn't just move on by one generation (it was reset, rewound or skipped ahead), so
+ * the viewer has to start the ages again instead of carrying on counting.  In every
+ * case the words of the bitmap are run-length encoded, since almost all of them are
+ * zero: the payload is a sequence of (number of zero words, number of literal words,
+ * the literal words) until every word has been accounted for.  Counts are written as
+ * variable-length integers.
+ *
+ * Each message on the socket looks like this:
+ *     byte   type (KEYFRAME, RESET or DELTA)
+ *     long   generation
+ *     int    number of rows
+ *     int    number of columns
+ *     int    payload length in bytes
+ *     byte[] payload
+ */
+public class FrameCodec {
+
+	public static final byte KEYFRAME = 'K';
+	public static final byte DELTA = 'D';
+	public static final byte RESET = 'R'; // a keyframe that starts the ages again
+
+	/* Packs the Game of Life region and the input rows into a single bitmap. 'bits' must
+	 * have one row for every row of both regions, and is returned for convenience.
+	 */
+	public static long[][] pack(int[][] life, int[][] input, long[][] bits) {
+		for (int row = 0; row < life.length; row++) {
+			PackedLife.packRow(life[row], bits[row]);
+		}
+		for (int row = 0; row < input.length; row++) {
+			PackedLife.packRow(input[row], bits[life.length + row]);
+		}
+		return bits;
+	}
+
+	/* Encodes a keyframe payload from the bitmap. */
+	public static byte[] encodeKeyframe(long[][] bits) {
+		return encode(bits, null);
+	}
+
+	/* Encodes a delta payload from the previous and current bitmaps. */
+	public static byte[] encodeDelta(long[][] previous, long[][] current) {
+		return encode(current, previous);
+	}
+
+	/* Run-length encodes the words of 'bits', XORed with 'previous' if it isn't null. */
+	private static byte[] encode(long[][] bits, long[][] previous) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		int wordsPerRow = bits[0].length;
+		int numWords = bits.length * wordsPerRow;
+		try {
+			int i = 0;
+			while (i < numWords) {
+				int zeros = 0;
+				while (i + zeros < numWords && word(bits, previous, i + zeros, wordsPerRow) == 0) {
+					zeros++;
+				}
+				int literals = 0;
+				while (i + zeros + literals < numWords
+						&& word(bits, previous, i + zeros + literals, wordsPerRow) != 0) {
+					literals++;
+				}
+				writeVarInt(out, zeros);
+				writeVarInt(out, literals);
+				for (int j = i + zeros; j < i + zeros + literals; j++) {
+					out.writeLong(word(bits, previous, j, wordsPerRow));
+				}
+				i += zeros + literals;
+			}
+			out.flush();
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // can't happen with a ByteArrayOutputStream
+		}
+		return bytes.toByteArray();
+	}
+
+	private static long word(long[][] bits, long[][] previous, int index, int wordsPerRow) {
+		int row = index / wordsPerRow, w = index % wordsPerRow;
+		return (previous == null) ? bits[row][w] : bits[row][w] ^ previous[row][w];
+	}
+
+	/* Decodes a payload into 'bits'.  For a keyframe (or a reset) the bitmap is replaced,
+	 * and for a delta the payload is XORed into the bitmap that is already there.
+	 */
+	public static void decode(byte type, byte[] payload, long[][] bits) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+		int wordsPerRow = bits[0].length;
+		int numWords = bits.length * wordsPerRow;
+		if (type == KEYFRAME || type == RESET) {
+			for (long[] row : bits) {
+				Arrays.fill(row, 0);
+			}
+		} else if (type != DELTA) {
+			throw new IOException("Unknown Frame Type: " + type);
+		}
+		int i = 0;
+		while (i < numWords) {
+			i += readVarInt(in);
+			int literals = readVarInt(in);
+			if (i + literals > numWords) {
+				throw new IOException("Corrupt Frame");
+			}
+			for (int j = 0; j < literals; j++, i++) {
+				bits[i / wordsPerRow][i % wordsPerRow] ^= in.readLong();
+			}
+		}
+	}
+
+	/* Writes a non-negative int using 7 bits per byte, with the high bit of each byte
+	 * set if more bytes follow.
+	 */
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			out.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Corrupt Frame");
+	}
+
+}
@@ -0,0 +1,285 @@
+package remote;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import cellularAutomata.CARowMaker;
+import cellularAutomata.Grid;
+import cellularAutomata.PackedLife;
+import cellularAutomata.SimulationHost;
+
+/* This class streams the generations of a Grid over TCP to any number of viewers, so that
+ * a simulation can be watched from a different machine than the one running it.  See
+ * FrameCodec for the format of the frames.
+ *
+ * The simulation calls publish after every time step.  This packs the grid into a bitmap
+ * and encodes the changes since the previous generation once, and then offers the frame
+ * to every connected client.  Each client has its own writer thread and a mailbox that
+ * holds at most one frame, so publish never waits for the network:
+ *     - if the client's mailbox is empty and it has been sent every generation so far,
+ *       it gets the (small) delta,
+ *     - otherwise the client has fallen behind.  Whatever is waiting in its mailbox is
+ *       thrown away and replaced with a keyframe, since a delta is useless without all
+ *       of the deltas before it.
+ * So a slow viewer just sees fewer frames, and never slows down the simulation or the
+ * other viewers.  A newly connected client always starts with a keyframe.
+ *
+ * Frames carry the grid's own generation number.  If it didn't go up by exactly one
+ * since the last publish (the grid was reset, rewound or skipped ahead), every client
+ * gets a RESET instead, so the viewers start their ages again from it.  A client that is
+ * still owed a reset gets one in place of the next keyframe, even if the frame that
+ * should have been the reset was thrown away.
+ */
+public class FrameServer {
+
+	public static final int DEFAULT_PORT = 5151;
+
+	private final ServerSocket serverSocket;
+	private final List<Client> clients = new CopyOnWriteArrayList<>();
+
+	private long previousGeneration = -1; // the generation published last
+	private long[][] previousBits, currentBits;
+	private long framesDropped = 0;
+
+	/* Constructor that listens on the given port of the loopback interface only. */
+	public FrameServer(int port) throws IOException {
+		this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+	}
+
+	/* Constructor that listens on the given address, for serving other machines. */
+	public FrameServer(InetSocketAddress address) throws IOException {
+		serverSocket = new ServerSocket();
+		serverSocket.bind(address);
+		Thread acceptor = new Thread(new Runnable() {
+			public void run() {
+				acceptClients();
+			}
+		}, "FrameServer acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	public int getNumClients() {
+		return clients.size();
+	}
+
+	/* Returns the total number of frames that have been dropped for slow clients. */
+	public synchronized long getFramesDropped() {
+		return framesDropped;
+	}
+
+	/* Publishes the current generation of the grid to every client.  This should be
+	 * called after each time step, from the thread that updates the grid.
+	 */
+	public synchronized void publish(Grid grid) {
+		int[][] life = grid.getGameOfLifeRegion();
+		int[][] input = grid.getInputRegion();
+		int numRows = life.length + input.length;
+		int numCols = life[0].length;
+
+		if (currentBits == null || currentBits.length != numRows) {
+			previousBits = null;
+			currentBits = new long[numRows][PackedLife.words(numCols)];
+		} else {
+			long[][] temp = previousBits;
+			previousBits = currentBits;
+			currentBits = (temp != null) ? temp : new long[numRows][currentBits[0].length];
+		}
+		FrameCodec.pack(life, input, currentBits);
+		long generation = grid.getGeneration();
+		boolean followsOn = previousBits != null && generation == previousGeneration + 1;
+		previousGeneration = generation;
+
+		if (clients.isEmpty()) {
+			return;
+		}
+
+		Frame delta = null;
+		if (followsOn) {
+			delta = new Frame(FrameCodec.DELTA, generation, numRows, numCols,
+					FrameCodec.encodeDelta(previousBits, currentBits));
+		}
+		Frame keyframe = null;
+		for (Client client : clients) {
+			if (delta != null && client.isInSync(generation - 1)) {
+				client.offer(delta, false);
+			} else {
+				if (keyframe == null) {
+					keyframe = new Frame(FrameCodec.KEYFRAME, generation, numRows, numCols,
+							FrameCodec.encodeKeyframe(currentBits));
+				}
+				if (client.offer(keyframe, !followsOn)) {
+					framesDropped++;
+				}
+			}
+		}
+	}
+
+	/* Stops accepting clients and disconnects the existing ones. */
+	public void close() throws IOException {
+		serverSocket.close();
+		for (Client client : clients) {
+			client.close();
+		}
+	}
+
+	private void acceptClients() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				clients.add(new Client(socket));
+			} catch (IOException e) {
+				if (!serverSocket.isClosed()) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/* An encoded frame, shared by all of the clients it is sent to. */
+	private static class Frame {
+		private final byte type;
+		private final long generation;
+		private final int numRows, numCols;
+		private final byte[] payload;
+		private Frame reset; // the same frame as a RESET, made when it is first needed
+
+		private Frame(byte type, long generation, int numRows, int numCols, byte[] payload) {
+			this.type = type;
+			this.generation = generation;
+			this.numRows = numRows;
+			this.numCols = numCols;
+			this.payload = payload;
+		}
+
+		/* Returns this keyframe as a RESET, which has the same payload. */
+		private Frame asReset() {
+			if (type == FrameCodec.RESET) {
+				return this;
+			}
+			if (reset == null) {
+				reset = new Frame(FrameCodec.RESET, generation, numRows, numCols, payload);
+			}
+			return reset;
+		}
+	}
+
+	/* A connected viewer, with its own writer thread and a mailbox of one frame. */
+	private class Client {
+
+		private final Socket socket;
+		private final DataOutputStream out;
+		private Frame pending; // the frame waiting to be written, guarded by this
+		private long lastQueued = -1; // the generation of the last frame queued
+		private boolean owedReset = false; // a RESET hasn't been written since the last jump
+
+		private Client(Socket socket) throws IOException {
+			this.socket = socket;
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			Thread writer = new Thread(new Runnable() {
+				public void run() {
+					writeFrames();
+				}
+			}, "FrameServer writer " + socket.getRemoteSocketAddress());
+			writer.setDaemon(true);
+			writer.start();
+		}
+
+		/* Returns true if the client has been sent every frame up to the given
+		 * generation, and isn't still waiting to send one of them.
+		 */
+		private synchronized boolean isInSync(long previousGeneration) {
+			return pending == null && lastQueued == previousGeneration;
+		}
+
+		/* Puts a frame in the mailbox, replacing whatever was there.  'jumped' is true if
+		 * the grid didn't follow on from the previous frame, so the client is owed a
+		 * RESET, and a keyframe is sent as one until it has been written.  Returns true if
+		 * a frame had to be thrown away.
+		 */
+		private synchronized boolean offer(Frame frame, boolean jumped) {
+			owedReset |= jumped;
+			if (owedReset && frame.type == FrameCodec.KEYFRAME) {
+				frame = frame.asReset();
+			}
+			boolean dropped = pending != null;
+			pending = frame;
+			lastQueued = frame.generation;
+			notifyAll();
+			return dropped;
+		}
+
+		private void writeFrames() {
+			try {
+				while (true) {
+					Frame frame;
+					synchronized (this) {
+						while (pending == null) {
+							wait();
+						}
+						frame = pending;
+						pending = null;
+						if (frame.type == FrameCodec.RESET) {
+							owedReset = false;
+						}
+					}
+					out.writeByte(frame.type);
+					out.writeLong(frame.generation);
+					out.writeInt(frame.numRows);
+					out.writeInt(frame.numCols);
+					out.writeInt(frame.payload.length);
+					out.write(frame.payload);
+					out.flush();
+				}
+			} catch (IOException | InterruptedException e) {
+				// the viewer disconnected
+			} finally {
+				close();
+			}
+		}
+
+		private void close() {
+			clients.remove(this);
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// nothing more to do
+			}
+		}
+	}
+
+	/* Runs a simulation without a GUI and streams it.  The optional arguments are the
+	 * port and the rule number.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int rule = (args.length > 1) ? Integer.parseInt(args[1]) : 30;
+
+		final FrameServer server = new FrameServer(port);
+		final Grid grid = new Grid(new CARowMaker(rule));
+		SimulationHost.Session session = SimulationHost.getShared().createSession(grid, 1000.0 / 35);
+		session.setListener(new Runnable() {
+			public void run() {
+				server.publish(grid);
+			}
+		});
+		session.resume();
+		System.out.println("Streaming rule " + rule + " on port " + server.getPort());
+		while (true) {
+			Thread.sleep(Long.MAX_VALUE);
+		}
+	}
+
+}
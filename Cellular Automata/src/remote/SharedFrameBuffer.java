@@ -0,0 +1,257 @@
+package remote;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import cellularAutomata.CARowMaker;
+import cellularAutomata.Grid;
+import cellularAutomata.MemoryFences;
+import cellularAutomata.SimulationHost;
+
+/* This class passes the generations of a Grid to viewers in other processes on the same
+ * machine through a memory-mapped file, rather than over a socket like FrameServer.  The
+ * simulation writes the ages of every cell straight into the file, and a viewer reads
+ * them straight out of its own mapping of it, so a frame is never copied, encoded or
+ * sent anywhere; the operating system just shares the pages.
+ *
+ * The file holds a small header and a ring of frame slots.  Generation g goes in slot
+ * g % numSlots, so a viewer reading one generation is only disturbed if the simulation
+ * gets numSlots - 1 generations further ahead in the meantime.  Each slot starts with a
+ * sequence number, used as a "seqlock":
+ *     - the publisher sets it to an odd number before writing the slot, and to the next
+ *       even number after, with store fences in between, then records the generation
+ *       in the header as the latest one,
+ *     - a reader looks at the sequence number before and after reading the slot, and
+ *       only keeps what it read if both are the same even number.  Otherwise the slot
+ *       was being written at the time, and the reader tries the latest generation again.
+ * The publisher never waits for the readers, and doesn't even know how many there are.
+ *
+ * The layout of the file is:
+ *     header (64 bytes): int MAGIC, int rows, int columns, int slots, long latest
+ *         generation (-1 before the first), all little-endian
+ *     then for every slot: long sequence, long generation, padded to 64 bytes, and then
+ *         the ages of the rows of the Game of Life region followed by the input rows, as
+ *         ints, in the same format as Grid.
+ */
+public class SharedFrameBuffer implements Closeable {
+
+	static final int MAGIC = 0x43414652; // "CAFR"
+
+	public static final int DEFAULT_SLOTS = 4;
+
+	private static final int HEADER_BYTES = 64;
+	private static final int SLOT_HEADER_BYTES = 64;
+
+	private static final int ROWS_OFFSET = 4;
+	private static final int COLS_OFFSET = 8;
+	private static final int SLOTS_OFFSET = 12;
+	private static final int LATEST_OFFSET = 16;
+
+	private static final int SEQUENCE_OFFSET = 0; // within a slot
+	private static final int GENERATION_OFFSET = 8;
+
+	/* Something that looks at a frame while it is being read, see read. */
+	public interface FrameVisitor {
+
+		/* Called with the ages of one generation: the age of the cell in row r and
+		 * column c (counting the input rows after the Game of Life region) is
+		 * ages.get(r * numCols + c).  The buffer is the shared memory itself, and may be
+		 * changed by the publisher while this runs, in which case the read is thrown
+		 * away afterwards.  So nothing read from it should be trusted until read has
+		 * returned this generation.
+		 */
+		void visit(IntBuffer ages, int numRows, int numCols, long generation);
+	}
+
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final boolean writable;
+	private final int numRows, numCols, numSlots;
+	private final int slotBytes;
+	private final IntBuffer[] slotAges; // a view of the ages in each slot
+
+	/* Creates the file (replacing anything already there) for frames of the given size,
+	 * and maps it for writing.  This is done by the simulation.
+	 */
+	public static SharedFrameBuffer create(Path file, int numRows, int numCols, int numSlots)
+			throws IOException {
+		if (numRows < 1 || numCols < 1 || numSlots < 2) {
+			throw new IllegalArgumentException("Illegal Frame Buffer: " + numSlots + " slots of "
+					+ numRows + "x" + numCols);
+		}
+		long slotBytes = SLOT_HEADER_BYTES + 4L * numRows * numCols;
+		if (HEADER_BYTES + slotBytes * numSlots > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Illegal Frame Buffer Size: " + numSlots
+					+ " slots of " + numRows + "x" + numCols);
+		}
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+				HEADER_BYTES + slotBytes * numSlots);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(ROWS_OFFSET, numRows);
+		buffer.putInt(COLS_OFFSET, numCols);
+		buffer.putInt(SLOTS_OFFSET, numSlots);
+		buffer.putLong(LATEST_OFFSET, -1);
+		MemoryFences.storeFence();
+		buffer.putInt(0, MAGIC); // only once everything else is there
+		return new SharedFrameBuffer(channel, buffer, true);
+	}
+
+	/* Maps a file made by create, read-only.  This is what the viewers do. */
+	public static SharedFrameBuffer openReadOnly(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (channel.size() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+			channel.close();
+			throw new IOException("Not A Shared Frame Buffer: " + file);
+		}
+		return new SharedFrameBuffer(channel, buffer, false);
+	}
+
+	private SharedFrameBuffer(FileChannel channel, MappedByteBuffer buffer, boolean writable) {
+		this.channel = channel;
+		this.buffer = buffer;
+		this.writable = writable;
+		numRows = buffer.getInt(ROWS_OFFSET);
+		numCols = buffer.getInt(COLS_OFFSET);
+		numSlots = buffer.getInt(SLOTS_OFFSET);
+		slotBytes = SLOT_HEADER_BYTES + 4 * numRows * numCols;
+		slotAges = new IntBuffer[numSlots];
+		for (int slot = 0; slot < numSlots; slot++) {
+			int start = slotOffset(slot) + SLOT_HEADER_BYTES;
+			buffer.limit(start + 4 * numRows * numCols).position(start);
+			slotAges[slot] = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+		}
+		buffer.clear();
+	}
+
+	public int getNumRows() {
+		return numRows;
+	}
+
+	public int getNumCols() {
+		return numCols;
+	}
+
+	public int getNumSlots() {
+		return numSlots;
+	}
+
+	/* Writes the current generation of the grid into its slot and makes it the latest.
+	 * The grid must be the size this was created for, counting the input rows.
+	 */
+	public void publish(Grid grid) {
+		if (!writable) {
+			throw new IllegalStateException("Frame Buffer Is Read-Only");
+		}
+		int[][] life = grid.getGameOfLifeRegion();
+		int[][] input = grid.getInputRegion();
+		if (life.length + input.length != numRows || life[0].length != numCols) {
+			throw new IllegalArgumentException("Illegal Grid Size: " + (life.length
+					+ input.length) + "x" + life[0].length);
+		}
+		long generation = grid.getGeneration();
+		int slot = (int) Math.floorMod(generation, (long) numSlots);
+		int offset = slotOffset(slot);
+		long sequence = buffer.getLong(offset + SEQUENCE_OFFSET);
+
+		buffer.putLong(offset + SEQUENCE_OFFSET, sequence + 1); // odd: being written
+		MemoryFences.storeFence();
+		IntBuffer ages = slotAges[slot];
+		for (int row = 0; row < life.length; row++) {
+			ages.position(row * numCols);
+			ages.put(life[row]);
+		}
+		for (int row = 0; row < input.length; row++) {
+			ages.position((life.length + row) * numCols);
+			ages.put(input[row]);
+		}
+		buffer.putLong(offset + GENERATION_OFFSET, generation);
+		MemoryFences.storeFence();
+		buffer.putLong(offset + SEQUENCE_OFFSET, sequence + 2); // even: done
+		MemoryFences.storeFence();
+		buffer.putLong(LATEST_OFFSET, generation);
+	}
+
+	/* Returns the latest generation published, or -1 if there hasn't been one. */
+	public long getLatestGeneration() {
+		long latest = buffer.getLong(LATEST_OFFSET);
+		MemoryFences.loadFence();
+		return latest;
+	}
+
+	/* Shows the latest generation to the visitor, straight from the shared memory, and
+	 * returns its generation.  If the publisher overwrote the slot while the visitor was
+	 * looking at it, the visitor is called again with the new latest generation, up to
+	 * 'attempts' times in all.  Returns -1 if nothing has been published yet, or if
+	 * every attempt was overwritten, in which case nothing the visitor saw is valid.
+	 */
+	public long read(FrameVisitor visitor, int attempts) {
+		for (int attempt = 0; attempt < attempts; attempt++) {
+			long latest = getLatestGeneration();
+			if (latest < 0) {
+				return -1;
+			}
+			int slot = (int) Math.floorMod(latest, (long) numSlots);
+			int offset = slotOffset(slot);
+
+			long before = buffer.getLong(offset + SEQUENCE_OFFSET);
+			MemoryFences.loadFence();
+			long generation = buffer.getLong(offset + GENERATION_OFFSET);
+			if ((before & 1) != 0 || generation != latest) {
+				continue; // being written, or already reused for a newer generation
+			}
+			visitor.visit(slotAges[slot], numRows, numCols, generation);
+			MemoryFences.loadFence();
+			if (buffer.getLong(offset + SEQUENCE_OFFSET) == before) {
+				return generation;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private int slotOffset(int slot) {
+		return HEADER_BYTES + slot * slotBytes;
+	}
+
+	/* Runs a simulation without a GUI and publishes every generation to the given file
+	 * (by default "frames.dat" in the current directory), for gui.SharedFrameViewer to
+	 * show.  The optional second argument is the rule number.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Path file = Paths.get((args.length > 0) ? args[0] : "frames.dat");
+		int rule = (args.length > 1) ? Integer.parseInt(args[1]) : 30;
+
+		final Grid grid = new Grid(new CARowMaker(rule));
+		final SharedFrameBuffer frames = create(file, Grid.NUM_GRID_ROWS + Grid.NUM_INPUT_ROWS,
+				Grid.NUM_GRID_COLS, DEFAULT_SLOTS);
+		frames.publish(grid);
+		SimulationHost.Session session = SimulationHost.getShared().createSession(grid, 1000.0 / 35);
+		session.setListener(new Runnable() {
+			public void run() {
+				frames.publish(grid);
+			}
+		});
+		session.resume();
+		System.out.println("Publishing rule " + rule + " to " + file.toAbsolutePath());
+		while (true) {
+			Thread.sleep(Long.MAX_VALUE);
+		}
+	}
+
+}